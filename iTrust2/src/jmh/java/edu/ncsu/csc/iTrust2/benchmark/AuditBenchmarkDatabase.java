@@ -0,0 +1,124 @@
+package edu.ncsu.csc.iTrust2.benchmark;
+
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import edu.ncsu.csc.iTrust2.ITrust2Application;
+import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
+
+/**
+ * Starts iTrust2, without its web server, against an embedded H2 database
+ * seeded with a given number of LogEntry rows, for the audit log benchmarks.
+ * Each size gets its own database file under target/jmh, which is seeded once
+ * and then reused by later runs.
+ *
+ * @author agent
+ *
+ */
+final class AuditBenchmarkDatabase {
+
+    /** Seeded rows get IDs from here up, well clear of Hibernate's sequence */
+    static final long           FIRST_ID = 1_000_000_000_000L;
+
+    /** Number of distinct users the seeded rows are spread across */
+    static final int            USERS    = 10_000;
+
+    /** Rows inserted per JDBC batch */
+    private static final int    BATCH    = 10_000;
+
+    /** Where the databases and archive live */
+    private static final String DIR      = "target/jmh";
+
+    private AuditBenchmarkDatabase () {
+    }
+
+    /**
+     * Starts the application against the database for a size, seeding it if
+     * need be
+     *
+     * @param rows
+     *            Number of LogEntry rows to seed
+     * @param extraArgs
+     *            Any other properties, as `--name=value`
+     * @return The running application
+     */
+    static ConfigurableApplicationContext start ( final int rows, final String... extraArgs ) {
+        System.setProperty( "spring.devtools.restart.enabled", "false" );
+        final List<String> args = new ArrayList<String>( List.of(
+                "--spring.datasource.url=jdbc:h2:file:./" + DIR + "/audit-" + rows
+                        + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+                "--spring.datasource.driver-class-name=org.h2.Driver", "--spring.datasource.username=sa",
+                "--spring.datasource.password=", "--spring.jpa.hibernate.ddl-auto=update",
+                "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "--itrust2.audit.archive.dir=" + DIR + "/archive", "--itrust2.audit.archive.cron=-" ) );
+        args.addAll( List.of( extraArgs ) );
+
+        final ConfigurableApplicationContext context = new SpringApplicationBuilder( ITrust2Application.class )
+                .web( WebApplicationType.NONE ).run( args.toArray( new String[0] ) );
+        seed( context.getBean( JdbcTemplate.class ), rows );
+        return context;
+    }
+
+    /**
+     * Name of one of the seeded users
+     *
+     * @param i
+     *            Index of the user
+     * @return Username
+     */
+    static String user ( final int i ) {
+        return "benchUser" + ( i % USERS );
+    }
+
+    /**
+     * Tops the LogEntry table up to a number of seeded rows, one minute apart
+     * going back from now
+     *
+     * @param jdbc
+     *            Connection to the database
+     * @param rows
+     *            Number of seeded rows wanted
+     */
+    private static void seed ( final JdbcTemplate jdbc, final int rows ) {
+        final int existing = jdbc.queryForObject( "SELECT COUNT(*) FROM log_entry WHERE id >= ?", Integer.class,
+                FIRST_ID );
+        final ZonedDateTime now = ZonedDateTime.now();
+        final List<Object[]> batch = new ArrayList<Object[]>( BATCH );
+        for ( int i = existing; i < rows; i++ ) {
+            final String primary = user( i );
+            final String secondary = i % 3 == 0 ? user( i / 3 ) : null;
+            batch.add( new Object[] { FIRST_ID + i, TransactionType.LOGIN_SUCCESS.getCode(), primary,
+                    primary.equals( secondary ) ? null : secondary, "Benchmark entry",
+                    Timestamp.from( now.minusMinutes( i ).toInstant() ) } );
+            if ( batch.size() == BATCH ) {
+                insert( jdbc, batch );
+            }
+        }
+        insert( jdbc, batch );
+    }
+
+    /**
+     * Inserts and clears a batch of seed rows
+     *
+     * @param jdbc
+     *            Connection to the database
+     * @param batch
+     *            Rows to insert
+     */
+    private static void insert ( final JdbcTemplate jdbc, final List<Object[]> batch ) {
+        if ( batch.isEmpty() ) {
+            return;
+        }
+        jdbc.batchUpdate( "INSERT INTO log_entry (id, log_code, primary_user, secondary_user, message, time) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", batch );
+        batch.clear();
+    }
+
+}
@@ -0,0 +1,78 @@
+package edu.ncsu.csc.iTrust2.benchmark;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import edu.ncsu.csc.iTrust2.models.security.LogEntry;
+import edu.ncsu.csc.iTrust2.services.security.LogEntryService;
+
+/**
+ * Measures reading a user's audit log through LogEntryService, both their whole
+ * history and the last week of it, against LogEntry tables of different sizes.
+ * Each call looks up a different user. Throughput and latency percentiles
+ * (including p99) come from the two benchmark modes; allocation per operation
+ * from `-prof gc`, which the benchmark profile passes by default.
+ *
+ * @author agent
+ *
+ */
+@State ( Scope.Benchmark )
+@BenchmarkMode ( { Mode.Throughput, Mode.SampleTime } )
+@OutputTimeUnit ( TimeUnit.MILLISECONDS )
+@Warmup ( iterations = 3, time = 5 )
+@Measurement ( iterations = 5, time = 10 )
+@Fork ( 1 )
+public class AuditLogQueryBenchmark {
+
+    /** Number of entries in the LogEntry table */
+    @Param ( { "10000", "1000000", "10000000" } )
+    public int                             rows;
+
+    /** The running application */
+    private ConfigurableApplicationContext context;
+
+    /** What is being measured */
+    private LogEntryService                service;
+
+    /** Number of lookups so far, to spread them across users */
+    private int                            lookups;
+
+    @Setup ( Level.Trial )
+    public void setup () {
+        context = AuditBenchmarkDatabase.start( rows );
+        service = context.getBean( LogEntryService.class );
+    }
+
+    @TearDown ( Level.Trial )
+    public void teardown () {
+        context.close();
+    }
+
+    @Benchmark
+    public List<LogEntry> findAllForUser () {
+        return service.findAllForUser( AuditBenchmarkDatabase.user( lookups++ ) );
+    }
+
+    @Benchmark
+    public List<LogEntry> findByDateRange () {
+        final ZonedDateTime now = ZonedDateTime.now();
+        return service.findByDateRange( AuditBenchmarkDatabase.user( lookups++ ), now.minusDays( 7 ), now );
+    }
+
+}
@@ -0,0 +1,84 @@
+package edu.ncsu.csc.iTrust2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
+import edu.ncsu.csc.iTrust2.utils.AuditLogWriter;
+import edu.ncsu.csc.iTrust2.utils.LoggerUtil;
+
+/**
+ * Measures the cost to a caller of writing an audit log entry through
+ * LoggerUtil, with the background writer on and off, against LogEntry tables
+ * of different sizes. Throughput and latency percentiles (including p99) come
+ * from the two benchmark modes; allocation per operation from `-prof gc`,
+ * which the benchmark profile passes by default.
+ *
+ * With the background writer on, this measures handing an entry to the queue;
+ * once the queue is full, callers write entries themselves, so a sustained run
+ * also reflects how fast the writer drains it.
+ *
+ * @author agent
+ *
+ */
+@State ( Scope.Benchmark )
+@BenchmarkMode ( { Mode.Throughput, Mode.SampleTime } )
+@OutputTimeUnit ( TimeUnit.MICROSECONDS )
+@Warmup ( iterations = 3, time = 5 )
+@Measurement ( iterations = 5, time = 10 )
+@Fork ( 1 )
+public class AuditLogWriteBenchmark {
+
+    /** Number of entries in the LogEntry table before the run */
+    @Param ( { "10000", "1000000", "10000000" } )
+    public int                             rows;
+
+    /** Whether entries are written by the background writer */
+    @Param ( { "true", "false" } )
+    public boolean                         async;
+
+    /** The running application */
+    private ConfigurableApplicationContext context;
+
+    /** What is being measured */
+    private LoggerUtil                     loggerUtil;
+
+    /** Number of entries logged so far, to spread them across users */
+    private int                            logged;
+
+    @Setup ( Level.Trial )
+    public void setup () {
+        context = AuditBenchmarkDatabase.start( rows, "--itrust2.audit.async=" + async );
+        loggerUtil = context.getBean( LoggerUtil.class );
+    }
+
+    @TearDown ( Level.Trial )
+    public void teardown () {
+        // Leave only the seeded rows behind for the next run
+        context.getBean( AuditLogWriter.class ).flush();
+        context.getBean( JdbcTemplate.class ).update( "DELETE FROM log_entry WHERE id < ?",
+                AuditBenchmarkDatabase.FIRST_ID );
+        context.close();
+    }
+
+    @Benchmark
+    public void log () {
+        loggerUtil.log( TransactionType.LOGIN_SUCCESS, AuditBenchmarkDatabase.user( logged++ ), "Benchmark entry" );
+    }
+
+}
@@ -0,0 +1,64 @@
+package edu.ncsu.csc.iTrust2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import edu.ncsu.csc.iTrust2.config.WebSecurityConfig;
+
+/**
+ * Measures the password check done on every login, at each BCrypt cost that
+ * `itrust2.security.password.strength` might be set to. The benchmark runs on
+ * a single thread, so its throughput is logins per second per core; each step
+ * up in cost roughly halves it. Run only this benchmark with
+ * `-Djmh.args="PasswordHashBenchmark"`.
+ *
+ * @author agent
+ *
+ */
+@State ( Scope.Benchmark )
+@BenchmarkMode ( Mode.Throughput )
+@OutputTimeUnit ( TimeUnit.SECONDS )
+@Threads ( 1 )
+@Warmup ( iterations = 2, time = 5 )
+@Measurement ( iterations = 5, time = 10 )
+@Fork ( 1 )
+public class PasswordHashBenchmark {
+
+    /** Password logged in with */
+    private static final String PASSWORD = "123456";
+
+    /** BCrypt cost the stored hash was made at */
+    @Param ( { "8", "9", "10", "11", "12" } )
+    public int                  strength;
+
+    /** Encoder as configured for that cost */
+    private PasswordEncoder     encoder;
+
+    /** Stored hash to check against */
+    private String              hash;
+
+    @Setup
+    public void setup () {
+        encoder = WebSecurityConfig.passwordEncoder( strength );
+        hash = encoder.encode( PASSWORD );
+    }
+
+    @Benchmark
+    public boolean login () {
+        return encoder.matches( PASSWORD, hash );
+    }
+
+}
@@ -0,0 +1,46 @@
+package edu.ncsu.csc.iTrust2.adapters;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+import edu.ncsu.csc.iTrust2.config.LogCodeMigration;
+import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
+
+/**
+ * TransactionType converter for database storage. Stores the code of the type
+ * rather than its position in the enum, so that the stored value is the one
+ * documented for the event and does not change if types are added or
+ * reordered. Rows from before the change that LogCodeMigration has not yet
+ * rewritten still hold the position, and are read as the type at that
+ * position.
+ *
+ * @author agent
+ */
+@Converter
+public class TransactionTypeAttributeConverter implements AttributeConverter<TransactionType, Integer> {
+
+    /**
+     * Converts the TransactionType to a database field.
+     *
+     * @param type
+     *            The TransactionType to convert.
+     * @return The code of the TransactionType.
+     */
+    @Override
+    public Integer convertToDatabaseColumn ( final TransactionType type ) {
+        return type == null ? null : type.getCode();
+    }
+
+    /**
+     * Converts the database code to a TransactionType.
+     *
+     * @param code
+     *            The code to convert.
+     * @return The matching TransactionType.
+     */
+    @Override
+    public TransactionType convertToEntityAttribute ( final Integer code ) {
+        return code == null ? null : TransactionType.parse( LogCodeMigration.codeOf( code ) );
+    }
+
+}
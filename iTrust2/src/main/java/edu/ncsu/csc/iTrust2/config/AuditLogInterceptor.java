@@ -1,10 +1,14 @@
 package edu.ncsu.csc.iTrust2.config;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
 
@@ -12,7 +16,15 @@ import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
 import edu.ncsu.csc.iTrust2.utils.LoggerUtil;
 
 /**
- * Interceptor to log HTTP requests to the API endpoint
+ * Interceptor to log HTTP requests to the API endpoint. How requests are
+ * recorded is controlled by `itrust2.audit.http.mode`:
+ * <ul>
+ * <li>ROLLUP (default): requests are aggregated in memory by
+ * HttpRequestAuditAggregator and only a periodic summary is logged</li>
+ * <li>SAMPLED: a random fraction (`itrust2.audit.http.sample-rate`) of requests
+ * are logged individually</li>
+ * <li>PER_REQUEST: every request is logged individually</li>
+ * </ul>
  *
  * @author Kai Presler-Marshall
  *
@@ -20,27 +32,66 @@ import edu.ncsu.csc.iTrust2.utils.LoggerUtil;
 @Component
 public class AuditLogInterceptor extends HandlerInterceptorAdapter {
 
+    /**
+     * Ways of recording intercepted requests
+     */
+    public enum Mode {
+        /** One LogEntry per request */
+        PER_REQUEST,
+        /** Periodic per-endpoint summaries */
+        ROLLUP,
+        /** One LogEntry for a random sample of requests */
+        SAMPLED
+    }
+
+    /** Request attribute holding the time the request arrived */
+    private static final String        START_ATTRIBUTE = AuditLogInterceptor.class.getName() + ".start";
+
     /** LoggerUtil instance for logging events to the database */
     @Autowired
-    private LoggerUtil loggerUtil;
+    private LoggerUtil                 loggerUtil;
+
+    /** Aggregator for the ROLLUP mode */
+    @Autowired
+    private HttpRequestAuditAggregator aggregator;
+
+    /** How requests are recorded */
+    @Value ( "${itrust2.audit.http.mode:ROLLUP}" )
+    private Mode                       mode;
+
+    /** Fraction of requests logged in the SAMPLED mode */
+    @Value ( "${itrust2.audit.http.sample-rate:0.01}" )
+    private double                     sampleRate;
 
     @Override
     public boolean preHandle ( final HttpServletRequest request, final HttpServletResponse response,
             final Object handler ) throws Exception {
+        if ( Mode.ROLLUP == mode ) {
+            request.setAttribute( START_ATTRIBUTE, System.nanoTime() );
+        }
         return true;
     }
 
     @Override
     public void afterCompletion ( final HttpServletRequest request, final HttpServletResponse response,
             final Object handler, final Exception exception ) throws Exception {
+        final Object start = request.getAttribute( START_ATTRIBUTE );
+        if ( Mode.ROLLUP != mode || null == start ) {
+            return;
+        }
+        final Object pattern = request.getAttribute( HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE );
+        aggregator.record( request.getMethod(), null != pattern ? pattern.toString() : null, response.getStatus(),
+                System.nanoTime() - (Long) start );
     }
 
     @Override
     public void postHandle ( final HttpServletRequest request, final HttpServletResponse response, final Object handler,
             final ModelAndView modelAndView ) throws Exception {
-
-        loggerUtil.log( TransactionType.HTTP_REQUEST, request.getRemoteUser() + ":" + request.getRemoteAddr(),
-                "Request " + request.getMethod() + " " + request.getRequestURI() + ", response code: "
-                        + response.getStatus() );
+        if ( Mode.PER_REQUEST == mode
+                || ( Mode.SAMPLED == mode && ThreadLocalRandom.current().nextDouble() < sampleRate ) ) {
+            loggerUtil.log( TransactionType.HTTP_REQUEST, request.getRemoteUser() + ":" + request.getRemoteAddr(),
+                    "Request " + request.getMethod() + " " + request.getRequestURI() + ", response code: "
+                            + response.getStatus() );
+        }
     }
 }
@@ -8,6 +8,9 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.core.AuthenticationException;
@@ -16,14 +19,13 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 
 import edu.ncsu.csc.iTrust2.models.User;
 import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
-import edu.ncsu.csc.iTrust2.models.security.LoginAttempt;
 import edu.ncsu.csc.iTrust2.models.security.LoginBan;
 import edu.ncsu.csc.iTrust2.models.security.LoginLockout;
 import edu.ncsu.csc.iTrust2.services.UserService;
 import edu.ncsu.csc.iTrust2.services.security.LoginAttemptService;
 import edu.ncsu.csc.iTrust2.services.security.LoginBanService;
 import edu.ncsu.csc.iTrust2.services.security.LoginLockoutService;
-import edu.ncsu.csc.iTrust2.utils.EmailUtil;
+import edu.ncsu.csc.iTrust2.utils.LockoutEmailEvent;
 import edu.ncsu.csc.iTrust2.utils.LoggerUtil;
 
 /**
@@ -40,33 +42,41 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
      * Logger Util
      */
     @Autowired
-    private LoggerUtil          loggerUtil;
+    private LoggerUtil                loggerUtil;
 
     /**
-     * Email Util
+     * Publishes the events that lockout emails are sent from
      */
     @Autowired
-    private EmailUtil           emailUtil;
+    private ApplicationEventPublisher eventPublisher;
 
     /** LoginBan service */
     @Autowired
-    private LoginBanService     loginBanService;
+    private LoginBanService           loginBanService;
 
     /** LoginLockout service */
     @Autowired
-    private LoginLockoutService loginLockoutService;
+    private LoginLockoutService       loginLockoutService;
 
     /** LoginAttempt service */
     @Autowired
-    private LoginAttemptService loginAttemptService;
+    private LoginAttemptService       loginAttemptService;
 
     /** UserService */
     @Autowired
-    private UserService<User>   userService;
+    private UserService<User>         userService;
 
     @Override
     public void onAuthenticationFailure ( final HttpServletRequest request, final HttpServletResponse response,
             final AuthenticationException ae ) throws IOException, ServletException {
+        if ( ae instanceof LoginThrottledException ) {
+            // Turned away before the password was checked; answer without
+            // touching the database
+            response.setHeader( HttpHeaders.RETRY_AFTER, "1" );
+            response.sendError( HttpStatus.TOO_MANY_REQUESTS.value(), ae.getMessage() );
+            return;
+        }
+
         /*
          * Credit for username to
          * https://stackoverflow.com/questions/8676206/how-can-i-get-the
@@ -106,16 +116,13 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
                     loggerUtil.log( TransactionType.IP_LOCKOUT, addr, null, addr + " has been locked out for 1 hour." );
                     this.getRedirectStrategy().sendRedirect( request, response, "/login?iplocked" );
 
-                    sendEmail( username );
+                    sendEmail( username, LockoutEmailEvent.Kind.LOCKOUT );
                 }
                 return;
             }
             else {
                 // fail for IP
-                final LoginAttempt attempt = new LoginAttempt();
-                attempt.setTime( ZonedDateTime.now() );
-                attempt.setIp( addr );
-                loginAttemptService.save( attempt );
+                loginAttemptService.recordIP( addr );
             }
 
             // check username
@@ -137,7 +144,7 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
                         loggerUtil.log( TransactionType.USER_BANNED, username, null, username + " has been banned." );
                         this.getRedirectStrategy().sendRedirect( request, response, "/login?banned" );
 
-                        sendEmail( username );
+                        sendEmail( username, LockoutEmailEvent.Kind.BAN );
 
                     }
                     else {
@@ -150,16 +157,13 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
                                 username + " has been locked out for 1 hour." );
                         this.getRedirectStrategy().sendRedirect( request, response, "/login?locked" );
 
-                        sendEmail( username );
+                        sendEmail( username, LockoutEmailEvent.Kind.LOCKOUT );
                     }
                     return;
                 }
                 else {
                     // fail for username
-                    final LoginAttempt attempt = new LoginAttempt();
-                    attempt.setTime( ZonedDateTime.now() );
-                    attempt.setUser( user );
-                    loginAttemptService.save( attempt );
+                    loginAttemptService.recordUser( user );
                 }
             }
 
@@ -187,17 +191,17 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
         this.getRedirectStrategy().sendRedirect( request, response, "/login?error" );
     }
 
-    private void sendEmail ( final String username ) {
-        final User user = userService.findByName( username );
-        if ( null != user ) {
-            emailUtil.sendEmail( user, "iTrust2: Your account has beeen locked out",
-                    "Your iTrust2 account has been locked out due to too many failed log in attempts." );
-            loggerUtil.log( TransactionType.CREATE_LOCKOUT_EMAIL, username );
-
-        }
-        else {
-            // Can't email no user
-        }
+    /**
+     * Asks for the user to be emailed about their lockout or ban, once the
+     * request is over
+     *
+     * @param username
+     *            User to email
+     * @param kind
+     *            Whether they were locked out or banned
+     */
+    private void sendEmail ( final String username, final LockoutEmailEvent.Kind kind ) {
+        eventPublisher.publishEvent( new LockoutEmailEvent( username, kind ) );
     }
 
 }
@@ -0,0 +1,246 @@
+package edu.ncsu.csc.iTrust2.config;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
+import edu.ncsu.csc.iTrust2.utils.LoggerUtil;
+
+/**
+ * Aggregates intercepted HTTP requests in memory rather than logging each one.
+ * Requests are counted per method, URI template (ie, `/api/v1/patients/{id}`
+ * rather than the concrete URI), and response code, along with a latency
+ * histogram. Requests that no mapping handled (404s, scanners probing for
+ * paths) are all counted under UNMATCHED, so that the number of combinations
+ * stays bounded by the number of mappings. At the end of every window one
+ * HTTP_REQUEST_SUMMARY LogEntry is written for each combination that saw
+ * traffic, and its counters are removed.
+ *
+ * @author agent
+ *
+ */
+@Component
+public class HttpRequestAuditAggregator {
+
+    /** Primary user recorded on the summary LogEntries */
+    static final String           SYSTEM_USER    = "iTrust2 System";
+
+    /** URI template recorded for requests that no mapping handled */
+    public static final String    UNMATCHED      = "<unmatched>";
+
+    /** Longest message that fits in the LogEntry table */
+    private static final int      MAX_MESSAGE    = 255;
+
+    /**
+     * Upper bounds, in milliseconds, of the latency histogram buckets. Anything
+     * slower falls into one final overflow bucket.
+     */
+    private static final long[]   BUCKETS_MILLIS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+
+    /** Counters for the current window */
+    private final Map<Key, Stats> stats          = new ConcurrentHashMap<Key, Stats>();
+
+    /** LoggerUtil, for writing the summaries */
+    @Autowired
+    private LoggerUtil            loggerUtil;
+
+    /**
+     * Records a single request
+     *
+     * @param method
+     *            HTTP method of the request
+     * @param uriTemplate
+     *            The mapping that handled the request, or null if there was
+     *            none
+     * @param status
+     *            Response code sent back
+     * @param latencyNanos
+     *            How long the request took to handle
+     */
+    public void record ( final String method, final String uriTemplate, final int status, final long latencyNanos ) {
+        final Key key = new Key( method, null != uriTemplate ? uriTemplate : UNMATCHED, status );
+        // Added under the map's lock for the key, so that a flush removing it
+        // either sees this request or leaves it for a fresh entry
+        stats.compute( key, ( k, existing ) -> {
+            final Stats counters = null != existing ? existing : new Stats();
+            counters.add( latencyNanos );
+            return counters;
+        } );
+    }
+
+    /**
+     * Writes out a summary for everything recorded since the last flush, and
+     * removes the counters, so that combinations not seen again are not held
+     * on to. Runs once per window.
+     */
+    @Scheduled ( fixedDelayString = "${itrust2.audit.http.window-ms:60000}",
+            initialDelayString = "${itrust2.audit.http.window-ms:60000}" )
+    public void flush () {
+        for ( final Key key : stats.keySet() ) {
+            final Stats counters = stats.remove( key );
+            final String summary = null != counters ? counters.drain( key ) : null;
+            if ( null != summary ) {
+                loggerUtil.log( TransactionType.HTTP_REQUEST_SUMMARY, SYSTEM_USER, summary );
+            }
+        }
+    }
+
+    /**
+     * Writes out the partial window on shutdown
+     */
+    @PreDestroy
+    public void shutdown () {
+        flush();
+    }
+
+    /**
+     * Identifies one endpoint and response code
+     */
+    private static final class Key {
+
+        /** HTTP method */
+        private final String method;
+
+        /** URI template */
+        private final String uri;
+
+        /** Response code */
+        private final int    status;
+
+        /**
+         * Creates a Key
+         *
+         * @param method
+         *            HTTP method
+         * @param uri
+         *            URI template
+         * @param status
+         *            Response code
+         */
+        Key ( final String method, final String uri, final int status ) {
+            this.method = method;
+            this.uri = uri;
+            this.status = status;
+        }
+
+        @Override
+        public int hashCode () {
+            return Objects.hash( method, uri, status );
+        }
+
+        @Override
+        public boolean equals ( final Object obj ) {
+            if ( this == obj ) {
+                return true;
+            }
+            if ( ! ( obj instanceof Key ) ) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return status == other.status && Objects.equals( method, other.method )
+                    && Objects.equals( uri, other.uri );
+        }
+
+        @Override
+        public String toString () {
+            return method + " " + uri + " " + status;
+        }
+    }
+
+    /**
+     * Counters and latency histogram for one Key. Only drained once it has been
+     * removed from the map, after which nothing more is added to it.
+     */
+    private static final class Stats {
+
+        /** Number of requests */
+        private final LongAdder       count      = new LongAdder();
+
+        /** Sum of request latencies */
+        private final LongAdder       totalNanos = new LongAdder();
+
+        /** Slowest request */
+        private final AtomicLong      maxNanos   = new AtomicLong();
+
+        /** Requests per latency bucket */
+        private final AtomicLongArray buckets    = new AtomicLongArray( BUCKETS_MILLIS.length + 1 );
+
+        /**
+         * Records one request
+         *
+         * @param latencyNanos
+         *            Latency of the request
+         */
+        void add ( final long latencyNanos ) {
+            count.increment();
+            totalNanos.add( latencyNanos );
+            maxNanos.accumulateAndGet( latencyNanos, Math::max );
+            final long millis = TimeUnit.NANOSECONDS.toMillis( latencyNanos );
+            int bucket = 0;
+            while ( bucket < BUCKETS_MILLIS.length && millis > BUCKETS_MILLIS[bucket] ) {
+                bucket++;
+            }
+            buckets.incrementAndGet( bucket );
+        }
+
+        /**
+         * Describes what the counters hold
+         *
+         * @param key
+         *            Key these counters belong to
+         * @return Summary message, or null if there were no requests
+         */
+        String drain ( final Key key ) {
+            final long n = count.sum();
+            final long total = totalNanos.sum();
+            final long max = maxNanos.get();
+            final long[] histogram = new long[buckets.length()];
+            for ( int i = 0; i < histogram.length; i++ ) {
+                histogram[i] = buckets.get( i );
+            }
+            if ( 0 == n ) {
+                return null;
+            }
+            final String summary = key + ": count=" + n + " mean=" + TimeUnit.NANOSECONDS.toMillis( total / n )
+                    + "ms p50<=" + percentile( histogram, n, 0.50 ) + " p95<=" + percentile( histogram, n, 0.95 )
+                    + " p99<=" + percentile( histogram, n, 0.99 ) + " max=" + TimeUnit.NANOSECONDS.toMillis( max )
+                    + "ms";
+            return summary.length() > MAX_MESSAGE ? summary.substring( 0, MAX_MESSAGE ) : summary;
+        }
+
+        /**
+         * Finds the bucket a percentile falls into
+         *
+         * @param histogram
+         *            Requests per bucket
+         * @param n
+         *            Total number of requests
+         * @param fraction
+         *            Percentile to find, between 0 and 1
+         * @return Upper bound of the bucket, ie `25ms`
+         */
+        private static String percentile ( final long[] histogram, final long n, final double fraction ) {
+            final long rank = (long) Math.ceil( fraction * n );
+            long seen = 0;
+            for ( int i = 0; i < BUCKETS_MILLIS.length; i++ ) {
+                seen += histogram[i];
+                if ( seen >= rank ) {
+                    return BUCKETS_MILLIS[i] + "ms";
+                }
+            }
+            return "inf";
+        }
+    }
+
+}
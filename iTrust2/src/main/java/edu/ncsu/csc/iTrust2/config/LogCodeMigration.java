@@ -0,0 +1,87 @@
+package edu.ncsu.csc.iTrust2.config;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * LogEntries used to store their TransactionType as its position in the enum;
+ * they now store its code. Every code is at least 100, so any stored value
+ * below that is a position left over from before the change. On startup, once
+ * the schema is in place and before the application starts serving requests,
+ * this rewrites those values to the matching codes, a batch at a time so that
+ * the table is never locked for long. Rows that have already been rewritten
+ * are left alone, so it is safe to run on every startup. Until a row has been
+ * rewritten, TransactionTypeAttributeConverter reads its position through
+ * codeOf.
+ *
+ * @author agent
+ */
+@Component
+@DependsOn ( "entityManagerFactory" )
+public class LogCodeMigration {
+
+    /**
+     * The code of each TransactionType, in the order the enum declared them
+     * when positions were stored; HTTP_REQUEST_SUMMARY and EXPORT_LOG were
+     * appended to the end. Must never change.
+     */
+    private static final int[]  LEGACY_CODES = { 9001, 100, 101, 102, 103, 104, 105, 201, 202, 203, 204, 205, 206,
+            207, 400, 410, 411, 500, 501, 502, 503, 611, 640, 641, 642, 650, 651, 652, 700, 701, 702, 703, 800, 801,
+            802, 810, 899, 898, 811, 1001, 1002, 1003, 1004, 1005, 1006, 1007, 1008, 1009, 1010, 1011, 900, 901, 902,
+            903, 910, 911, 912, 913, 914, 1100, 1101, 1102, 1201, 1301, 1302, 1303, 1500, 1501, 1502, 1503, 1504,
+            1506, 1601, 1602, 1603, 1604, 1801, 1802, 1900, 1901, 1902, 1903, 1904, 2100, 2101, 2102, 2103, 2104,
+            9002, 1202 };
+
+    /** Rows rewritten per statement */
+    private static final int    BATCH        = 10000;
+
+    /** Logger, to report how many rows were rewritten */
+    private static final Logger LOG          = LoggerFactory.getLogger( LogCodeMigration.class );
+
+    /** Used to rewrite the rows */
+    @Autowired
+    private JdbcTemplate        jdbc;
+
+    /**
+     * Finds the code of the TransactionType that was stored as a position
+     *
+     * @param position
+     *            Position stored in a row that has not been rewritten
+     * @return The code, or the position unchanged if it is not a legacy
+     *         position
+     */
+    public static int codeOf ( final int position ) {
+        return position >= 0 && position < LEGACY_CODES.length ? LEGACY_CODES[position] : position;
+    }
+
+    /**
+     * Rewrites every LogEntry still storing a position to store the code
+     * instead
+     */
+    @PostConstruct
+    public void migrate () {
+        final StringBuilder sql = new StringBuilder( "UPDATE log_entry SET log_code = CASE log_code" );
+        for ( int position = 0; position < LEGACY_CODES.length; position++ ) {
+            sql.append( " WHEN " ).append( position ).append( " THEN " ).append( LEGACY_CODES[position] );
+        }
+        sql.append( " END WHERE log_code < " ).append( LEGACY_CODES.length ).append( " LIMIT " ).append( BATCH );
+
+        long total = 0;
+        int updated;
+        do {
+            updated = jdbc.update( sql.toString() );
+            total += updated;
+        }
+        while ( updated == BATCH );
+        if ( total > 0 ) {
+            LOG.info( "Rewrote {} log entries to store TransactionType codes", total );
+        }
+    }
+
+}
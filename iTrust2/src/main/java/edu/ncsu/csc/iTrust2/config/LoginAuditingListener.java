@@ -1,9 +1,9 @@
 package edu.ncsu.csc.iTrust2.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.event.AbstractAuthenticationEvent;
 import org.springframework.security.authentication.event.AbstractAuthenticationFailureEvent;
 import org.springframework.security.authentication.event.InteractiveAuthenticationSuccessEvent;
 import org.springframework.security.core.Authentication;
@@ -11,9 +11,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetails;
 import org.springframework.stereotype.Component;
 
-import edu.ncsu.csc.iTrust2.models.User;
 import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
-import edu.ncsu.csc.iTrust2.services.UserService;
 import edu.ncsu.csc.iTrust2.services.security.LoginAttemptService;
 import edu.ncsu.csc.iTrust2.services.security.LoginBanService;
 import edu.ncsu.csc.iTrust2.services.security.LoginLockoutService;
@@ -21,13 +19,16 @@ import edu.ncsu.csc.iTrust2.utils.LoggerUtil;
 
 /**
  * Listens for AuthenticationEvents to Log them and to clear FaieldAttempts on
- * successful authentication.
+ * successful authentication. A successful login costs no queries of its own:
+ * bans and lockouts of the IP come from the IPBlockCache, failed attempts are
+ * counted in memory by username, and the audit entry is written in the
+ * background.
  *
  * @author Kai Presler-Marshall
  *
  */
 @Component
-public class LoginAuditingListener implements ApplicationListener<ApplicationEvent> {
+public class LoginAuditingListener implements ApplicationListener<AbstractAuthenticationEvent> {
 
     /** LoggerUtil */
     @Autowired
@@ -41,16 +42,12 @@ public class LoginAuditingListener implements ApplicationListener<ApplicationEve
     @Autowired
     private LoginBanService     loginBanService;
 
-    /** User service */
-    @Autowired
-    private UserService<User>   userService;
-
     /** LoginLockout service */
     @Autowired
     private LoginLockoutService loginLockoutService;
 
     @Override
-    public void onApplicationEvent ( final ApplicationEvent event ) {
+    public void onApplicationEvent ( final AbstractAuthenticationEvent event ) {
         if ( event instanceof InteractiveAuthenticationSuccessEvent ) {
             final InteractiveAuthenticationSuccessEvent authEvent = (InteractiveAuthenticationSuccessEvent) event;
             final Authentication authentication = authEvent.getAuthentication();
@@ -65,8 +62,7 @@ public class LoginAuditingListener implements ApplicationListener<ApplicationEve
             // bypassed the lockout page via a direct API call).
             final String addr = det.getRemoteAddress();
             if ( !loginLockoutService.isIPLocked( addr ) && !loginBanService.isIPBanned( addr ) ) {
-                loginAttemptService.clearIP( addr );
-                loginAttemptService.clearUser( userService.findByName( details.getUsername() ) );
+                loginAttemptService.clearLogin( addr, details.getUsername() );
                 util.log( TransactionType.LOGIN_SUCCESS, details.getUsername() );
             }
 
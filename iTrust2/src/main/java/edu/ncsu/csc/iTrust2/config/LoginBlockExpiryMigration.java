@@ -0,0 +1,66 @@
+package edu.ncsu.csc.iTrust2.config;
+
+import java.sql.Timestamp;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.iTrust2.models.security.LoginBan;
+import edu.ncsu.csc.iTrust2.models.security.LoginLockout;
+
+/**
+ * LoginBans and LoginLockouts record when they end in `expires_at`, and every
+ * check for one only looks at that column. Rows saved before the column
+ * existed have it empty, which would read as already expired and silently
+ * lift every ban and lockout. On startup, once the schema is in place and
+ * before the application starts serving requests, this fills it in: a ban
+ * ends `itrust2.security.ban.duration-days` after it started if that is set,
+ * and otherwise never, as bans did before; a lockout ends
+ * LoginLockout.DURATION after it started. Rows that already have an end are
+ * left alone, so it is safe to run on every startup.
+ *
+ * @author agent
+ */
+@Component
+@DependsOn ( "entityManagerFactory" )
+public class LoginBlockExpiryMigration {
+
+    /** Logger, to report how many rows were filled in */
+    private static final Logger LOG = LoggerFactory.getLogger( LoginBlockExpiryMigration.class );
+
+    /** Used to fill in the rows */
+    @Autowired
+    private JdbcTemplate        jdbc;
+
+    /** How long a ban lasts, in days; 0 or less for bans that do not expire */
+    @Value ( "${itrust2.security.ban.duration-days:0}" )
+    private long                banDurationDays;
+
+    /**
+     * Fills in when every LoginBan and LoginLockout without an end ends
+     */
+    @PostConstruct
+    public void migrate () {
+        final int bans = banDurationDays > 0
+                ? jdbc.update( "UPDATE login_ban SET expires_at = DATE_ADD( time, INTERVAL ? DAY ) "
+                        + "WHERE expires_at IS NULL AND time IS NOT NULL", banDurationDays )
+                : 0;
+        final int permanent = jdbc.update( "UPDATE login_ban SET expires_at = ? WHERE expires_at IS NULL",
+                Timestamp.from( LoginBan.PERMANENT.toInstant() ) );
+        final int lockouts = jdbc.update(
+                "UPDATE login_lockout SET expires_at = DATE_ADD( time, INTERVAL ? MINUTE ) "
+                        + "WHERE expires_at IS NULL AND time IS NOT NULL",
+                LoginLockout.DURATION.toMinutes() );
+        if ( bans + permanent + lockouts > 0 ) {
+            LOG.info( "Filled in the end of {} login bans and {} login lockouts", bans + permanent, lockouts );
+        }
+    }
+
+}
@@ -0,0 +1,29 @@
+package edu.ncsu.csc.iTrust2.config;
+
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * Thrown when a login is turned away because too many are already being
+ * checked. It is deliberately not one of the exceptions Spring Security
+ * publishes a failure event for, so turning a login away costs no database
+ * work; the FailureHandler answers it with a 429.
+ *
+ * @author agent
+ *
+ */
+public class LoginThrottledException extends AuthenticationException {
+
+    /** For serialization */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates the exception
+     *
+     * @param message
+     *            Why the login was turned away
+     */
+    public LoginThrottledException ( final String message ) {
+        super( message );
+    }
+
+}
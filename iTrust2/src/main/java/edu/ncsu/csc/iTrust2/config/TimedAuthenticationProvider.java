@@ -0,0 +1,161 @@
+package edu.ncsu.csc.iTrust2.config;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import edu.ncsu.csc.iTrust2.services.security.PasswordRehashService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * DaoAuthenticationProvider that times every authentication, including the
+ * user lookup and the password check, as `itrust2.auth.latency` tagged with
+ * its outcome. After a successful login, if the stored hash was made at
+ * another cost, it hashes the password again and has the
+ * PasswordRehashService store the new hash.
+ *
+ * Password checks run on a pool of `itrust2.security.auth-pool.threads`
+ * threads (one per core by default) with room for
+ * `itrust2.security.auth-pool.queue` more to wait. Once both are full further
+ * logins are turned away at once with a LoginThrottledException, counted as
+ * `itrust2.auth.rejected`, rather than tying up more request threads in
+ * BCrypt during a login storm.
+ *
+ * @author agent
+ *
+ */
+public class TimedAuthenticationProvider extends DaoAuthenticationProvider {
+
+    /** Registry the timings are published to */
+    @Autowired
+    private MeterRegistry         meterRegistry;
+
+    /** Brings password hashes in line with the configured cost */
+    @Autowired
+    private PasswordRehashService rehashService;
+
+    /** Threads checking passwords; 0 for one per core */
+    @Value ( "${itrust2.security.auth-pool.threads:0}" )
+    private int                   threads;
+
+    /** Logins that may wait for a thread before more are turned away */
+    @Value ( "${itrust2.security.auth-pool.queue:100}" )
+    private int                   queue;
+
+    /** Runs the password checks */
+    private ThreadPoolExecutor    executor;
+
+    /** Logins turned away */
+    private Counter               rejected;
+
+    /**
+     * Starts the pool
+     */
+    @PostConstruct
+    public void start () {
+        final int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        final BlockingQueue<Runnable> waiting = queue > 0 ? new ArrayBlockingQueue<Runnable>( queue )
+                : new SynchronousQueue<Runnable>();
+        final AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor( size, size, 0, TimeUnit.MILLISECONDS, waiting, r -> {
+            final Thread thread = new Thread( r, "auth-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        rejected = meterRegistry.counter( "itrust2.auth.rejected" );
+    }
+
+    /**
+     * Stops the pool
+     */
+    @PreDestroy
+    public void stop () {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public Authentication authenticate ( final Authentication authentication ) throws AuthenticationException {
+        final Timer.Sample sample = Timer.start( meterRegistry );
+        String outcome = "failure";
+        try {
+            final Authentication result = authenticateOnPool( authentication );
+            outcome = "success";
+            return result;
+        }
+        catch ( final LoginThrottledException e ) {
+            outcome = "rejected";
+            throw e;
+        }
+        finally {
+            sample.stop( Timer.builder( "itrust2.auth.latency" ).tag( "outcome", outcome ).register( meterRegistry ) );
+        }
+    }
+
+    @Override
+    protected Authentication createSuccessAuthentication ( final Object principal,
+            final Authentication authentication, final UserDetails user ) {
+        // Like upgradeEncoding, but also for hashes made at a higher cost
+        if ( null != authentication.getCredentials() && rehashService.rehashOnLogin( user.getPassword() ) ) {
+            final String newHash = getPasswordEncoder().encode( authentication.getCredentials().toString() );
+            rehashService.updatePassword( user.getUsername(), user.getPassword(), newHash );
+        }
+        return super.createSuccessAuthentication( principal, authentication, user );
+    }
+
+    /**
+     * Runs an authentication on the pool, waiting for its result
+     *
+     * @param authentication
+     *            Authentication request
+     * @return The result, as from `DaoAuthenticationProvider.authenticate`
+     * @throws LoginThrottledException
+     *             If the pool is full
+     */
+    private Authentication authenticateOnPool ( final Authentication authentication ) {
+        final Future<Authentication> result;
+        try {
+            result = executor.submit( () -> super.authenticate( authentication ) );
+        }
+        catch ( final RejectedExecutionException e ) {
+            rejected.increment();
+            throw new LoginThrottledException( "Too many logins in progress" );
+        }
+        try {
+            return result.get();
+        }
+        catch ( final InterruptedException e ) {
+            result.cancel( true );
+            Thread.currentThread().interrupt();
+            throw new InternalAuthenticationServiceException( "Interrupted while authenticating", e );
+        }
+        catch ( final ExecutionException e ) {
+            if ( e.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException) e.getCause();
+            }
+            if ( e.getCause() instanceof Error ) {
+                throw (Error) e.getCause();
+            }
+            throw new InternalAuthenticationServiceException( e.getCause().getMessage(), e.getCause() );
+        }
+    }
+
+}
@@ -1,25 +1,30 @@
 package edu.ncsu.csc.iTrust2.config;
 
+import java.util.Map;
+
 import javax.servlet.Filter;
-import javax.sql.DataSource;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.DefaultAuthenticationEventPublisher;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
-import org.springframework.security.config.annotation.authentication.configurers.provisioning.JdbcUserDetailsManagerConfigurer;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.access.channel.ChannelProcessingFilter;
 import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
 import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
 
+import edu.ncsu.csc.iTrust2.services.security.CachedUserDetailsService;
+
 /**
  * Configures Spring security. Tells Spring how to find users in the system,
  * which API routes (don't) require authentication, and configures a few other
@@ -34,10 +39,17 @@ import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
 public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
     /**
-     * DataSource used for connecting to and interacting with the database.
+     * Looks up users as they log in
      */
     @Autowired
-    DataSource dataSource;
+    private CachedUserDetailsService userDetailsService;
+
+    /**
+     * BCrypt cost for new password hashes; existing hashes are brought in
+     * line as their users log in
+     */
+    @Value ( "${itrust2.security.password.strength:10}" )
+    private int                      passwordStrength;
 
     /**
      * Login configuration for iTrust2.
@@ -50,22 +62,29 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
      */
     @Autowired
     public void configureGlobal ( final AuthenticationManagerBuilder auth ) throws Exception {
-        final JdbcUserDetailsManagerConfigurer<AuthenticationManagerBuilder> dbManager = auth.jdbcAuthentication();
-
-        // User query enabled flag also checks for locked or banned users. The
-        // FailureHandler then
-        // determines if the DisabledUser Exception was due to ban, lockout, or
+        // Users come from a cache in front of the user and role tables. A
+        // user who is not enabled fails with a DisabledException; the
+        // FailureHandler then determines if it was due to ban, lockout, or
         // true disable.
-        // POSSIBLE FUTURE CHANGE: Refactor the UserSource here along the lines
-        // of this:
-        // http://websystique.com/springmvc/spring-mvc-4-and-spring-security-4-integration-example/
-        dbManager.dataSource( dataSource ).passwordEncoder( passwordEncoder() )
-                .usersByUsernameQuery( "select username,password,enabled from user WHERE username = ?;" )
-                .authoritiesByUsernameQuery( "select user_username, roles from user_roles where user_username=?" );
+        auth.authenticationProvider( authenticationProvider() );
         auth.authenticationEventPublisher( defaultAuthenticationEventPublisher() );
 
     }
 
+    /**
+     * Checks usernames and passwords against the users in the system, timing
+     * each check.
+     *
+     * @return The AuthenticationProvider
+     */
+    @Bean
+    public DaoAuthenticationProvider authenticationProvider () {
+        final DaoAuthenticationProvider provider = new TimedAuthenticationProvider();
+        provider.setUserDetailsService( userDetailsService );
+        provider.setPasswordEncoder( passwordEncoder() );
+        return provider;
+    }
+
     /**
      * Method responsible for the Login page. Can be extended to explicitly
      * override other automatic functionality as desired.
@@ -117,7 +136,25 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
      */
     @Bean
     public PasswordEncoder passwordEncoder () {
-        return new BCryptPasswordEncoder();
+        return passwordEncoder( passwordStrength );
+    }
+
+    /**
+     * Creates the PasswordEncoder iTrust2 uses, hashing new passwords with
+     * BCrypt at the given cost. Hashes are stored with an encoder id, so that
+     * another algorithm can be introduced later without breaking existing
+     * hashes; hashes without one are treated as BCrypt.
+     *
+     * @param strength
+     *            BCrypt cost (log rounds) for new hashes
+     * @return The password encoder.
+     */
+    public static PasswordEncoder passwordEncoder ( final int strength ) {
+        final PasswordEncoder bcrypt = new BCryptPasswordEncoder( strength );
+        final DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder( "bcrypt",
+                Map.of( "bcrypt", bcrypt ) );
+        encoder.setDefaultPasswordEncoderForMatches( bcrypt );
+        return encoder;
     }
 
     /**
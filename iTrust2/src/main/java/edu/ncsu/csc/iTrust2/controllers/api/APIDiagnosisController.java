@@ -1,7 +1,6 @@
 package edu.ncsu.csc.iTrust2.controllers.api;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -104,8 +103,7 @@ public class APIDiagnosisController extends APIController {
         loggerUtil.log( TransactionType.DIAGNOSIS_PATIENT_VIEW_ALL, self.getUsername(),
                 self.getUsername() + " viewed their diagnoses" );
 
-        return diagnosisService.findByPatient( self ).stream().map( DiagnosisListForm::new )
-                .collect( Collectors.toList() );
+        return diagnosisService.findListByPatient( self );
     }
 
 }
@@ -1,19 +1,36 @@
 package edu.ncsu.csc.iTrust2.controllers.api;
 
-import java.text.ParseException;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import edu.ncsu.csc.iTrust2.controllers.api.comm.LogEntryRequestBody;
@@ -39,6 +56,9 @@ import edu.ncsu.csc.iTrust2.utils.LoggerUtil;
 @SuppressWarnings ( { "unchecked", "rawtypes" } )
 public class APILogEntryController extends APIController {
 
+    /** First line of a CSV export */
+    private static final String CSV_HEADER = "id,time,transactionType,code,primaryUser,secondaryUser,message\n";
+
     /**
      * LogEntry service
      */
@@ -63,83 +83,75 @@ public class APILogEntryController extends APIController {
      */
     @PostMapping ( BASE_PATH + "/logentries/range" )
     public ResponseEntity getEntryByDateRange ( @RequestBody final LogEntryRequestBody body ) {
-        // If no dates are specified, get all entries, otherwise use the date
-        // range
-        List<LogEntry> entries = null;
-        try {
-            if ( body.getStartDate().equals( "" ) || body.getEndDate().equals( "" ) ) {
-                throw new ParseException( "Date", 1 );
-            }
+        if ( body.getPageLength() < 1 ) {
+            return new ResponseEntity( errorResponse( "Page length must be at least 1" ), HttpStatus.NOT_ACCEPTABLE );
+        }
 
-            // Parse in start/end dates as ZonedDateTimes
-            // from ISO date/time or ISO date strings
-            ZonedDateTime start;
-            try {
-                start = ZonedDateTime.parse( body.getStartDate() );
-            }
-            catch ( final DateTimeParseException ex ) {
-                start = LocalDate.parse( body.getStartDate() ).atStartOfDay( ZoneId.systemDefault() );
-            }
+        // A missing start or end date leaves that end of the range open
+        ZonedDateTime start = null;
+        ZonedDateTime end = null;
 
-            ZonedDateTime end;
-            try {
-                end = ZonedDateTime.parse( body.getEndDate() ).plusDays( 1 );
-            }
-            catch ( final DateTimeParseException ex ) {
-                end = LocalDate.parse( body.getEndDate() ).atStartOfDay( ZoneId.systemDefault() ).plusDays( 1 );
+        try {
+            if ( null != body.getStartDate() && !body.getStartDate().equals( "" ) ) {
+                start = parseDate( body.getStartDate() );
             }
-
-            if ( start.isAfter( end ) ) {
-                return new ResponseEntity( errorResponse( "Start Date is after End Date" ), HttpStatus.NOT_ACCEPTABLE );
+            if ( null != body.getEndDate() && !body.getEndDate().equals( "" ) ) {
+                end = parseDate( body.getEndDate() ).plusDays( 1 );
             }
-            entries = leservice.findByDateRange( LoggerUtil.currentUser(), start, end );
         }
-        catch ( final ParseException ex ) {
-            entries = leservice.findAllForUser( LoggerUtil.currentUser() );
+        catch ( final DateTimeParseException ex ) {
+            return new ResponseEntity( errorResponse( "Could not parse date: " + ex.getParsedString() ),
+                    HttpStatus.BAD_REQUEST );
         }
 
-        // If the entries array is null give an error response
-        if ( entries == null ) {
-            return new ResponseEntity( errorResponse( "Error retrieving Log Entries" ),
-                    HttpStatus.INTERNAL_SERVER_ERROR );
+        if ( null != start && null != end && start.isAfter( end ) ) {
+            return new ResponseEntity( errorResponse( "Start Date is after End Date" ), HttpStatus.NOT_ACCEPTABLE );
         }
 
         // Use only log entries that are viewable by the user
-        List<LogEntry> visible;
-        final User user = userService.findByName( LoggerUtil.currentUser() );
-        if ( user == null || user.getRoles() == null || user.getRoles().contains( Role.ROLE_PATIENT ) ) {
-            visible = new ArrayList<LogEntry>();
-
-            for ( int i = 0; i < entries.size(); i++ ) {
-                final LogEntry le = entries.get( i );
-                if ( le.getLogCode().isPatientViewable() ) {
-                    visible.add( entries.get( i ) );
-                }
-            }
+        final String currentUser = LoggerUtil.currentUser();
+        final Set<Role> roles = userService.findRolesByNames( Collections.singleton( currentUser ) )
+                .get( currentUser );
+        final boolean isPatient = roles == null || roles.isEmpty() || roles.contains( Role.ROLE_PATIENT );
+        final Collection<TransactionType> codes = isPatient ? TransactionType.patientViewable()
+                : Arrays.asList( TransactionType.values() );
+
+        // Filtering, newest-first ordering, and paging all happen in the
+        // database
+        final List<LogEntry> page;
+        final boolean hasNext;
+        if ( body.getPage() < 1 ) {
+            page = Collections.emptyList();
+            hasNext = false;
         }
         else {
-            visible = entries;
+            final Slice<LogEntry> result = leservice.findPageForUser( currentUser, codes, start, end,
+                    body.getPage() - 1, body.getPageLength() );
+            page = result.getContent();
+            hasNext = result.hasNext();
         }
 
-        final int numPages = 1 + visible.size() / body.getPageLength();
-
-        Collections.reverse( visible );
+        // Counting every matching entry would cost as much as reading them
+        // all, so the page count only ever runs one page past this one
+        final int numPages = Math.max( 1, hasNext ? body.getPage() + 1 : body.getPage() );
 
-        // Find only the entries that should show up on the page given the page
-        // and page length
-        final List<LogEntry> page = new ArrayList<LogEntry>();
-        for ( int i = 0; i < body.getPageLength(); i++ ) {
-            final int idx = ( body.getPage() - 1 ) * body.getPageLength() + i;
-            if ( idx >= 0 && visible.size() > idx ) {
-                page.add( visible.get( idx ) );
+        // Look up the roles of everyone else on the page at once
+        final Map<String, Set<Role>> counterparties;
+        if ( isPatient ) {
+            final Set<String> names = new HashSet<String>();
+            for ( final LogEntry le : page ) {
+                names.add( le.getPrimaryUser().equals( currentUser ) ? le.getSecondaryUser() : le.getPrimaryUser() );
             }
+            counterparties = userService.findRolesByNames( names );
+        }
+        else {
+            counterparties = Collections.emptyMap();
         }
 
         // Turn these log entries into proper table rows for the application to
         // display
         final List<LogEntryTableRow> table = new ArrayList<LogEntryTableRow>();
-        for ( int i = 0; i < page.size(); i++ ) {
-            final LogEntry le = page.get( i );
+        for ( final LogEntry le : page ) {
             final LogEntryTableRow row = new LogEntryTableRow();
 
             row.setPrimary( le.getPrimaryUser() );
@@ -151,18 +163,13 @@ public class APILogEntryController extends APIController {
             row.setTransactionType( le.getLogCode().getDescription() );
             row.setNumPages( numPages );
 
-            if ( user == null || user.getRoles() == null || user.getRoles().contains( Role.ROLE_PATIENT ) ) {
+            if ( isPatient ) {
                 row.setPatient( true );
 
-                if ( le.getPrimaryUser().equals( LoggerUtil.currentUser() ) ) {
-                    final User secondary = userService.findByName( le.getSecondaryUser() );
-                    if ( secondary != null ) {
-                        row.setRole( secondary.getRoles().toString() );
-                    }
-                }
-                else {
-                    final User primary = userService.findByName( le.getPrimaryUser() );
-                    row.setRole( primary.getRoles().toString() );
+                final Set<Role> other = counterparties.get(
+                        le.getPrimaryUser().equals( currentUser ) ? le.getSecondaryUser() : le.getPrimaryUser() );
+                if ( other != null && !other.isEmpty() ) {
+                    row.setRole( other.toString() );
                 }
             }
 
@@ -171,9 +178,148 @@ public class APILogEntryController extends APIController {
 
         // Create a log entry as long as the user is on the first page
         if ( body.page == 1 ) {
-            loggerUtil.log( TransactionType.VIEW_USER_LOG, LoggerUtil.currentUser() );
+            loggerUtil.log( TransactionType.VIEW_USER_LOG, currentUser );
         }
         return new ResponseEntity( table, HttpStatus.OK );
     }
 
+    /**
+     * Exports log entries as CSV or newline-delimited JSON. The entries are
+     * written straight to the response as they are read, oldest first, so an
+     * export of any size runs in constant memory. Only available to admins.
+     *
+     * @param user
+     *            Only export entries where this user is the primary or
+     *            secondary user. Optional.
+     * @param startDate
+     *            Only export entries from this date on (ISO date or date/time).
+     *            Optional.
+     * @param endDate
+     *            Only export entries up to the end of this date (ISO date or
+     *            date/time). Optional.
+     * @param type
+     *            Only export entries of these types. Optional.
+     * @param format
+     *            `csv` (default) or `ndjson`
+     * @param response
+     *            Response to write the entries to
+     * @return ResponseEntity with an error, or null once the entries have been
+     *         written
+     * @throws IOException
+     *             If the response cannot be written to
+     */
+    @PreAuthorize ( "hasRole('ROLE_ADMIN')" )
+    @GetMapping ( BASE_PATH + "/logentries/export" )
+    public ResponseEntity exportEntries ( @RequestParam ( required = false ) final String user,
+            @RequestParam ( required = false ) final String startDate,
+            @RequestParam ( required = false ) final String endDate,
+            @RequestParam ( required = false ) final List<TransactionType> type,
+            @RequestParam ( defaultValue = "csv" ) final String format, final HttpServletResponse response )
+            throws IOException {
+        final boolean csv = "csv".equalsIgnoreCase( format );
+        if ( !csv && !"ndjson".equalsIgnoreCase( format ) ) {
+            return new ResponseEntity( errorResponse( "Format must be csv or ndjson" ), HttpStatus.NOT_ACCEPTABLE );
+        }
+
+        ZonedDateTime start = null;
+        ZonedDateTime end = null;
+        try {
+            if ( null != startDate && !startDate.equals( "" ) ) {
+                start = parseDate( startDate );
+            }
+            if ( null != endDate && !endDate.equals( "" ) ) {
+                end = parseDate( endDate ).plusDays( 1 );
+            }
+        }
+        catch ( final DateTimeParseException ex ) {
+            return new ResponseEntity( errorResponse( "Could not parse date" ), HttpStatus.NOT_ACCEPTABLE );
+        }
+        if ( null != start && null != end && start.isAfter( end ) ) {
+            return new ResponseEntity( errorResponse( "Start Date is after End Date" ), HttpStatus.NOT_ACCEPTABLE );
+        }
+        final Collection<TransactionType> codes = null == type || type.isEmpty()
+                ? Arrays.asList( TransactionType.values() ) : type;
+
+        response.setStatus( HttpStatus.OK.value() );
+        response.setContentType( csv ? "text/csv" : "application/x-ndjson" );
+        response.setCharacterEncoding( StandardCharsets.UTF_8.name() );
+        response.setHeader( HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"log-entries." + ( csv ? "csv" : "ndjson" ) + "\"" );
+
+        final Writer out = new BufferedWriter(
+                new OutputStreamWriter( response.getOutputStream(), StandardCharsets.UTF_8 ) );
+        if ( csv ) {
+            out.write( CSV_HEADER );
+        }
+        final long count;
+        try {
+            count = leservice.export( user, codes, start, end, le -> {
+                try {
+                    out.write( csv ? toCsv( le ) : toJson( le ) );
+                    out.write( '\n' );
+                }
+                catch ( final IOException ex ) {
+                    throw new UncheckedIOException( ex );
+                }
+            } );
+        }
+        catch ( final UncheckedIOException ex ) {
+            throw ex.getCause();
+        }
+        out.flush();
+
+        loggerUtil.log( TransactionType.EXPORT_LOG, LoggerUtil.currentUser(), user,
+                "Exported " + count + " log entries" );
+        // The entries have already been written to the response
+        return null;
+    }
+
+    /**
+     * Parses a ZonedDateTime from an ISO date/time or ISO date string. A date
+     * is taken as the start of that day.
+     *
+     * @param date
+     *            Date to parse
+     * @return The parsed date
+     */
+    private static ZonedDateTime parseDate ( final String date ) {
+        try {
+            return ZonedDateTime.parse( date );
+        }
+        catch ( final DateTimeParseException ex ) {
+            return LocalDate.parse( date ).atStartOfDay( ZoneId.systemDefault() );
+        }
+    }
+
+    /**
+     * Formats a LogEntry as one line of a CSV export
+     *
+     * @param le
+     *            Entry to format
+     * @return The CSV line, without a line ending
+     */
+    private static String toCsv ( final LogEntry le ) {
+        return le.getId() + "," + le.getTime().toOffsetDateTime() + "," + le.getLogCode().name() + ","
+                + le.getLogCode().getCode() + "," + csvField( le.getPrimaryUser() ) + ","
+                + csvField( le.getSecondaryUser() ) + "," + csvField( le.getMessage() );
+    }
+
+    /**
+     * Quotes a CSV field if it contains a separator, quote, or line break
+     *
+     * @param value
+     *            Field to quote, may be null
+     * @return The field as it should appear in the CSV
+     */
+    private static String csvField ( final String value ) {
+        if ( null == value ) {
+            return "";
+        }
+        if ( value.indexOf( ',' ) < 0 && value.indexOf( '"' ) < 0 && value.indexOf( '\n' ) < 0
+                && value.indexOf( '\r' ) < 0 ) {
+            return value;
+        }
+        return '"' + value.replace( "\"", "\"\"" ) + '"';
+    }
+
 }
@@ -1,8 +1,15 @@
 package edu.ncsu.csc.iTrust2.controllers.api;
 
 import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -14,6 +21,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
 import edu.ncsu.csc.iTrust2.forms.OfficeVisitForm;
+import edu.ncsu.csc.iTrust2.forms.display.OfficeVisitSummary;
 import edu.ncsu.csc.iTrust2.models.OfficeVisit;
 import edu.ncsu.csc.iTrust2.models.User;
 import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
@@ -32,17 +40,23 @@ import edu.ncsu.csc.iTrust2.utils.LoggerUtil;
 @SuppressWarnings ( { "unchecked", "rawtypes" } )
 public class APIOfficeVisitController extends APIController {
 
+    /** Most visits on a page of summaries */
+    private static final int         MAX_PAGE_SIZE = 100;
+
+    /** Fields a page of summaries may be sorted by */
+    private static final Set<String> SORTABLE      = Set.of( "id", "date", "type", "patient", "hcp", "hospital" );
+
     /** OfficeVisit service */
     @Autowired
-    private OfficeVisitService officeVisitService;
+    private OfficeVisitService       officeVisitService;
 
     /** User service */
     @Autowired
-    private UserService<User>  userService;
+    private UserService<User>        userService;
 
     /** LoggerUtil */
     @Autowired
-    private LoggerUtil         loggerUtil;
+    private LoggerUtil               loggerUtil;
 
     /**
      * Retrieves a list of all OfficeVisits in the database
@@ -84,6 +98,59 @@ public class APIOfficeVisitController extends APIController {
         return officeVisitService.findByPatient( self );
     }
 
+    /**
+     * Retrieves a page of summaries of all OfficeVisits in the database. Takes
+     * the standard `page`, `size` and `sort` parameters, and is sorted newest
+     * first by default.
+     *
+     * @param pageable
+     *            Page to retrieve, and how to sort
+     * @return page of office visit summaries
+     */
+    @GetMapping ( BASE_PATH + "/officevisits/summaries" )
+    @PreAuthorize ( "hasAnyRole('ROLE_HCP')" )
+    public ResponseEntity getOfficeVisitSummaries (
+            @PageableDefault ( sort = "date", direction = Sort.Direction.DESC ) final Pageable pageable ) {
+        loggerUtil.log( TransactionType.VIEW_ALL_OFFICE_VISITS, LoggerUtil.currentUser() );
+        return summaries( pageable, officeVisitService::findSummaries );
+    }
+
+    /**
+     * Retrieves a page of summaries of the office visits for the current HCP.
+     * Takes the standard `page`, `size` and `sort` parameters, and is sorted
+     * newest first by default.
+     *
+     * @param pageable
+     *            Page to retrieve, and how to sort
+     * @return page of office visit summaries
+     */
+    @GetMapping ( BASE_PATH + "/officevisits/HCP/summaries" )
+    @PreAuthorize ( "hasAnyRole('ROLE_HCP')" )
+    public ResponseEntity getOfficeVisitSummariesForHCP (
+            @PageableDefault ( sort = "date", direction = Sort.Direction.DESC ) final Pageable pageable ) {
+        final User self = userService.findByName( LoggerUtil.currentUser() );
+        loggerUtil.log( TransactionType.VIEW_ALL_OFFICE_VISITS, self );
+        return summaries( pageable, page -> officeVisitService.findSummariesByHcp( self, page ) );
+    }
+
+    /**
+     * Retrieves a page of summaries of the office visits for the current
+     * patient. Takes the standard `page`, `size` and `sort` parameters, and is
+     * sorted newest first by default.
+     *
+     * @param pageable
+     *            Page to retrieve, and how to sort
+     * @return page of office visit summaries
+     */
+    @GetMapping ( BASE_PATH + "/officevisits/myofficevisits/summaries" )
+    @PreAuthorize ( "hasAnyRole('ROLE_PATIENT')" )
+    public ResponseEntity getMyOfficeVisitSummaries (
+            @PageableDefault ( sort = "date", direction = Sort.Direction.DESC ) final Pageable pageable ) {
+        final User self = userService.findByName( LoggerUtil.currentUser() );
+        loggerUtil.log( TransactionType.VIEW_ALL_OFFICE_VISITS, self );
+        return summaries( pageable, page -> officeVisitService.findSummariesByPatient( self, page ) );
+    }
+
     /**
      * Retrieves a specific OfficeVisit in the database, with the given ID
      *
@@ -96,11 +163,12 @@ public class APIOfficeVisitController extends APIController {
     public ResponseEntity getOfficeVisit ( @PathVariable final Long id ) {
         final User self = userService.findByName( LoggerUtil.currentUser() );
         loggerUtil.log( TransactionType.GENERAL_CHECKUP_HCP_VIEW, self );
-        if ( !officeVisitService.existsById( id ) ) {
+        final OfficeVisit visit = officeVisitService.findById( id );
+        if ( null == visit ) {
             return new ResponseEntity( HttpStatus.NOT_FOUND );
         }
 
-        return new ResponseEntity( officeVisitService.findById( id ), HttpStatus.OK );
+        return new ResponseEntity( visit, HttpStatus.OK );
     }
 
     /**
@@ -199,4 +267,30 @@ public class APIOfficeVisitController extends APIController {
 
     }
 
+    /**
+     * Finds a page of office visit summaries. The page is at most
+     * MAX_PAGE_SIZE long, and ties in the requested order are broken by id so
+     * that paging through the visits neither skips nor repeats any.
+     *
+     * @param pageable
+     *            Page requested
+     * @param finder
+     *            Finds a page of summaries
+     * @return The page, or an error if it is sorted by an unknown field
+     */
+    private ResponseEntity summaries ( final Pageable pageable,
+            final Function<Pageable, Page<OfficeVisitSummary>> finder ) {
+        for ( final Sort.Order order : pageable.getSort() ) {
+            if ( !SORTABLE.contains( order.getProperty() ) ) {
+                return new ResponseEntity( errorResponse( "Cannot sort office visits by " + order.getProperty() ),
+                        HttpStatus.BAD_REQUEST );
+            }
+        }
+        final Sort sort = pageable.getSort().getOrderFor( "id" ) == null
+                ? pageable.getSort().and( Sort.by( Sort.Direction.DESC, "id" ) ) : pageable.getSort();
+        final Pageable page = PageRequest.of( pageable.getPageNumber(),
+                Math.min( pageable.getPageSize(), MAX_PAGE_SIZE ), sort );
+        return new ResponseEntity( finder.apply( page ), HttpStatus.OK );
+    }
+
 }
@@ -140,6 +140,7 @@ public class APIUserController extends APIController {
             else {
                 user = new Personnel( userF );
             }
+            userService.hashPassword( user, userF.getPassword() );
 
             userService.save( user );
             loggerUtil.log( TransactionType.CREATE_USER, LoggerUtil.currentUser(), user.getUsername(), null );
@@ -176,6 +177,7 @@ public class APIUserController extends APIController {
             else {
                 user = new Personnel( userF );
             }
+            userService.hashPassword( user, userF.getPassword() );
 
             if ( null != user.getId() && !id.equals( user.getId() ) ) {
                 return new ResponseEntity(
@@ -20,7 +20,7 @@ public class LogEntryTableRow {
     private String  transactionType;
     /** boolean for whether or not being viewed by patient */
     private boolean isPatient = false;
-    /** total number of pages in the table */
+    /** number of pages in the table, up to one past the current page */
     private int     numPages  = 1;
 
     /**
@@ -32,7 +32,8 @@ public class LogEntryTableRow {
     }
 
     /**
-     * Returns the number of pages in the table
+     * Returns the number of pages in the table, which is one more than the
+     * current page while there are more entries after it
      *
      * @return number of pages
      */
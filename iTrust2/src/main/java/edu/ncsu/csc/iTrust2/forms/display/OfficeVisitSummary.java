@@ -0,0 +1,127 @@
+package edu.ncsu.csc.iTrust2.forms.display;
+
+import java.time.ZonedDateTime;
+
+import edu.ncsu.csc.iTrust2.models.enums.AppointmentType;
+
+/**
+ * Shows an office visit in a list of visits: when it was, what kind it was,
+ * and who and where it was with. Built directly by the office visit queries,
+ * so that listing visits does not load the visits themselves.
+ *
+ * @author agent
+ *
+ */
+public class OfficeVisitSummary {
+
+    /**
+     * The id of the office visit
+     */
+    private final Long            id;
+
+    /**
+     * The date of the office visit
+     */
+    private final ZonedDateTime   date;
+
+    /**
+     * The type of the office visit
+     */
+    private final AppointmentType type;
+
+    /**
+     * Username of the patient seen
+     */
+    private final String          patient;
+
+    /**
+     * Username of the HCP who saw them
+     */
+    private final String          hcp;
+
+    /**
+     * Name of the hospital the visit was at
+     */
+    private final String          hospital;
+
+    /**
+     * Creates a summary of an office visit
+     *
+     * @param id
+     *            ID of the visit
+     * @param date
+     *            Date of the visit
+     * @param type
+     *            Type of the visit
+     * @param patient
+     *            Username of the patient
+     * @param hcp
+     *            Username of the HCP
+     * @param hospital
+     *            Name of the hospital
+     */
+    public OfficeVisitSummary ( final Long id, final ZonedDateTime date, final AppointmentType type,
+            final String patient, final String hcp, final String hospital ) {
+        this.id = id;
+        this.date = date;
+        this.type = type;
+        this.patient = patient;
+        this.hcp = hcp;
+        this.hospital = hospital;
+    }
+
+    /**
+     * Returns the id of the office visit
+     *
+     * @return the id of the office visit
+     */
+    public Long getId () {
+        return id;
+    }
+
+    /**
+     * Returns the date of the office visit
+     *
+     * @return the date of the office visit
+     */
+    public ZonedDateTime getDate () {
+        return date;
+    }
+
+    /**
+     * Returns the type of the office visit
+     *
+     * @return the type of the office visit
+     */
+    public AppointmentType getType () {
+        return type;
+    }
+
+    /**
+     * Returns the username of the patient
+     *
+     * @return the username of the patient
+     */
+    public String getPatient () {
+        return patient;
+    }
+
+    /**
+     * Returns the username of the HCP
+     *
+     * @return the username of the HCP
+     */
+    public String getHcp () {
+        return hcp;
+    }
+
+    /**
+     * Returns the name of the hospital
+     *
+     * @return the name of the hospital
+     */
+    public String getHospital () {
+        return hospital;
+    }
+
+}
@@ -10,8 +10,10 @@ import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
 import com.google.gson.annotations.JsonAdapter;
@@ -26,10 +28,15 @@ import edu.ncsu.csc.iTrust2.models.enums.Status;
  * actually stored in the database and reflects the persistent information we
  * have on the appointment request.
  *
+ * Requests are indexed by HCP, patient and date, so that the request an office
+ * visit was scheduled by can be looked up directly.
+ *
  * @author Kai Presler-Marshall
  */
 
 @Entity
+@Table ( indexes = @Index ( name = "idx_appointment_request_hcp_patient_date",
+        columnList = "hcp_id, patient_id, date" ) )
 public class AppointmentRequest extends DomainObject {
 
     /**
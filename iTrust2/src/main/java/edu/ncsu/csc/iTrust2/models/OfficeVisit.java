@@ -12,13 +12,22 @@ import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedEntityGraphs;
+import javax.persistence.NamedSubgraph;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
+import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.google.gson.annotations.JsonAdapter;
 
@@ -30,12 +39,42 @@ import edu.ncsu.csc.iTrust2.utils.ValidationUtil;
 /**
  * This is the validated database-persisted office visit representation
  *
+ * Two fetch plans are declared for reading visits. SUMMARY_GRAPH joins in
+ * every single-valued link (patient, HCP, hospital, appointment, metrics and
+ * survey), so that a list of visits is read in one select rather than one per
+ * link per visit; DETAIL_GRAPH also joins in the diagnoses and their codes,
+ * for showing a single visit. The other collections are not in either graph,
+ * as Hibernate cannot join more than one list at a time, and are instead read
+ * with a subselect for every visit that was loaded together.
+ *
+ * Visits are indexed by patient and by HCP, each followed by the date, so that
+ * a patient's or HCP's visits are found, and sorted by date, without a scan.
+ *
  * @author Kai Presler-Marshall
  *
  */
 @Entity
+@NamedEntityGraphs ( {
+        @NamedEntityGraph ( name = OfficeVisit.SUMMARY_GRAPH, attributeNodes = { @NamedAttributeNode ( "patient" ),
+                @NamedAttributeNode ( "hcp" ), @NamedAttributeNode ( "hospital" ),
+                @NamedAttributeNode ( "appointment" ), @NamedAttributeNode ( "basicHealthMetrics" ),
+                @NamedAttributeNode ( "ophthalmologyMetrics" ), @NamedAttributeNode ( "satisfactionSurvey" ) } ),
+        @NamedEntityGraph ( name = OfficeVisit.DETAIL_GRAPH, attributeNodes = { @NamedAttributeNode ( "patient" ),
+                @NamedAttributeNode ( "hcp" ), @NamedAttributeNode ( "hospital" ),
+                @NamedAttributeNode ( "appointment" ), @NamedAttributeNode ( "basicHealthMetrics" ),
+                @NamedAttributeNode ( "ophthalmologyMetrics" ), @NamedAttributeNode ( "satisfactionSurvey" ),
+                @NamedAttributeNode ( value = "diagnoses", subgraph = "diagnoses" ) },
+                subgraphs = @NamedSubgraph ( name = "diagnoses", attributeNodes = @NamedAttributeNode ( "code" ) ) ) } )
+@Table ( indexes = { @Index ( name = "idx_office_visit_patient_date", columnList = "patient_id, date" ),
+        @Index ( name = "idx_office_visit_hcp_date", columnList = "hcp_id, date" ) } )
 public class OfficeVisit extends DomainObject {
 
+    /** Fetch plan for lists of visits */
+    public static final String   SUMMARY_GRAPH = "OfficeVisit.summary";
+
+    /** Fetch plan for a single visit, with its diagnoses */
+    public static final String   DETAIL_GRAPH  = "OfficeVisit.detail";
+
     /**
      * The patient of this office visit
      */
@@ -104,6 +143,7 @@ public class OfficeVisit extends DomainObject {
      * loop
      */
     @OneToMany ( cascade = CascadeType.ALL )
+    @Fetch ( FetchMode.SUBSELECT )
     @JsonManagedReference
     private List<Diagnosis>      diagnoses;
 
@@ -123,6 +163,7 @@ public class OfficeVisit extends DomainObject {
      * Prescriptions associated with this OfficeVisit
      */
     @OneToMany ( cascade = CascadeType.ALL )
+    @Fetch ( FetchMode.SUBSELECT )
     @JsonManagedReference
     private List<Prescription>   prescriptions;
 
@@ -137,6 +178,7 @@ public class OfficeVisit extends DomainObject {
      * The CPT codes associated with this visit
      */
     @ManyToMany ( cascade = CascadeType.ALL )
+    @Fetch ( FetchMode.SUBSELECT )
     private List<CPTCode>        cptCodes;
 
     /**
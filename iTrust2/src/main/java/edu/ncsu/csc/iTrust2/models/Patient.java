@@ -13,6 +13,7 @@ import javax.persistence.Enumerated;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.validator.constraints.Length;
 import org.springframework.data.jpa.convert.threeten.Jsr310JpaConverters.LocalDateConverter;
 
@@ -155,9 +156,11 @@ public class Patient extends User {
     private VaccinationStatus status;
 
     /**
-     * List of permissions associated with their advocates
+     * List of permissions associated with their advocates. Read for up to 100
+     * patients at once, as with their roles.
      */
     @OneToMany ( cascade = CascadeType.ALL )
+    @BatchSize ( size = 100 )
     @JsonManagedReference
     @JsonIgnoreProperties ( "patientAdvocatePermissions" )
     private List<Permission>  patientPermissions;
@@ -15,6 +15,7 @@ import javax.persistence.Id;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.validator.constraints.Length;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -103,9 +104,12 @@ public class User extends DomainObject {
     private Integer   enabled;
 
     /**
-     * The role of the user
+     * The role of the user. Read for up to 100 users at once, so that listing
+     * office visits with many different users does not read each user's roles
+     * separately.
      */
     @ElementCollection ( targetClass = Role.class, fetch = FetchType.EAGER )
+    @BatchSize ( size = 100 )
     @Enumerated ( EnumType.STRING )
     private Set<Role> roles;
 
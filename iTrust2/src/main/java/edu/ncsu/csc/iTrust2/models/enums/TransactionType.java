@@ -1,5 +1,9 @@
 package edu.ncsu.csc.iTrust2.models.enums;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
  * A TransactionType represents an event that took place in the system and that
  * is to be logged. This is used to provide a code that can easily be saved in
@@ -7,7 +11,9 @@ package edu.ncsu.csc.iTrust2.models.enums;
  * user. Also stores whether the event is patient-visible.
  *
  * As new functionality is added to iTrust2, add in new TransactionType codes
- * representing the event.
+ * representing the event. LogEntries store the code, not the position of the
+ * type in this list, so types can be added anywhere; codes must be unique and
+ * must never be reused.
  *
  * @author Kai Presler-Marshall
  * @author Jack MacDonald
@@ -290,6 +296,10 @@ public enum TransactionType {
      * User views their log entries
      */
     VIEW_USER_LOG ( 1201, "Log events viewed", true ),
+    /**
+     * An administrator exports log entries
+     */
+    EXPORT_LOG ( 1202, "Log events exported", false ),
     /**
      * An email is sent to the user on password change
      */
@@ -402,7 +412,13 @@ public enum TransactionType {
     /**
      * List of CPTCodes generated by GenerateCPTCodes
      */
-    CPTCODES_GENERATED ( 2104, "Default CPT codes were generated", false );
+    CPTCODES_GENERATED ( 2104, "Default CPT codes were generated", false ),
+
+    /**
+     * Summary of the HTTP requests intercepted over a time window, for one
+     * endpoint and response code
+     */
+    HTTP_REQUEST_SUMMARY ( 9002, "Summary of HTTP Requests intercepted on the system", false );
 
     /**
      * Creates a TransactionType for logging events
@@ -421,6 +437,63 @@ public enum TransactionType {
         this.patientView = patientViewable;
     }
 
+    /**
+     * Every TransactionType, indexed by its code. Codes are small, so a
+     * sparse array is cheaper to look up than a map or a scan of values().
+     */
+    private static final TransactionType[]    BY_CODE;
+
+    /** Every TransactionType that patients can view */
+    private static final Set<TransactionType> PATIENT_VIEWABLE;
+
+    static {
+        int max = 0;
+        for ( final TransactionType type : values() ) {
+            max = Math.max( max, type.code );
+        }
+        BY_CODE = new TransactionType[max + 1];
+        for ( final TransactionType type : values() ) {
+            if ( null != BY_CODE[type.code] ) {
+                throw new IllegalStateException( "Duplicate TransactionType code " + type.code );
+            }
+            BY_CODE[type.code] = type;
+        }
+
+        final Set<TransactionType> viewable = EnumSet.noneOf( TransactionType.class );
+        for ( final TransactionType type : values() ) {
+            if ( type.patientView ) {
+                viewable.add( type );
+            }
+        }
+        PATIENT_VIEWABLE = Collections.unmodifiableSet( viewable );
+    }
+
+    /**
+     * Retrieves every TransactionType that patients can view
+     *
+     * @return Unmodifiable set of patient-viewable TransactionTypes
+     */
+    public static Set<TransactionType> patientViewable () {
+        return PATIENT_VIEWABLE;
+    }
+
+    /**
+     * Finds the TransactionType with the given code
+     *
+     * @param code
+     *            Code of the event
+     * @return The matching TransactionType
+     * @throws IllegalArgumentException
+     *             If no TransactionType has the code
+     */
+    public static TransactionType parse ( final int code ) {
+        final TransactionType type = code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        if ( null == type ) {
+            throw new IllegalArgumentException( "No TransactionType with code " + code );
+        }
+        return type;
+    }
+
     /**
      * Code of the TransactionType, from the iTrust2 wiki.
      */
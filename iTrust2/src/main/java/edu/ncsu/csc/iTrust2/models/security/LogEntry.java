@@ -8,10 +8,13 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
 import com.google.gson.annotations.JsonAdapter;
 
+import edu.ncsu.csc.iTrust2.adapters.TransactionTypeAttributeConverter;
 import edu.ncsu.csc.iTrust2.adapters.ZonedDateTimeAdapter;
 import edu.ncsu.csc.iTrust2.adapters.ZonedDateTimeAttributeConverter;
 import edu.ncsu.csc.iTrust2.models.DomainObject;
@@ -23,16 +26,24 @@ import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
  * happened), a username, and a time when the event occurred. Has support for an
  * optional secondary user and message for further elaboration
  *
+ * LogEntry is the fastest-growing table in the system, so it is indexed on
+ * (primaryUser, time) and (secondaryUser, time) for the per-user lookups in
+ * LogEntryRepository, and on time for the date-range lookups.
+ *
  * @author Kai Presler-Marshall
  *
  */
 @Entity
+@Table ( indexes = { @Index ( name = "idx_log_entry_primary_user_time", columnList = "primaryUser, time" ),
+        @Index ( name = "idx_log_entry_secondary_user_time", columnList = "secondaryUser, time" ),
+        @Index ( name = "idx_log_entry_time", columnList = "time" ) } )
 public class LogEntry extends DomainObject {
 
     /**
-     * Type of event that has been logged
+     * Type of event that has been logged. Stored as the code of the type.
      */
     @NotNull
+    @Convert ( converter = TransactionTypeAttributeConverter.class )
     private TransactionType logCode;
 
     /**
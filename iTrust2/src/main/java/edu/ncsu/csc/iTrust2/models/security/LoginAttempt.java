@@ -3,6 +3,7 @@ package edu.ncsu.csc.iTrust2.models.security;
 import java.time.ZonedDateTime;
 
 import javax.persistence.Basic;
+import javax.persistence.Column;
 import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -23,10 +24,16 @@ import edu.ncsu.csc.iTrust2.models.User;
  * for a User, but not both. This way, IP lockouts and User lockouts are
  * independent, and clearing one will not affect the other. Once the number of
  * Attempts for a user or IP reaches a threshold, all Attempts are removed and a
- * LoginLockout is created. Attempts do not expire, but are cleared on
- * successful authentication. If an attempt is for a known username, two objects
- * are created, one for the IP and one for the user. If the username is unknown,
- * then only one is created for the IP.
+ * LoginLockout is created. Attempts are cleared on successful authentication.
+ * If an attempt is for a known username, two are counted, one for the IP and
+ * one for the user. If the username is unknown, then only one is counted for
+ * the IP.
+ *
+ * Attempts are counted in memory by LoginAttemptService; this table only holds
+ * its periodic snapshot, so that the counts survive a restart. Each row of the
+ * snapshot holds the number of attempts counted for its IP address or User
+ * in one bucket of the counting window, and is timed at the start of the
+ * bucket.
  *
  * @author Thomas
  * @author Kai Presler-Marshall
@@ -55,6 +62,10 @@ public class LoginAttempt extends DomainObject {
     @JsonAdapter ( ZonedDateTimeAdapter.class )
     private ZonedDateTime time;
 
+    /** Number of attempts the row stands for */
+    @Column ( nullable = false, columnDefinition = "int default 1" )
+    private int           attempts = 1;
+
     /**
      * Returns the ID of the Attempt for Hibernate
      *
@@ -133,4 +144,23 @@ public class LoginAttempt extends DomainObject {
         this.time = time;
     }
 
+    /**
+     * Gets the number of attempts the row stands for
+     *
+     * @return the number of attempts
+     */
+    public int getAttempts () {
+        return attempts;
+    }
+
+    /**
+     * Sets the number of attempts the row stands for
+     *
+     * @param attempts
+     *            the number of attempts to set
+     */
+    public void setAttempts ( final int attempts ) {
+        this.attempts = attempts;
+    }
+
 }
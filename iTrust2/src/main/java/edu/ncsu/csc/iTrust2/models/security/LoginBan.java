@@ -1,5 +1,6 @@
 package edu.ncsu.csc.iTrust2.models.security;
 
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 
 import javax.persistence.Basic;
@@ -8,8 +9,11 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.PrePersist;
+import javax.persistence.Table;
 
 import com.google.gson.annotations.JsonAdapter;
 
@@ -19,35 +23,44 @@ import edu.ncsu.csc.iTrust2.models.DomainObject;
 import edu.ncsu.csc.iTrust2.models.User;
 
 /**
- * Contains info about a LoginBan from the system. A ban does not expire, and
- * can only be removed by an admin (Not Implemented). A ban can be for either a
- * User or an IP.
+ * Contains info about a LoginBan from the system. A ban does not expire,
+ * unless `itrust2.security.ban.duration-days` is set, and can only be removed
+ * by an admin before then (Not Implemented). It records when it ends in
+ * `expiresAt` so that checking for one is a single indexed probe; a ban that
+ * does not expire ends at PERMANENT. Expired bans are deleted by
+ * LoginBlockSweeper. A ban can be for either a User or an IP.
  *
  * @author Thomas
  * @author Kai Presler-Marshall
  *
  */
 @Entity
+@Table ( indexes = { @Index ( name = "idx_login_ban_ip_expires", columnList = "ip, expires_at" ),
+        @Index ( name = "idx_login_ban_user_expires", columnList = "user_id, expires_at" ),
+        @Index ( name = "idx_login_ban_expires", columnList = "expires_at" ) } )
 public class LoginBan extends DomainObject {
 
+    /** When a ban that does not expire ends */
+    public static final ZonedDateTime PERMANENT = ZonedDateTime.of( 9999, 12, 31, 0, 0, 0, 0, ZoneOffset.UTC );
+
     /**
      * ID for the LoginBan
      */
     @Id
     @GeneratedValue ( strategy = GenerationType.AUTO )
-    private Long          id;
+    private Long                      id;
 
     /**
      * IP address that is banned
      */
-    private String        ip;
+    private String                    ip;
 
     /**
      * User that is banned
      */
     @ManyToOne
     @JoinColumn ( name = "user_id", columnDefinition = "varchar(100)" )
-    private User          user;
+    private User                      user;
 
     /**
      * Time the ban occurred at
@@ -56,7 +69,29 @@ public class LoginBan extends DomainObject {
     // Allows the field to show up nicely in the database
     @Convert ( converter = ZonedDateTimeAttributeConverter.class )
     @JsonAdapter ( ZonedDateTimeAdapter.class )
-    private ZonedDateTime time;
+    private ZonedDateTime             time;
+
+    /**
+     * Time the ban ends at
+     */
+    @Basic
+    @Convert ( converter = ZonedDateTimeAttributeConverter.class )
+    @JsonAdapter ( ZonedDateTimeAdapter.class )
+    private ZonedDateTime             expiresAt;
+
+    /**
+     * Fills in when the ban started and ends, if they have not been set. A ban
+     * with no end does not expire.
+     */
+    @PrePersist
+    public void setDefaultExpiry () {
+        if ( null == time ) {
+            time = ZonedDateTime.now();
+        }
+        if ( null == expiresAt ) {
+            expiresAt = PERMANENT;
+        }
+    }
 
     /**
      * Returns the ID of the LoginBan for Hibernate
@@ -135,4 +170,23 @@ public class LoginBan extends DomainObject {
         this.time = time;
     }
 
+    /**
+     * Returns the end time of the ban.
+     *
+     * @return the expiry time
+     */
+    public ZonedDateTime getExpiresAt () {
+        return expiresAt;
+    }
+
+    /**
+     * Sets the end time of the ban. Defaults to PERMANENT.
+     *
+     * @param expiresAt
+     *            the expiry time to set
+     */
+    public void setExpiresAt ( final ZonedDateTime expiresAt ) {
+        this.expiresAt = expiresAt;
+    }
+
 }
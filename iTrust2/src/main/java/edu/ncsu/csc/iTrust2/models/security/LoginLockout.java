@@ -1,5 +1,6 @@
 package edu.ncsu.csc.iTrust2.models.security;
 
+import java.time.Duration;
 import java.time.ZonedDateTime;
 
 import javax.persistence.Basic;
@@ -8,8 +9,11 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.PrePersist;
+import javax.persistence.Table;
 
 import com.google.gson.annotations.JsonAdapter;
 
@@ -24,32 +28,62 @@ import edu.ncsu.csc.iTrust2.models.User;
  * result in a LoginBan. Upon the elevation to a LoginBan, all associated
  * LoginLockout objects are deleted.
  *
+ * A lockout lasts DURATION, and records when it ends in `expiresAt` so that
+ * checking for one is a single indexed probe. It is kept for a day after it
+ * started, to count towards a ban, and deleted by LoginBlockSweeper after that.
+ *
  * @author Thomas
  * @author Kai Presler-Marshall
  *
  */
 @Entity
+@Table ( indexes = { @Index ( name = "idx_login_lockout_ip_expires", columnList = "ip, expires_at" ),
+        @Index ( name = "idx_login_lockout_user_expires", columnList = "user_id, expires_at" ),
+        @Index ( name = "idx_login_lockout_expires", columnList = "expires_at" ) } )
 public class LoginLockout extends DomainObject {
 
+    /** How long a lockout lasts */
+    public static final Duration DURATION = Duration.ofMinutes( 60 );
+
     /** ID of the LoginLockout */
     @Id
     @GeneratedValue ( strategy = GenerationType.AUTO )
-    private Long          id;
+    private Long                 id;
 
     /** IP address for the LoginLockout */
-    private String        ip;
+    private String               ip;
 
     /** User for the LoginLockout */
     @ManyToOne
     @JoinColumn ( name = "user_id", columnDefinition = "varchar(100)" )
-    private User          user;
+    private User                 user;
 
     /** Time of the LoginLockout */
     @Basic
     // Allows the field to show up nicely in the database
     @Convert ( converter = ZonedDateTimeAttributeConverter.class )
     @JsonAdapter ( ZonedDateTimeAdapter.class )
-    private ZonedDateTime time;
+    private ZonedDateTime        time;
+
+    /** When the LoginLockout ends */
+    @Basic
+    @Convert ( converter = ZonedDateTimeAttributeConverter.class )
+    @JsonAdapter ( ZonedDateTimeAdapter.class )
+    private ZonedDateTime        expiresAt;
+
+    /**
+     * Fills in when the lockout ends, if it has not been set, from when it
+     * started
+     */
+    @PrePersist
+    public void setDefaultExpiry () {
+        if ( null == time ) {
+            time = ZonedDateTime.now();
+        }
+        if ( null == expiresAt ) {
+            expiresAt = time.plus( DURATION );
+        }
+    }
 
     /**
      * Retunrns the ID of the LoginLockout for hibernate.
@@ -130,4 +164,23 @@ public class LoginLockout extends DomainObject {
         this.time = time;
     }
 
+    /**
+     * Returns when the lockout ends.
+     *
+     * @return the expiry time
+     */
+    public ZonedDateTime getExpiresAt () {
+        return expiresAt;
+    }
+
+    /**
+     * Sets when the lockout ends. Defaults to DURATION after it started.
+     *
+     * @param expiresAt
+     *            the expiry time to set
+     */
+    public void setExpiresAt ( final ZonedDateTime expiresAt ) {
+        this.expiresAt = expiresAt;
+    }
+
 }
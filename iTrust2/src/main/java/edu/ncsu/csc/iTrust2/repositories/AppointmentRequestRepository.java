@@ -1,5 +1,6 @@
 package edu.ncsu.csc.iTrust2.repositories;
 
+import java.time.ZonedDateTime;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -45,4 +46,18 @@ public interface AppointmentRequestRepository extends JpaRepository<AppointmentR
      */
     public List<AppointmentRequest> findByHcpAndPatient ( User hcp, User patient );
 
+    /**
+     * Find the AppointmentRequest for a given HCP and Patient at exactly the
+     * given time
+     * 
+     * @param hcp
+     *            HCP to search by
+     * @param patient
+     *            Patient to search by
+     * @param date
+     *            Time of the appointment
+     * @return The first matching AR, or null if there is none
+     */
+    public AppointmentRequest findFirstByHcpAndPatientAndDate ( User hcp, User patient, ZonedDateTime date );
+
 }
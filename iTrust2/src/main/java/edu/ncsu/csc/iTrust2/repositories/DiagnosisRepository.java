@@ -2,10 +2,13 @@ package edu.ncsu.csc.iTrust2.repositories;
 
 import java.util.List;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import edu.ncsu.csc.iTrust2.models.Diagnosis;
 import edu.ncsu.csc.iTrust2.models.OfficeVisit;
+import edu.ncsu.csc.iTrust2.models.User;
 
 /**
  * Repository for interacting with Diagnosis model. Method implementations
@@ -25,4 +28,19 @@ public interface DiagnosisRepository extends JpaRepository<Diagnosis, Long> {
      */
     public List<Diagnosis> findByVisit ( OfficeVisit visit );
 
+    /**
+     * Find Diagnoses made in any OfficeVisit for a given Patient, oldest visit
+     * first. The visits, everything they link to directly, and the ICDCodes
+     * are read in the same query.
+     * 
+     * @param patient
+     *            Patient to search by
+     * @return Matching Diagnoses
+     */
+    @EntityGraph ( attributePaths = { "code", "visit", "visit.patient", "visit.hcp", "visit.hospital",
+            "visit.appointment", "visit.basicHealthMetrics", "visit.ophthalmologyMetrics",
+            "visit.satisfactionSurvey" } )
+    @Query ( "SELECT d FROM Diagnosis d WHERE d.visit.patient = ?1 ORDER BY d.visit.date, d.id" )
+    public List<Diagnosis> findByPatient ( User patient );
+
 }
@@ -2,20 +2,56 @@ package edu.ncsu.csc.iTrust2.repositories;
 
 import java.util.List;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import edu.ncsu.csc.iTrust2.forms.display.OfficeVisitSummary;
 import edu.ncsu.csc.iTrust2.models.OfficeVisit;
 import edu.ncsu.csc.iTrust2.models.User;
 
 /**
  * Repository for interacting with OfficeVisit model. Method implementations
- * generated by Spring
+ * generated by Spring. Lists of visits are read with OfficeVisit.SUMMARY_GRAPH
+ * and single visits with OfficeVisit.DETAIL_GRAPH. Pages of visits are read
+ * as OfficeVisitSummary projections; the patient, HCP and hospital are their
+ * keys, so these read the office visit table alone.
  *
  * @author Kai Presler-Marshall
  *
  */
 public interface OfficeVisitRepository extends JpaRepository<OfficeVisit, Long> {
 
+    /** Constructor expression building an OfficeVisitSummary from visit v */
+    public static final String SUMMARY = "edu.ncsu.csc.iTrust2.forms.display.OfficeVisitSummary"
+            + "( v.id, v.date, v.type, v.patient.username, v.hcp.username, v.hospital.name )";
+
+    /**
+     * Finds every office visit
+     *
+     * @return All visits
+     */
+    @Override
+    @EntityGraph ( OfficeVisit.SUMMARY_GRAPH )
+    public List<OfficeVisit> findAll ();
+
+    /**
+     * Finds an office visit along with its diagnoses
+     *
+     * @param id
+     *            ID of the visit
+     * @return The visit, or null if there is none
+     */
+    @EntityGraph ( OfficeVisit.DETAIL_GRAPH )
+    @Query ( "SELECT DISTINCT v FROM OfficeVisit v WHERE v.id = ?1" )
+    @QueryHints ( @QueryHint ( name = org.hibernate.jpa.QueryHints.HINT_PASS_DISTINCT_THROUGH, value = "false" ) )
+    public OfficeVisit findWithDetailsById ( Long id );
+
     /**
      * Find office visits for a given patient
      * 
@@ -23,6 +59,7 @@ public interface OfficeVisitRepository extends JpaRepository<OfficeVisit, Long>
      *            HCP to search by
      * @return Matching visits
      */
+    @EntityGraph ( OfficeVisit.SUMMARY_GRAPH )
     public List<OfficeVisit> findByHcp ( User hcp );
 
     /**
@@ -32,6 +69,7 @@ public interface OfficeVisitRepository extends JpaRepository<OfficeVisit, Long>
      *            Patient to search by
      * @return Matching visits
      */
+    @EntityGraph ( OfficeVisit.SUMMARY_GRAPH )
     public List<OfficeVisit> findByPatient ( User patient );
 
     /**
@@ -43,6 +81,44 @@ public interface OfficeVisitRepository extends JpaRepository<OfficeVisit, Long>
      *            Patient to search by
      * @return Matching visits
      */
+    @EntityGraph ( OfficeVisit.SUMMARY_GRAPH )
     public List<OfficeVisit> findByHcpAndPatient ( User hcp, User patient );
 
+    /**
+     * Finds a page of summaries of every office visit
+     *
+     * @param pageable
+     *            Page to find, and how to sort
+     * @return Page of summaries
+     */
+    @Query ( value = "SELECT new " + SUMMARY + " FROM OfficeVisit v",
+            countQuery = "SELECT COUNT(v) FROM OfficeVisit v" )
+    public Page<OfficeVisitSummary> findSummaries ( Pageable pageable );
+
+    /**
+     * Finds a page of summaries of the office visits for a given HCP
+     *
+     * @param hcp
+     *            HCP to search by
+     * @param pageable
+     *            Page to find, and how to sort
+     * @return Page of summaries
+     */
+    @Query ( value = "SELECT new " + SUMMARY + " FROM OfficeVisit v WHERE v.hcp = ?1",
+            countQuery = "SELECT COUNT(v) FROM OfficeVisit v WHERE v.hcp = ?1" )
+    public Page<OfficeVisitSummary> findSummariesByHcp ( User hcp, Pageable pageable );
+
+    /**
+     * Finds a page of summaries of the office visits for a given patient
+     *
+     * @param patient
+     *            Patient to search by
+     * @param pageable
+     *            Page to find, and how to sort
+     * @return Page of summaries
+     */
+    @Query ( value = "SELECT new " + SUMMARY + " FROM OfficeVisit v WHERE v.patient = ?1",
+            countQuery = "SELECT COUNT(v) FROM OfficeVisit v WHERE v.patient = ?1" )
+    public Page<OfficeVisitSummary> findSummariesByPatient ( User patient, Pageable pageable );
+
 }
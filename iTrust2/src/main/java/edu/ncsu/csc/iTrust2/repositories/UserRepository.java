@@ -1,6 +1,12 @@
 package edu.ncsu.csc.iTrust2.repositories;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 import edu.ncsu.csc.iTrust2.models.User;
 
@@ -33,4 +39,32 @@ public interface UserRepository <T extends User> extends JpaRepository<T, String
      */
     public User findByUsername ( String username );
 
+    /**
+     * Finds every User with one of the given usernames, along with their
+     * roles, in a single query
+     *
+     * @param usernames
+     *            Usernames to find
+     * @return Matching users; usernames that do not exist are skipped
+     */
+    @Query ( "SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.roles WHERE u.username IN ?1" )
+    public List<User> findWithRolesByUsernameIn ( Collection<String> usernames );
+
+    /**
+     * Replaces the password hash of a User, but only if it is still the one
+     * given
+     *
+     * @param username
+     *            User to update
+     * @param oldHash
+     *            Hash the User is expected to have
+     * @param newHash
+     *            Hash to replace it with
+     * @return The number of Users updated
+     */
+    @Transactional
+    @Modifying
+    @Query ( "UPDATE User u SET u.password = ?3 WHERE u.username = ?1 AND u.password = ?2" )
+    public int updatePasswordIfUnchanged ( String username, String oldHash, String newHash );
+
 }
@@ -1,22 +1,61 @@
 package edu.ncsu.csc.iTrust2.repositories.security;
 
 import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 
+import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
 import edu.ncsu.csc.iTrust2.models.security.LogEntry;
 
 /**
  * Repository for interacting with LogEntry model. Method implementations
  * generated by Spring
  *
+ * The per-user lookups are written as a UNION ALL of a primary-user branch and
+ * a secondary-user branch rather than with an OR, so that each branch can use
+ * its own (user, time) index on the LogEntry table instead of scanning it. The
+ * secondary branch skips rows where the user is also the primary user so that
+ * no entry is returned twice.
+ *
+ * The stream* lookups are for bulk exports. Their fetch size of
+ * Integer.MIN_VALUE tells the MySQL driver to stream rows from a server-side
+ * cursor instead of reading the whole result into memory; they must be called,
+ * and the stream consumed and closed, inside a transaction.
+ *
  * @author Kai Presler-Marshall
  *
  */
 public interface LogEntryRepository extends JpaRepository<LogEntry, Long> {
 
+    /**
+     * Newest-first page of a user's entries; see findPageByUser. Public so
+     * that its query plan can be checked.
+     */
+    public static final String PAGE_BY_USER  = "SELECT le.* FROM ( ( SELECT * FROM log_entry WHERE primary_user = ?1 "
+            + "AND log_code IN ?2 AND time BETWEEN ?3 AND ?4 ORDER BY time DESC, id DESC LIMIT ?5 ) "
+            + "UNION ALL ( SELECT * FROM log_entry WHERE secondary_user = ?1 AND primary_user <> ?1 "
+            + "AND log_code IN ?2 AND time BETWEEN ?3 AND ?4 ORDER BY time DESC, id DESC LIMIT ?5 ) ) le "
+            + "ORDER BY le.time DESC, le.id DESC LIMIT ?6 OFFSET ?7";
+
+    /**
+     * Bounded count of a user's entries; see countByUserUpTo. Public so that
+     * its query plan can be checked.
+     */
+    public static final String COUNT_BY_USER = "SELECT COUNT(*) FROM ( ( SELECT id FROM log_entry "
+            + "WHERE primary_user = ?1 AND log_code IN ?2 AND time BETWEEN ?3 AND ?4 LIMIT ?5 ) "
+            + "UNION ALL ( SELECT id FROM log_entry WHERE secondary_user = ?1 AND primary_user <> ?1 "
+            + "AND log_code IN ?2 AND time BETWEEN ?3 AND ?4 LIMIT ?5 ) ) le";
+
     /**
      * Retrieves a list of LogEntry records between (inclusive) two dates.
      *
@@ -28,6 +67,17 @@ public interface LogEntryRepository extends JpaRepository<LogEntry, Long> {
      */
     public List<LogEntry> findByTimeBetween ( ZonedDateTime fromDate, ZonedDateTime toDate );
 
+    /**
+     * Retrieves LogEntry records from before a date, a page at a time.
+     *
+     * @param cutoff
+     *            Date to search before
+     * @param pageable
+     *            Number of records to retrieve, and their order
+     * @return List of matching records
+     */
+    public List<LogEntry> findByTimeBefore ( ZonedDateTime cutoff, Pageable pageable );
+
     /**
      * Retrieves all log entries for a user where they are either the primary or
      * secondary user on the Entry.
@@ -36,7 +86,132 @@ public interface LogEntryRepository extends JpaRepository<LogEntry, Long> {
      *            User to search on
      * @return List of matching records
      */
-    @Query ( "SELECT le FROM LogEntry le WHERE le.primaryUser = ?1 OR le.secondaryUser = ?1" )
+    @Query ( value = "SELECT * FROM log_entry WHERE primary_user = ?1 "
+            + "UNION ALL SELECT * FROM log_entry WHERE secondary_user = ?1 AND primary_user <> ?1",
+            nativeQuery = true )
     public List<LogEntry> findByPrimaryUserOrSecondaryUser ( String user );
 
+    /**
+     * Retrieves all log entries for a user, where they are either the primary
+     * or secondary user, between (inclusive) two dates.
+     *
+     * @param user
+     *            User to search on
+     * @param fromDate
+     *            Starting date
+     * @param toDate
+     *            Ending date
+     * @return List of matching records
+     */
+    @Query ( value = "SELECT * FROM log_entry WHERE primary_user = ?1 AND time BETWEEN ?2 AND ?3 "
+            + "UNION ALL SELECT * FROM log_entry WHERE secondary_user = ?1 AND primary_user <> ?1 "
+            + "AND time BETWEEN ?2 AND ?3", nativeQuery = true )
+    public List<LogEntry> findByUserAndTimeBetween ( String user, ZonedDateTime fromDate, ZonedDateTime toDate );
+
+    /**
+     * Retrieves one page of the log entries for a user, where they are either
+     * the primary or secondary user, restricted to the given types and to
+     * between (inclusive) two dates. Entries are ordered newest first.
+     *
+     * Each branch of the union is ordered and limited on its own, walking its
+     * (user, time) index newest first and stopping after `fetch` rows, so a
+     * page costs time proportional to how far into the log it is rather than
+     * to the size of the user's history. `fetch` must be at least `offset +
+     * limit`.
+     *
+     * @param user
+     *            User to search on
+     * @param codes
+     *            Types of entries to include, as stored in the log_code column
+     * @param fromDate
+     *            Starting date
+     * @param toDate
+     *            Ending date
+     * @param fetch
+     *            Most rows read from each branch
+     * @param limit
+     *            Number of entries on the page
+     * @param offset
+     *            Number of entries before the page
+     * @return Matching records on the page
+     */
+    @Query ( value = PAGE_BY_USER, nativeQuery = true )
+    public List<LogEntry> findPageByUser ( String user, Collection<Integer> codes, ZonedDateTime fromDate,
+            ZonedDateTime toDate, long fetch, int limit, long offset );
+
+    /**
+     * Counts the log entries for a user, as findPageByUser would find them,
+     * reading at most `atMost` rows from each branch. The result is exact if
+     * it is less than `atMost`, and otherwise only says that there are at
+     * least that many.
+     *
+     * @param user
+     *            User to search on
+     * @param codes
+     *            Types of entries to include, as stored in the log_code column
+     * @param fromDate
+     *            Starting date
+     * @param toDate
+     *            Ending date
+     * @param atMost
+     *            Most rows read from each branch
+     * @return Number of matching records, up to the bound
+     */
+    @Query ( value = COUNT_BY_USER, nativeQuery = true )
+    public long countByUserUpTo ( String user, Collection<Integer> codes, ZonedDateTime fromDate,
+            ZonedDateTime toDate, long atMost );
+
+    /**
+     * Streams the log entries of the given types between (inclusive) two
+     * dates, oldest first
+     *
+     * @param codes
+     *            Types of entries to include
+     * @param fromDate
+     *            Starting date
+     * @param toDate
+     *            Ending date
+     * @return Stream of matching records. Must be closed.
+     */
+    @QueryHints ( @QueryHint ( name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE ) )
+    @Query ( "SELECT le FROM LogEntry le WHERE le.logCode IN ?1 AND le.time BETWEEN ?2 AND ?3 "
+            + "ORDER BY le.time, le.id" )
+    public Stream<LogEntry> streamByTimeBetween ( Collection<TransactionType> codes, ZonedDateTime fromDate,
+            ZonedDateTime toDate );
+
+    /**
+     * Streams the log entries of the given types for a user, where they are
+     * either the primary or secondary user, between (inclusive) two dates,
+     * oldest first
+     *
+     * @param user
+     *            User to search on
+     * @param codes
+     *            Types of entries to include, as stored in the log_code column
+     * @param fromDate
+     *            Starting date
+     * @param toDate
+     *            Ending date
+     * @return Stream of matching records. Must be closed.
+     */
+    @QueryHints ( @QueryHint ( name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE ) )
+    @Query ( value = "SELECT le.* FROM ( SELECT * FROM log_entry WHERE primary_user = ?1 AND log_code IN ?2 "
+            + "AND time BETWEEN ?3 AND ?4 UNION ALL SELECT * FROM log_entry WHERE secondary_user = ?1 "
+            + "AND primary_user <> ?1 AND log_code IN ?2 AND time BETWEEN ?3 AND ?4 ) le "
+            + "ORDER BY le.time, le.id", nativeQuery = true )
+    public Stream<LogEntry> streamByUserAndTimeBetween ( String user, Collection<Integer> codes,
+            ZonedDateTime fromDate, ZonedDateTime toDate );
+
+    /**
+     * Deletes the LogEntries with the given IDs, in one statement
+     *
+     * @param ids
+     *            The IDs to delete.
+     * @return The number of records deleted.
+     */
+    @Transactional
+    @Modifying
+    @Query ( "DELETE FROM LogEntry le WHERE le.id IN ?1" )
+    public int deleteByIdIn ( Collection<Long> ids );
+
 }
@@ -1,5 +1,8 @@
 package edu.ncsu.csc.iTrust2.repositories.security;
 
+import java.time.ZonedDateTime;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import edu.ncsu.csc.iTrust2.models.User;
@@ -50,4 +53,22 @@ public interface LoginAttemptRepository extends JpaRepository<LoginAttempt, Long
      */
     public long deleteByUser ( User user );
 
+    /**
+     * Finds the LoginAttempts made after a given time
+     *
+     * @param time
+     *            Time to search after
+     * @return The matching LoginAttempts
+     */
+    public List<LoginAttempt> findByTimeAfter ( ZonedDateTime time );
+
+    /**
+     * Deletes the LoginAttempts made before a given time
+     *
+     * @param time
+     *            Time to delete before
+     * @return The number of records deleted
+     */
+    public long deleteByTimeBefore ( ZonedDateTime time );
+
 }
@@ -1,6 +1,14 @@
 package edu.ncsu.csc.iTrust2.repositories.security;
 
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 import edu.ncsu.csc.iTrust2.models.User;
 import edu.ncsu.csc.iTrust2.models.security.LoginBan;
@@ -50,4 +58,62 @@ public interface LoginBanRepository extends JpaRepository<LoginBan, Long> {
      */
     public long deleteByUser ( User user );
 
+    /**
+     * Retrieves every LoginBan on an IP address that ends after the given time
+     *
+     * @param time
+     *            The time to search after.
+     * @return The list of IP LoginBans.
+     */
+    public List<LoginBan> findByIpNotNullAndExpiresAtAfter ( ZonedDateTime time );
+
+    /**
+     * Checks to see if there is a LoginBan for the given IP address that ends
+     * after the given time.
+     *
+     * @param ipAddress
+     *            The IP address to search by.
+     * @param time
+     *            The time to search after.
+     * @return True iff a ban was found.
+     */
+    public boolean existsByIpAndExpiresAtAfter ( String ipAddress, ZonedDateTime time );
+
+    /**
+     * Checks to see if there is a LoginBan for the given user that ends after
+     * the given time.
+     *
+     * @param user
+     *            The User to search by.
+     * @param time
+     *            The time to search after.
+     * @return True iff a ban was found.
+     */
+    public boolean existsByUserAndExpiresAtAfter ( User user, ZonedDateTime time );
+
+    /**
+     * Finds the IDs of LoginBans that ended before the given time, a page at a
+     * time
+     *
+     * @param time
+     *            The time to search before.
+     * @param page
+     *            How many IDs to return.
+     * @return The IDs of the matching LoginBans.
+     */
+    @Query ( "SELECT b.id FROM LoginBan b WHERE b.expiresAt < ?1" )
+    public List<Long> findIdsByExpiresAtBefore ( ZonedDateTime time, Pageable page );
+
+    /**
+     * Deletes the LoginBans with the given IDs, in one statement
+     *
+     * @param ids
+     *            The IDs to delete.
+     * @return The number of records deleted.
+     */
+    @Transactional
+    @Modifying
+    @Query ( "DELETE FROM LoginBan b WHERE b.id IN ?1" )
+    public int deleteByIdIn ( Collection<Long> ids );
+
 }
@@ -1,8 +1,14 @@
 package edu.ncsu.csc.iTrust2.repositories.security;
 
+import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 import edu.ncsu.csc.iTrust2.models.User;
 import edu.ncsu.csc.iTrust2.models.security.LoginLockout;
@@ -52,4 +58,87 @@ public interface LoginLockoutRepository extends JpaRepository<LoginLockout, Long
      */
     public long deleteByUser ( User user );
 
+    /**
+     * Retrieves every LoginLockout on an IP address that ends after the given
+     * time
+     *
+     * @param time
+     *            The time to search after.
+     * @return The list of matching LoginLockouts.
+     */
+    public List<LoginLockout> findByIpNotNullAndExpiresAtAfter ( ZonedDateTime time );
+
+    /**
+     * Checks whether there is a LoginLockout for the given IP address that
+     * ends after the given time
+     *
+     * @param ipAddress
+     *            The IP address to search on.
+     * @param time
+     *            The time to search after.
+     * @return Whether any LoginLockout matched.
+     */
+    public boolean existsByIpAndExpiresAtAfter ( String ipAddress, ZonedDateTime time );
+
+    /**
+     * Counts the LoginLockouts for the given IP address that end after the
+     * given time
+     *
+     * @param ipAddress
+     *            The IP address to search on.
+     * @param time
+     *            The time to search after.
+     * @return The number of matching LoginLockouts.
+     */
+    public long countByIpAndExpiresAtAfter ( String ipAddress, ZonedDateTime time );
+
+    /**
+     * Checks whether there is a LoginLockout for the given user that ends
+     * after the given time
+     *
+     * @param user
+     *            The User to search on.
+     * @param time
+     *            The time to search after.
+     * @return Whether any LoginLockout matched.
+     */
+    public boolean existsByUserAndExpiresAtAfter ( User user, ZonedDateTime time );
+
+    /**
+     * Counts the LoginLockouts for the given user that end after the given
+     * time
+     *
+     * @param user
+     *            The User to search on.
+     * @param time
+     *            The time to search after.
+     * @return The number of matching LoginLockouts.
+     */
+    public long countByUserAndExpiresAtAfter ( User user, ZonedDateTime time );
+
+    /**
+     * Finds the IDs of LoginLockouts that ended before the given time, a page
+     * at a time
+     *
+     * @param time
+     *            The time to search before.
+     * @param page
+     *            How many IDs to return.
+     * @return The IDs of the matching LoginLockouts.
+     */
+    @Query ( "SELECT l.id FROM LoginLockout l WHERE l.expiresAt < ?1" )
+    public List<Long> findIdsByExpiresAtBefore ( ZonedDateTime time, Pageable page );
+
+    /**
+     * Deletes the LoginLockouts with the given IDs, in one statement
+     *
+     * @param ids
+     *            The IDs to delete.
+     * @return The number of records deleted.
+     */
+    @Transactional
+    @Modifying
+    @Query ( "DELETE FROM LoginLockout l WHERE l.id IN ?1" )
+    public int deleteByIdIn ( Collection<Long> ids );
+
 }
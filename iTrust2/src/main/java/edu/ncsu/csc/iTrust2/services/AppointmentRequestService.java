@@ -75,6 +75,23 @@ public class AppointmentRequestService extends Service<AppointmentRequest, Long>
         return repository.findByHcpAndPatient( hcp, patient );
     }
 
+    /**
+     * Find the appointment request for a given HCP and patient at exactly the
+     * given time
+     *
+     * @param hcp
+     *            HCP for lookups
+     * @param patient
+     *            Patient for lookups
+     * @param date
+     *            Time of the appointment
+     * @return Matching request, or null if there is none
+     */
+    public AppointmentRequest findByHcpAndPatientAndDate ( final User hcp, final User patient,
+            final ZonedDateTime date ) {
+        return repository.findFirstByHcpAndPatientAndDate( hcp, patient, date );
+    }
+
     /**
      * Builds an AppointmentRequest from the deserialised form
      *
@@ -43,9 +43,25 @@ public class BasicHealthMetricsService extends Service<BasicHealthMetrics, Long>
      * @return Built BasicHealthMetrics object
      */
     public BasicHealthMetrics build ( final OfficeVisitForm ovf ) {
+        return build( ovf, userService.findByName( ovf.getPatient() ), userService.findByName( ovf.getHcp() ) );
+    }
+
+    /**
+     * Builds a BasicHealthMetrics object from the Form class, with the Patient
+     * and HCP it refers to already looked up
+     *
+     * @param ovf
+     *            OfficeVisitForm
+     * @param patient
+     *            Patient named by the form
+     * @param hcp
+     *            HCP named by the form
+     * @return Built BasicHealthMetrics object
+     */
+    public BasicHealthMetrics build ( final OfficeVisitForm ovf, final User patient, final User hcp ) {
         final BasicHealthMetrics bhm = new BasicHealthMetrics();
-        bhm.setPatient( userService.findByName( ovf.getPatient() ) );
-        bhm.setHcp( userService.findByName( ovf.getHcp() ) );
+        bhm.setPatient( patient );
+        bhm.setHcp( hcp );
 
         bhm.setDiastolic( ovf.getDiastolic() );
         bhm.setHdl( ovf.getHdl() );
@@ -0,0 +1,135 @@
+package edu.ncsu.csc.iTrust2.services;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.iTrust2.forms.DiagnosisListForm;
+import edu.ncsu.csc.iTrust2.models.Diagnosis;
+import edu.ncsu.csc.iTrust2.models.ICDCode;
+import edu.ncsu.csc.iTrust2.models.Personnel;
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.Role;
+import edu.ncsu.csc.iTrust2.repositories.DiagnosisRepository;
+import edu.ncsu.csc.iTrust2.utils.ExpiringLruCache;
+
+/**
+ * Cache of the diagnoses of patients, by username, as shown on their diagnoses
+ * page. Holds at most `itrust2.cache.diagnoses.max-size` patients, evicting the
+ * least recently used, and forgets each one after
+ * `itrust2.cache.diagnoses.ttl-ms`. Setting the size to 0 turns the cache off,
+ * and every lookup goes to the database.
+ *
+ * Diagnoses are held as DiagnosisListForms whose HCP and ICD-10 code are plain
+ * copies, holding the HCP's username, roles and status and the code and its
+ * description, so no entities read by the load are kept.
+ * OfficeVisitService invalidates a patient whenever one of their visits is
+ * saved or deleted, and DiagnosisService whenever one of their diagnoses is;
+ * ICDCodeService invalidates every patient whenever an ICD-10 code changes.
+ * Changes made by another instance of the application are picked up once the
+ * entry expires.
+ *
+ * @author agent
+ *
+ */
+@Component
+public class DiagnosisListCache {
+
+    /** Repository to load diagnoses from */
+    @Autowired
+    private DiagnosisRepository                               repository;
+
+    /** Most patients to hold; 0 to turn the cache off */
+    @Value ( "${itrust2.cache.diagnoses.max-size:1000}" )
+    private int                                               maxSize;
+
+    /** How long a patient is held for */
+    @Value ( "${itrust2.cache.diagnoses.ttl-ms:300000}" )
+    private long                                              ttlMillis;
+
+    /** Cached diagnoses */
+    private ExpiringLruCache<String, List<DiagnosisListForm>> cache;
+
+    /**
+     * Creates the cache, once its size and lifetime are known
+     */
+    @PostConstruct
+    public void init () {
+        cache = new ExpiringLruCache<String, List<DiagnosisListForm>>( maxSize, ttlMillis );
+    }
+
+    /**
+     * Finds the diagnoses of a patient, oldest visit first
+     *
+     * @param patient
+     *            Patient to find diagnoses for
+     * @return The patient's diagnoses, which must not be changed
+     */
+    public List<DiagnosisListForm> diagnosesFor ( final User patient ) {
+        return cache.get( patient.getUsername(), username -> load( patient ) );
+    }
+
+    /**
+     * Forgets the diagnoses of a patient; see
+     * {@link ExpiringLruCache#invalidate}
+     *
+     * @param username
+     *            Patient to forget; null is ignored
+     */
+    public void invalidate ( final String username ) {
+        cache.invalidate( username );
+    }
+
+    /**
+     * Forgets the diagnoses of every patient
+     */
+    public void invalidateAll () {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Loads the diagnoses of a patient from the database
+     *
+     * @param patient
+     *            Patient to load diagnoses for
+     * @return The patient's diagnoses
+     */
+    private List<DiagnosisListForm> load ( final User patient ) {
+        return Collections.unmodifiableList( repository.findByPatient( patient ).stream()
+                .map( DiagnosisListCache::copyOf ).collect( Collectors.toList() ) );
+    }
+
+    /**
+     * Builds the DiagnosisListForm for a diagnosis, with plain copies of its
+     * HCP and ICD-10 code in place of the entities
+     *
+     * @param diagnosis
+     *            Diagnosis to copy
+     * @return The form
+     */
+    private static DiagnosisListForm copyOf ( final Diagnosis diagnosis ) {
+        final DiagnosisListForm form = new DiagnosisListForm( diagnosis );
+
+        final User hcp = new Personnel();
+        hcp.setUsername( form.getHcp().getUsername() );
+        hcp.setEnabled( form.getHcp().getEnabled() );
+        hcp.setRoles( new HashSet<Role>( form.getHcp().getRoles() ) );
+        form.setHcp( hcp );
+
+        final ICDCode code = new ICDCode();
+        code.setId( form.getCode().getId() );
+        code.setCode( form.getCode().getCode() );
+        code.setDescription( form.getCode().getDescription() );
+        code.setIsOphthalmology( form.getCode().getIsOphthalmology() );
+        form.setCode( code );
+        return form;
+    }
+
+}
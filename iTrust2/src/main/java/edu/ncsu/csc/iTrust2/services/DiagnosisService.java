@@ -1,7 +1,6 @@
 package edu.ncsu.csc.iTrust2.services;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 import javax.transaction.Transactional;
 
@@ -10,7 +9,9 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
 
 import edu.ncsu.csc.iTrust2.forms.DiagnosisForm;
+import edu.ncsu.csc.iTrust2.forms.DiagnosisListForm;
 import edu.ncsu.csc.iTrust2.models.Diagnosis;
+import edu.ncsu.csc.iTrust2.models.ICDCode;
 import edu.ncsu.csc.iTrust2.models.OfficeVisit;
 import edu.ncsu.csc.iTrust2.models.User;
 import edu.ncsu.csc.iTrust2.repositories.DiagnosisRepository;
@@ -38,11 +39,39 @@ public class DiagnosisService extends Service<Diagnosis, Long> {
     @Autowired
     private ICDCodeService      icdCodeService;
 
+    /** Diagnoses of recently seen patients; kept up to date on every change */
+    @Autowired
+    private DiagnosisListCache  listCache;
+
     @Override
     protected JpaRepository<Diagnosis, Long> getRepository () {
         return repository;
     }
 
+    @Override
+    public void save ( final Diagnosis obj ) {
+        super.save( obj );
+        listCache.invalidate( patientOf( obj ) );
+    }
+
+    @Override
+    public void saveAll ( final List<Diagnosis> objects ) {
+        super.saveAll( objects );
+        objects.forEach( d -> listCache.invalidate( patientOf( d ) ) );
+    }
+
+    @Override
+    public void delete ( final Diagnosis obj ) {
+        super.delete( obj );
+        listCache.invalidate( patientOf( obj ) );
+    }
+
+    @Override
+    public void deleteAll () {
+        super.deleteAll();
+        listCache.invalidateAll();
+    }
+
     /**
      * Builds and validates a Diagnosis from the provided DiagnosisForm
      *
@@ -51,26 +80,53 @@ public class DiagnosisService extends Service<Diagnosis, Long> {
      * @return Generated Diagnosis
      */
     public Diagnosis build ( final DiagnosisForm form ) {
+        return build( form, icdCodeService.findByCode( form.getCode() ), service.findById( form.getVisit() ) );
+    }
+
+    /**
+     * Builds a Diagnosis from the provided DiagnosisForm, with the ICDCode and
+     * OfficeVisit it refers to already looked up
+     *
+     * @param form
+     *            Form for building persistence object
+     * @param code
+     *            ICDCode named by the form
+     * @param visit
+     *            OfficeVisit the Diagnosis belongs to
+     * @return Generated Diagnosis
+     */
+    public Diagnosis build ( final DiagnosisForm form, final ICDCode code, final OfficeVisit visit ) {
         final Diagnosis diag = new Diagnosis();
-        diag.setVisit( service.findById( form.getVisit() ) );
+        diag.setVisit( visit );
         diag.setNote( form.getNote() );
-        diag.setCode( icdCodeService.findByCode( form.getCode() ) );
+        diag.setCode( code );
         diag.setId( form.getId() );
 
         return diag;
     }
 
     /**
-     * Finds all Diagnoses for a specified patient
+     * Finds all Diagnoses for a specified patient, along with their visits and
+     * codes, in one query
      * 
      * @param patient
      *            Patient to search for
      * @return Diagnoses matched
      */
     public List<Diagnosis> findByPatient ( final User patient ) {
-        return service.findByPatient( patient ).stream().map( e -> findByVisit( e ) ).flatMap( e -> e.stream() )
-                .collect( Collectors.toList() );
+        return repository.findByPatient( patient );
+    }
 
+    /**
+     * Finds all Diagnoses for a specified patient, as shown in their list of
+     * diagnoses. Served from DiagnosisListCache where possible.
+     *
+     * @param patient
+     *            Patient to search for
+     * @return Diagnoses matched, which must not be changed
+     */
+    public List<DiagnosisListForm> findListByPatient ( final User patient ) {
+        return listCache.diagnosesFor( patient );
     }
 
     /**
@@ -84,4 +140,18 @@ public class DiagnosisService extends Service<Diagnosis, Long> {
         return repository.findByVisit( visit );
     }
 
+    /**
+     * Finds the username of the patient a Diagnosis was made for
+     *
+     * @param diagnosis
+     *            Diagnosis to look at
+     * @return Username of the patient, or null if it is not known
+     */
+    private static String patientOf ( final Diagnosis diagnosis ) {
+        if ( null == diagnosis.getVisit() || null == diagnosis.getVisit().getPatient() ) {
+            return null;
+        }
+        return diagnosis.getVisit().getPatient().getUsername();
+    }
+
 }
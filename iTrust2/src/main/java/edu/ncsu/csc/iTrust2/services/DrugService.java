@@ -1,5 +1,9 @@
 package edu.ncsu.csc.iTrust2.services;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -50,4 +54,18 @@ public class DrugService extends Service<Drug, Long> {
     public Drug findByCode ( final String code ) {
         return repository.findByCode( code );
     }
+
+    /**
+     * Finds every Drug with one of the provided codes, in a single query
+     *
+     * @param codes
+     *            Codes to search by
+     * @return Drugs found; codes that do not exist are skipped
+     */
+    public List<Drug> findByCodes ( final Collection<String> codes ) {
+        if ( codes.isEmpty() ) {
+            return Collections.emptyList();
+        }
+        return repository.findByCodeIn( codes );
+    }
 }
@@ -1,6 +1,7 @@
 package edu.ncsu.csc.iTrust2.services;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import javax.transaction.Transactional;
@@ -28,17 +29,48 @@ public class ICDCodeService extends Service<ICDCode, Long> {
 
     /** Repository for CRUD operations */
     @Autowired
-    private ICDCodeRepository repository;
+    private ICDCodeRepository  repository;
 
     /** Service for looking up Personnel */
     @Autowired
-    private PersonnelService  service;
+    private PersonnelService   service;
+
+    /**
+     * Diagnoses of recently seen patients, which copy out each code's
+     * description; forgotten whenever a code changes
+     */
+    @Autowired
+    private DiagnosisListCache diagnosisListCache;
 
     @Override
     protected JpaRepository<ICDCode, Long> getRepository () {
         return repository;
     }
 
+    @Override
+    public void save ( final ICDCode obj ) {
+        super.save( obj );
+        diagnosisListCache.invalidateAll();
+    }
+
+    @Override
+    public void saveAll ( final List<ICDCode> objects ) {
+        super.saveAll( objects );
+        diagnosisListCache.invalidateAll();
+    }
+
+    @Override
+    public void delete ( final ICDCode obj ) {
+        super.delete( obj );
+        diagnosisListCache.invalidateAll();
+    }
+
+    @Override
+    public void deleteAll () {
+        super.deleteAll();
+        diagnosisListCache.invalidateAll();
+    }
+
     /**
      * Finds an ICDCode object for the given Code
      * 
@@ -50,6 +82,20 @@ public class ICDCodeService extends Service<ICDCode, Long> {
         return repository.findByCode( code );
     }
 
+    /**
+     * Finds every ICDCode with one of the provided codes, in a single query
+     *
+     * @param codes
+     *            Codes to search by
+     * @return ICDCodes found; codes that do not exist are skipped
+     */
+    public List<ICDCode> findByCodes ( final Collection<String> codes ) {
+        if ( codes.isEmpty() ) {
+            return Collections.emptyList();
+        }
+        return repository.findByCodeIn( codes );
+    }
+
     @Override
     public List<ICDCode> findAll () {
         final User user = service.findByName( LoggerUtil.currentUser() );
@@ -2,21 +2,34 @@ package edu.ncsu.csc.iTrust2.services;
 
 import java.time.LocalDate;
 import java.time.ZonedDateTime;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
 
+import edu.ncsu.csc.iTrust2.forms.DiagnosisForm;
 import edu.ncsu.csc.iTrust2.forms.OfficeVisitForm;
 import edu.ncsu.csc.iTrust2.forms.PrescriptionForm;
+import edu.ncsu.csc.iTrust2.forms.display.OfficeVisitSummary;
 import edu.ncsu.csc.iTrust2.models.AppointmentRequest;
 import edu.ncsu.csc.iTrust2.models.CPTCode;
 import edu.ncsu.csc.iTrust2.models.Diagnosis;
+import edu.ncsu.csc.iTrust2.models.Drug;
+import edu.ncsu.csc.iTrust2.models.Hospital;
+import edu.ncsu.csc.iTrust2.models.ICDCode;
 import edu.ncsu.csc.iTrust2.models.OfficeVisit;
 import edu.ncsu.csc.iTrust2.models.Patient;
 import edu.ncsu.csc.iTrust2.models.User;
@@ -88,11 +101,69 @@ public class OfficeVisitService extends Service<OfficeVisit, Long> {
     @Autowired
     private DiagnosisService            diagnosisService;
 
+    /**
+     * Drug service
+     */
+    @Autowired
+    private DrugService                 drugService;
+
+    /**
+     * ICDCode service
+     */
+    @Autowired
+    private ICDCodeService              icdCodeService;
+
+    /**
+     * Diagnoses of recently seen patients; kept up to date on every change
+     */
+    @Autowired
+    private DiagnosisListCache          diagnosisListCache;
+
     @Override
     protected JpaRepository<OfficeVisit, Long> getRepository () {
         return repository;
     }
 
+    @Override
+    public void save ( final OfficeVisit obj ) {
+        super.save( obj );
+        diagnosisListCache.invalidate( patientOf( obj ) );
+    }
+
+    @Override
+    public void saveAll ( final List<OfficeVisit> objects ) {
+        super.saveAll( objects );
+        objects.forEach( v -> diagnosisListCache.invalidate( patientOf( v ) ) );
+    }
+
+    @Override
+    public void delete ( final OfficeVisit obj ) {
+        super.delete( obj );
+        diagnosisListCache.invalidate( patientOf( obj ) );
+    }
+
+    @Override
+    public void deleteAll () {
+        super.deleteAll();
+        diagnosisListCache.invalidateAll();
+    }
+
+    /**
+     * Finds an OfficeVisit, with everything needed to show it read in as few
+     * queries as possible
+     *
+     * @param id
+     *            ID of the visit
+     * @return The visit, or null if there is none
+     */
+    @Override
+    public OfficeVisit findById ( final Long id ) {
+        if ( null == id ) {
+            return null;
+        }
+        return repository.findWithDetailsById( id );
+    }
+
     /**
      * Finds all OfficeVisits created by the specified HCP
      *
@@ -129,17 +200,59 @@ public class OfficeVisitService extends Service<OfficeVisit, Long> {
     }
 
     /**
-     * Builds an OfficeVisit based on the deserialised OfficeVisitForm
+     * Finds a page of summaries of every OfficeVisit
+     *
+     * @param pageable
+     *            Page to find, and how to sort
+     * @return Page of summaries
+     */
+    public Page<OfficeVisitSummary> findSummaries ( final Pageable pageable ) {
+        return repository.findSummaries( pageable );
+    }
+
+    /**
+     * Finds a page of summaries of the OfficeVisits created by the specified
+     * HCP
+     *
+     * @param hcp
+     *            HCP to search for
+     * @param pageable
+     *            Page to find, and how to sort
+     * @return Page of summaries
+     */
+    public Page<OfficeVisitSummary> findSummariesByHcp ( final User hcp, final Pageable pageable ) {
+        return repository.findSummariesByHcp( hcp, pageable );
+    }
+
+    /**
+     * Finds a page of summaries of the OfficeVisits for the specified Patient
+     *
+     * @param patient
+     *            Patient to search for
+     * @param pageable
+     *            Page to find, and how to sort
+     * @return Page of summaries
+     */
+    public Page<OfficeVisitSummary> findSummariesByPatient ( final User patient, final Pageable pageable ) {
+        return repository.findSummariesByPatient( patient, pageable );
+    }
+
+    /**
+     * Builds an OfficeVisit based on the deserialised OfficeVisitForm. Every
+     * user, hospital and code the form refers to is looked up first, one query
+     * per kind, and the visit is then put together and validated in memory.
      *
      * @param ovf
      *            Form to build from
      * @return Constructed OfficeVisit
      */
     public OfficeVisit build ( final OfficeVisitForm ovf ) {
+        final References refs = resolve( ovf );
+
         final OfficeVisit ov = new OfficeVisit();
         ov.setPatientAdvocateAttended( ovf.getPatientAdvocate() );
-        ov.setPatient( userService.findByName( ovf.getPatient() ) );
-        ov.setHcp( userService.findByName( ovf.getHcp() ) );
+        ov.setPatient( find( refs.users, ovf.getPatient() ) );
+        ov.setHcp( find( refs.users, ovf.getHcp() ) );
         ov.setNotes( ovf.getNotes() );
 
         if ( ovf.getId() != null ) {
@@ -163,33 +276,27 @@ public class OfficeVisitService extends Service<OfficeVisit, Long> {
         ov.setType( at );
 
         if ( null != ovf.getPreScheduled() ) {
-            final List<AppointmentRequest> requests = appointmentRequestService.findByHcpAndPatient( ov.getHcp(),
-                    ov.getPatient() );
-            try {
-                final AppointmentRequest match = requests.stream().filter( e -> e.getDate().equals( ov.getDate() ) )
-                        .collect( Collectors.toList() )
-                        .get( 0 ); /*
-                                    * We should have one and only one
-                                    * appointment for the provided HCP & patient
-                                    * and the time specified
-                                    */
-                ov.setAppointment( match );
-            }
-            catch ( final Exception e ) {
-                throw new IllegalArgumentException( "Marked as preschedule but no match can be found" + e.toString() );
+            /*
+             * We should have one and only one appointment for the provided HCP
+             * & patient and the time specified
+             */
+            final AppointmentRequest match = appointmentRequestService.findByHcpAndPatientAndDate( ov.getHcp(),
+                    ov.getPatient(), ov.getDate() );
+            if ( null == match ) {
+                throw new IllegalArgumentException( "Marked as preschedule but no match can be found" );
             }
+            ov.setAppointment( match );
 
         }
-        ov.setHospital( hospitalService.findByName( ovf.getHospital() ) );
-        ov.setBasicHealthMetrics( bhmService.build( ovf ) );
+        ov.setHospital( refs.hospital );
+        ov.setBasicHealthMetrics( bhmService.build( ovf, ov.getPatient(), ov.getHcp() ) );
         ov.setOphthalmologyMetrics( omService.build( ovf ) );
         // associate all diagnoses with this visit
         if ( ovf.getDiagnoses() != null ) {
-            ov.setDiagnoses(
-                    ovf.getDiagnoses().stream().map( diagnosisService::build ).collect( Collectors.toList() ) );
-            for ( final Diagnosis d : ov.getDiagnoses() ) {
-                d.setVisit( ov );
-            }
+            final List<Diagnosis> diagnoses = ovf.getDiagnoses().stream()
+                    .map( d -> diagnosisService.build( d, find( refs.icdCodes, d.getCode() ), ov ) )
+                    .collect( Collectors.toList() );
+            ov.setDiagnoses( diagnoses );
         }
 
         ov.validateDiagnoses();
@@ -197,15 +304,14 @@ public class OfficeVisitService extends Service<OfficeVisit, Long> {
 
         final List<PrescriptionForm> ps = ovf.getPrescriptions();
         if ( ps != null ) {
-            ov.setPrescriptions( ps.stream().map( prescriptionService::build ).collect( Collectors.toList() ) );
+            ov.setPrescriptions( ps.stream()
+                    .map( p -> prescriptionService.build( p, find( refs.drugs, p.getDrug() ),
+                            find( refs.users, p.getPatient() ) ) )
+                    .collect( Collectors.toList() ) );
         }
 
         if ( ovf.getCptCodes() != null ) {
-            final List<CPTCode> cs = new ArrayList<CPTCode>();
-            for ( int i = 0; i < ovf.getCptCodes().size(); i++ ) {
-                cs.add( cptService.findById( ovf.getCptCodes().get( i ) ) );
-            }
-            ov.setCptCodes( cs );
+            ov.setCptCodes( ovf.getCptCodes().stream().map( refs.cptCodes::get ).collect( Collectors.toList() ) );
         }
 
         final Patient p = (Patient) ov.getPatient();
@@ -237,4 +343,147 @@ public class OfficeVisitService extends Service<OfficeVisit, Long> {
         return ov;
     }
 
+    /**
+     * Looks up everything an OfficeVisitForm refers to by name, code or ID:
+     * the patient, HCP and prescription patients, the hospital, and every CPT
+     * code, drug and ICD code. Each kind is looked up in one query, however
+     * many the form names.
+     *
+     * @param ovf
+     *            Form to resolve
+     * @return What the form refers to
+     */
+    private References resolve ( final OfficeVisitForm ovf ) {
+        final Set<String> usernames = new HashSet<String>();
+        usernames.add( ovf.getPatient() );
+        usernames.add( ovf.getHcp() );
+        final Set<String> drugCodes = new HashSet<String>();
+        if ( null != ovf.getPrescriptions() ) {
+            for ( final PrescriptionForm p : ovf.getPrescriptions() ) {
+                usernames.add( p.getPatient() );
+                drugCodes.add( p.getDrug() );
+            }
+        }
+        final Set<String> icdCodes = new HashSet<String>();
+        if ( null != ovf.getDiagnoses() ) {
+            for ( final DiagnosisForm d : ovf.getDiagnoses() ) {
+                icdCodes.add( d.getCode() );
+            }
+        }
+        final Set<Long> cptIds = new HashSet<Long>();
+        if ( null != ovf.getCptCodes() ) {
+            cptIds.addAll( ovf.getCptCodes() );
+        }
+
+        final References refs = new References();
+        refs.users = indexIgnoringCase( userService.findByNames( withoutNulls( usernames ) ), User::getUsername );
+        refs.hospital = hospitalService.findByName( ovf.getHospital() );
+        refs.cptCodes = index( cptService.findByIds( withoutNulls( cptIds ) ), CPTCode::getId );
+        refs.drugs = indexIgnoringCase( drugService.findByCodes( withoutNulls( drugCodes ) ), Drug::getCode );
+        refs.icdCodes = indexIgnoringCase( icdCodeService.findByCodes( withoutNulls( icdCodes ) ),
+                ICDCode::getCode );
+        return refs;
+    }
+
+    /**
+     * Drops nulls from a set of keys, which the form may contain but which can
+     * never match
+     *
+     * @param <K>
+     *            Type of the keys
+     * @param keys
+     *            Keys to look up
+     * @return The keys, without null
+     */
+    private static <K> Collection<K> withoutNulls ( final Set<K> keys ) {
+        keys.remove( null );
+        return keys;
+    }
+
+    /**
+     * Indexes a list of objects by a key
+     *
+     * @param <K>
+     *            Type of the key
+     * @param <V>
+     *            Type of the objects
+     * @param values
+     *            Objects to index
+     * @param key
+     *            Extracts the key of an object
+     * @return The objects by key, keeping the first of any duplicates
+     */
+    private static <K, V> Map<K, V> index ( final List<V> values, final Function<V, K> key ) {
+        return values.stream().filter( Objects::nonNull )
+                .collect( Collectors.toMap( key, Function.identity(), ( a, b ) -> a ) );
+    }
+
+    /**
+     * Indexes a list of objects by a name or code, ignoring case. The database
+     * compares names and codes without regard to case, so a form may refer to
+     * `Patient` or `t10` and still have found `patient` or `T10`; looking them
+     * up in this index then matches them the same way.
+     *
+     * @param <V>
+     *            Type of the objects
+     * @param values
+     *            Objects to index
+     * @param key
+     *            Extracts the name or code of an object
+     * @return The objects by name or code, keeping the first of any duplicates
+     */
+    private static <V> Map<String, V> indexIgnoringCase ( final List<V> values, final Function<V, String> key ) {
+        final Map<String, V> index = new TreeMap<String, V>( String.CASE_INSENSITIVE_ORDER );
+        values.stream().filter( Objects::nonNull ).forEach( v -> index.putIfAbsent( key.apply( v ), v ) );
+        return index;
+    }
+
+    /**
+     * Looks up a name or code in an index built by indexIgnoringCase
+     *
+     * @param <V>
+     *            Type of the objects
+     * @param index
+     *            Objects by name or code
+     * @param key
+     *            Name or code to look up; may be null
+     * @return The object, or null if there is none or the key is null
+     */
+    private static <V> V find ( final Map<String, V> index, final String key ) {
+        return null == key ? null : index.get( key );
+    }
+
+    /**
+     * Everything an OfficeVisitForm refers to, looked up ahead of building the
+     * visit
+     */
+    private static final class References {
+
+        /** Users, by username, ignoring case */
+        private Map<String, User>    users;
+
+        /** Hospital the visit took place at */
+        private Hospital             hospital;
+
+        /** CPT codes, by ID */
+        private Map<Long, CPTCode>   cptCodes;
+
+        /** Drugs, by code, ignoring case */
+        private Map<String, Drug>    drugs;
+
+        /** ICD codes, by code, ignoring case */
+        private Map<String, ICDCode> icdCodes;
+    }
+
+    /**
+     * Finds the username of the patient a visit is for
+     *
+     * @param visit
+     *            Visit to look at
+     * @return Username of the patient, or null if it has none
+     */
+    private static String patientOf ( final OfficeVisit visit ) {
+        return null == visit.getPatient() ? null : visit.getPatient().getUsername();
+    }
+
 }
@@ -10,6 +10,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
 
 import edu.ncsu.csc.iTrust2.forms.PrescriptionForm;
+import edu.ncsu.csc.iTrust2.models.Drug;
 import edu.ncsu.csc.iTrust2.models.Prescription;
 import edu.ncsu.csc.iTrust2.models.User;
 import edu.ncsu.csc.iTrust2.repositories.PrescriptionRepository;
@@ -50,12 +51,28 @@ public class PrescriptionService extends Service<Prescription, Long> {
      * @return Build Prescription
      */
     public Prescription build ( final PrescriptionForm form ) {
+        return build( form, drugService.findByCode( form.getDrug() ), userService.findByName( form.getPatient() ) );
+    }
+
+    /**
+     * Builds a Prescription from the deserialised PrescriptionForm, with the
+     * Drug and Patient it refers to already looked up
+     *
+     * @param form
+     *            Form to build a Prescription from
+     * @param drug
+     *            Drug named by the form
+     * @param patient
+     *            Patient named by the form
+     * @return Build Prescription
+     */
+    public Prescription build ( final PrescriptionForm form, final Drug drug, final User patient ) {
         final Prescription pr = new Prescription();
 
-        pr.setDrug( drugService.findByCode( form.getDrug() ) );
+        pr.setDrug( drug );
         pr.setDosage( form.getDosage() );
         pr.setRenewals( form.getRenewals() );
-        pr.setPatient( userService.findByName( form.getPatient() ) );
+        pr.setPatient( patient );
 
         if ( form.getId() != null ) {
             pr.setId( form.getId() );
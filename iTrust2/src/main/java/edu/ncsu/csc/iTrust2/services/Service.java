@@ -1,5 +1,7 @@
 package edu.ncsu.csc.iTrust2.services;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -150,4 +152,19 @@ abstract public class Service <T extends DomainObject, K> {
         return null;
     }
 
+    /**
+     * Finds every object with one of the IDs provided, in a single query
+     *
+     * @param ids
+     *            IDs to search by
+     * @return Objects found, in no particular order; IDs that do not exist are
+     *         skipped
+     */
+    public List<T> findByIds ( final Collection<K> ids ) {
+        if ( ids.isEmpty() ) {
+            return Collections.emptyList();
+        }
+        return getRepository().findAllById( ids );
+    }
+
 }
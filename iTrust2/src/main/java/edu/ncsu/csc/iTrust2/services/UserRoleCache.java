@@ -0,0 +1,111 @@
+package edu.ncsu.csc.iTrust2.services;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.Role;
+import edu.ncsu.csc.iTrust2.repositories.UserRepository;
+import edu.ncsu.csc.iTrust2.utils.ExpiringLruCache;
+
+/**
+ * Cache of the roles of users, by username, for screens that show the roles of
+ * many users at once (such as the log view). Holds at most
+ * `itrust2.cache.user-roles.max-size` users, evicting the least recently used,
+ * and forgets each one after `itrust2.cache.user-roles.ttl-ms`. Usernames that
+ * do not belong to any user are cached too, with no roles.
+ *
+ * UserService invalidates a user whenever it is saved or deleted. Changes made
+ * by another instance of the application are picked up once the entry expires.
+ *
+ * @author agent
+ *
+ */
+@Component
+public class UserRoleCache {
+
+    /** Repository to load users from */
+    @Autowired
+    private UserRepository<User>                repository;
+
+    /** Most users to hold */
+    @Value ( "${itrust2.cache.user-roles.max-size:10000}" )
+    private int                                 maxSize;
+
+    /** How long a user is held for */
+    @Value ( "${itrust2.cache.user-roles.ttl-ms:300000}" )
+    private long                                ttlMillis;
+
+    /** Cached roles */
+    private ExpiringLruCache<String, Set<Role>> cache;
+
+    /**
+     * Creates the cache, once its size and lifetime are known
+     */
+    @PostConstruct
+    public void init () {
+        cache = new ExpiringLruCache<String, Set<Role>>( maxSize, ttlMillis );
+    }
+
+    /**
+     * Finds the roles of a number of users. Users that are not cached are
+     * loaded together in one query.
+     *
+     * @param usernames
+     *            Usernames to find; nulls are ignored
+     * @return Roles of each username; usernames with no user map to an empty
+     *         set
+     */
+    public Map<String, Set<Role>> rolesFor ( final Collection<String> usernames ) {
+        return cache.getAll( usernames, this::load );
+    }
+
+    /**
+     * Forgets the roles of a user; see {@link ExpiringLruCache#invalidate}
+     *
+     * @param username
+     *            User to forget
+     */
+    public void invalidate ( final String username ) {
+        cache.invalidate( username );
+    }
+
+    /**
+     * Forgets the roles of every user
+     */
+    public void invalidateAll () {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Loads the roles of a number of users from the database, in one query
+     *
+     * @param usernames
+     *            Usernames to load
+     * @return Roles of each username; usernames with no user map to an empty
+     *         set
+     */
+    private Map<String, Set<Role>> load ( final Set<String> usernames ) {
+        final Map<String, Set<Role>> loaded = new HashMap<String, Set<Role>>();
+        for ( final String username : usernames ) {
+            loaded.put( username, Collections.emptySet() );
+        }
+        for ( final User user : repository.findWithRolesByUsernameIn( usernames ) ) {
+            final Set<Role> roles = EnumSet.noneOf( Role.class );
+            roles.addAll( user.getRoles() );
+            loaded.put( user.getUsername(), Collections.unmodifiableSet( roles ) );
+        }
+        return loaded;
+    }
+
+}
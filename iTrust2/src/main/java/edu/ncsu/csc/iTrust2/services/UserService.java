@@ -1,14 +1,24 @@
 package edu.ncsu.csc.iTrust2.services;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
 import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.Role;
 import edu.ncsu.csc.iTrust2.repositories.UserRepository;
+import edu.ncsu.csc.iTrust2.services.security.CachedUserDetailsService;
+import edu.ncsu.csc.iTrust2.services.security.PasswordRehashService;
 
 /**
  * Service class for interacting with User model, performing CRUD tasks with
@@ -25,7 +35,23 @@ public class UserService <T extends User> extends Service<T, String> {
 
     /** Repository for CRUD tasks */
     @Autowired
-    private UserRepository<User> repository;
+    private UserRepository<User>     repository;
+
+    /** Roles of recently seen users; kept up to date on every change */
+    @Autowired
+    private UserRoleCache            roleCache;
+
+    /** Users cached for logging in; kept up to date on every change */
+    @Autowired
+    private CachedUserDetailsService userDetailsCache;
+
+    /** Hashes passwords at the configured cost */
+    @Autowired
+    private PasswordEncoder          passwordEncoder;
+
+    /** Tells which hashes were made at another cost */
+    @Autowired
+    private PasswordRehashService    rehashService;
 
     @Override
     @SuppressWarnings ( "unchecked" )
@@ -33,6 +59,52 @@ public class UserService <T extends User> extends Service<T, String> {
         return (JpaRepository<T, String>) repository;
     }
 
+    @Override
+    public void save ( final T obj ) {
+        super.save( obj );
+        roleCache.invalidate( obj.getUsername() );
+        userDetailsCache.invalidate( obj.getUsername() );
+    }
+
+    @Override
+    public void saveAll ( final List<T> objects ) {
+        super.saveAll( objects );
+        objects.forEach( u -> {
+            roleCache.invalidate( u.getUsername() );
+            userDetailsCache.invalidate( u.getUsername() );
+        } );
+    }
+
+    @Override
+    public void delete ( final T obj ) {
+        super.delete( obj );
+        roleCache.invalidate( obj.getUsername() );
+        userDetailsCache.invalidate( obj.getUsername() );
+    }
+
+    @Override
+    public void deleteAll () {
+        super.deleteAll();
+        roleCache.invalidateAll();
+        userDetailsCache.invalidateAll();
+    }
+
+    /**
+     * Hashes the password of a User built from a UserForm with the configured
+     * PasswordEncoder. Forms hash at BCrypt's default cost, so the password is
+     * only hashed again if the configured cost is different.
+     *
+     * @param user
+     *            User built from the form
+     * @param rawPassword
+     *            Password entered on the form
+     */
+    public void hashPassword ( final User user, final String rawPassword ) {
+        if ( rehashService.needsRehash( user.getPassword() ) ) {
+            user.setPassword( passwordEncoder.encode( rawPassword ) );
+        }
+    }
+
     /**
      * Finds a User with the given username
      *
@@ -55,4 +127,33 @@ public class UserService <T extends User> extends Service<T, String> {
         return repository.existsByUsername( name );
     }
 
+    /**
+     * Finds every User with one of the provided usernames, roles included, in
+     * a single query
+     *
+     * @param usernames
+     *            Usernames to search
+     * @return Matching users
+     */
+    public List<User> findByNames ( final Collection<String> usernames ) {
+        if ( usernames.isEmpty() ) {
+            return Collections.emptyList();
+        }
+        return repository.findWithRolesByUsernameIn( usernames );
+    }
+
+    /**
+     * Finds the roles of every User with one of the provided usernames.
+     * Recently seen users come from a cache; the rest are loaded in a single
+     * query.
+     *
+     * @param usernames
+     *            Usernames to search; nulls are ignored
+     * @return Roles of each username; usernames with no User map to an empty
+     *         set
+     */
+    public Map<String, Set<Role>> findRolesByNames ( final Collection<String> usernames ) {
+        return roleCache.rolesFor( usernames );
+    }
+
 }
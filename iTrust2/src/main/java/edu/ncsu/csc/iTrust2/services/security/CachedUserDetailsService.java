@@ -0,0 +1,205 @@
+package edu.ncsu.csc.iTrust2.services.security;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.Role;
+import edu.ncsu.csc.iTrust2.repositories.UserRepository;
+import edu.ncsu.csc.iTrust2.utils.ExpiringLruCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Looks up users for Spring Security when they log in. Recently seen users are
+ * held in memory, so that a burst of logins does not query the user and role
+ * tables for every attempt. Holds at most
+ * `itrust2.cache.user-details.max-size` users, evicting the least recently
+ * used, and forgets each one after `itrust2.cache.user-details.ttl-ms`. Users
+ * are cached by their username in lower case, as the database matches
+ * usernames without regard to case, so every spelling of a username shares
+ * one entry.
+ *
+ * UserService invalidates a user whenever it is saved or deleted, and
+ * LoginBanService whenever the user is banned or unbanned. Changes made by
+ * another instance of the application are picked up once the entry expires.
+ *
+ * Hits and misses are published as `itrust2.auth.user-cache` (tagged by
+ * result), along with the hit ratio and size of the cache.
+ *
+ * @author agent
+ *
+ */
+@Component
+public class CachedUserDetailsService implements UserDetailsService {
+
+    /** Repository to load users from */
+    @Autowired
+    private UserRepository<User>                 repository;
+
+    /** Registry the cache statistics are published to */
+    @Autowired
+    private MeterRegistry                        meterRegistry;
+
+    /** Most users to hold */
+    @Value ( "${itrust2.cache.user-details.max-size:10000}" )
+    private int                                  maxSize;
+
+    /** How long a user is held for */
+    @Value ( "${itrust2.cache.user-details.ttl-ms:300000}" )
+    private long                                 ttlMillis;
+
+    /** Cached users */
+    private ExpiringLruCache<String, CachedUser> cache;
+
+    /**
+     * Creates the cache, once its size and lifetime are known, and publishes
+     * its statistics
+     */
+    @PostConstruct
+    public void init () {
+        cache = new ExpiringLruCache<String, CachedUser>( maxSize, ttlMillis );
+        FunctionCounter.builder( "itrust2.auth.user-cache", cache, ExpiringLruCache::hits ).tag( "result", "hit" )
+                .register( meterRegistry );
+        FunctionCounter.builder( "itrust2.auth.user-cache", cache, ExpiringLruCache::misses )
+                .tag( "result", "miss" ).register( meterRegistry );
+        Gauge.builder( "itrust2.auth.user-cache.hit-ratio", this, CachedUserDetailsService::hitRatio )
+                .register( meterRegistry );
+        Gauge.builder( "itrust2.auth.user-cache.size", this, CachedUserDetailsService::size )
+                .register( meterRegistry );
+    }
+
+    @Override
+    public UserDetails loadUserByUsername ( final String username ) throws UsernameNotFoundException {
+        return cache.get( key( username ), lower -> load( username ) ).toUserDetails();
+    }
+
+    /**
+     * Forgets a user; see {@link ExpiringLruCache#invalidate}
+     *
+     * @param username
+     *            User to forget
+     */
+    public void invalidate ( final String username ) {
+        cache.invalidate( key( username ) );
+    }
+
+    /**
+     * Forgets every user
+     */
+    public void invalidateAll () {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Reports the fraction of lookups answered from the cache
+     *
+     * @return Hit ratio, or 0 before any lookups
+     */
+    public double hitRatio () {
+        final long hit = cache.hits();
+        final long total = hit + cache.misses();
+        return 0 == total ? 0 : (double) hit / total;
+    }
+
+    /**
+     * Reports the number of users held
+     *
+     * @return Number of cached users
+     */
+    public int size () {
+        return cache.size();
+    }
+
+    /**
+     * Loads a user from the database
+     *
+     * @param username
+     *            User to load
+     * @return What Spring Security needs to know about the user
+     * @throws UsernameNotFoundException
+     *             If there is no such user
+     */
+    private CachedUser load ( final String username ) {
+        final User user = repository.findByUsername( username );
+        if ( null == user ) {
+            throw new UsernameNotFoundException( "No user named " + username );
+        }
+        return new CachedUser( user );
+    }
+
+    /**
+     * Finds the key a user is cached under
+     *
+     * @param username
+     *            Username, in any case, or null
+     * @return The username in lower case, or null
+     */
+    private static String key ( final String username ) {
+        return null == username ? null : username.toLowerCase( Locale.ROOT );
+    }
+
+    /**
+     * What Spring Security needs to know about a user. A fresh UserDetails is
+     * handed out for every lookup, as Spring Security erases the password from
+     * the one it is given once authentication completes.
+     */
+    private static final class CachedUser {
+
+        /** Username of the user */
+        private final String                 username;
+
+        /** Password hash of the user */
+        private final String                 password;
+
+        /** Whether the user is enabled */
+        private final boolean                enabled;
+
+        /** Roles of the user, as authorities */
+        private final List<GrantedAuthority> authorities;
+
+        /**
+         * Creates a cache entry
+         *
+         * @param user
+         *            User to cache
+         */
+        private CachedUser ( final User user ) {
+            this.username = user.getUsername();
+            this.password = null == user.getPassword() ? "" : user.getPassword();
+            this.enabled = null != user.getEnabled() && 1 == user.getEnabled();
+            final List<GrantedAuthority> roles = new ArrayList<GrantedAuthority>();
+            if ( null != user.getRoles() ) {
+                for ( final Role role : user.getRoles() ) {
+                    roles.add( new SimpleGrantedAuthority( role.name() ) );
+                }
+            }
+            this.authorities = Collections.unmodifiableList( roles );
+        }
+
+        /**
+         * Builds the UserDetails for this user
+         *
+         * @return A new UserDetails
+         */
+        private UserDetails toUserDetails () {
+            return new org.springframework.security.core.userdetails.User( username, password, enabled, true, true,
+                    true, authorities );
+        }
+    }
+
+}
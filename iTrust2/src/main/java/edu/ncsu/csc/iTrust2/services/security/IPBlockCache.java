@@ -0,0 +1,307 @@
+package edu.ncsu.csc.iTrust2.services.security;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.ncsu.csc.iTrust2.models.security.LoginBan;
+import edu.ncsu.csc.iTrust2.models.security.LoginLockout;
+import edu.ncsu.csc.iTrust2.repositories.security.LoginBanRepository;
+import edu.ncsu.csc.iTrust2.repositories.security.LoginLockoutRepository;
+
+/**
+ * In-memory copy of the IP addresses that are banned or locked out, so that
+ * IPFilter, which runs on every request, costs a hash lookup rather than two
+ * queries. LoginBanService and LoginLockoutService keep it up to date as bans
+ * and lockouts are written or cleared, once the change commits; each entry
+ * drops out on its own once the ban or lockout it came from has expired.
+ *
+ * The cache is loaded from the database on startup and reloaded every
+ * `itrust2.security.ip-cache.refresh-ms`, which picks up changes made by other
+ * instances of the application or made directly in the database.
+ *
+ * @author agent
+ *
+ */
+@Component
+public class IPBlockCache {
+
+    /** How long an IP lockout lasts */
+    public static final Duration       LOCKOUT_WINDOW = LoginLockout.DURATION;
+
+    /** Banned IPs */
+    private final Map<String, Block>   banned         = new ConcurrentHashMap<String, Block>();
+
+    /** Locked out IPs */
+    private final Map<String, Block>   locked         = new ConcurrentHashMap<String, Block>();
+
+    /** Repository for LoginBans, to reload from */
+    @Autowired
+    private LoginBanRepository         banRepository;
+
+    /** Repository for LoginLockouts, to reload from */
+    @Autowired
+    private LoginLockoutRepository     lockoutRepository;
+
+    /**
+     * Checks if an IP address is banned
+     *
+     * @param ipAddress
+     *            IP address to check
+     * @return Ban status
+     */
+    public boolean isBanned ( final String ipAddress ) {
+        return isActive( banned, ipAddress );
+    }
+
+    /**
+     * Checks if an IP address is locked out
+     *
+     * @param ipAddress
+     *            IP address to check
+     * @return Lockout status
+     */
+    public boolean isLocked ( final String ipAddress ) {
+        return isActive( locked, ipAddress );
+    }
+
+    /**
+     * Records that an IP address has been banned
+     *
+     * @param ipAddress
+     *            Banned IP address
+     * @param expiresAt
+     *            When the ban ends, or null if it does not expire
+     */
+    public void ban ( final String ipAddress, final ZonedDateTime expiresAt ) {
+        add( banned, ipAddress, null == expiresAt ? LoginBan.PERMANENT : expiresAt );
+    }
+
+    /**
+     * Records that an IP address has been locked out
+     *
+     * @param ipAddress
+     *            Locked out IP address
+     * @param expiresAt
+     *            When the lockout ends, or null for LOCKOUT_WINDOW from now
+     */
+    public void lock ( final String ipAddress, final ZonedDateTime expiresAt ) {
+        add( locked, ipAddress, null == expiresAt ? ZonedDateTime.now().plus( LOCKOUT_WINDOW ) : expiresAt );
+    }
+
+    /**
+     * Records that the bans on an IP address have been cleared
+     *
+     * @param ipAddress
+     *            IP address to clear
+     */
+    public void unban ( final String ipAddress ) {
+        banned.remove( ipAddress );
+    }
+
+    /**
+     * Records that the lockouts on an IP address have been cleared
+     *
+     * @param ipAddress
+     *            IP address to clear
+     */
+    public void unlock ( final String ipAddress ) {
+        locked.remove( ipAddress );
+    }
+
+    /**
+     * Records that one lockout of an IP address has been cleared, leaving it
+     * locked until the last of its remaining lockouts ends, if any
+     *
+     * @param ipAddress
+     *            IP address to clear
+     * @param latest
+     *            When the last of its remaining lockouts ends, or null if none
+     *            remain
+     */
+    public void unlock ( final String ipAddress, final ZonedDateTime latest ) {
+        if ( null == latest ) {
+            locked.remove( ipAddress );
+        }
+        else {
+            locked.put( ipAddress, new Block( System.currentTimeMillis(), latest ) );
+        }
+    }
+
+    /**
+     * Records that every ban has been cleared
+     */
+    public void unbanAll () {
+        banned.clear();
+    }
+
+    /**
+     * Records that every lockout has been cleared
+     */
+    public void unlockAll () {
+        locked.clear();
+    }
+
+    /**
+     * Applies a change to the cache once the current transaction commits, so
+     * that a ban or lockout that is rolled back never reaches it. Outside of a
+     * transaction the change is applied at once.
+     *
+     * @param change
+     *            Change to apply
+     */
+    public void afterCommit ( final Runnable change ) {
+        if ( !TransactionSynchronizationManager.isSynchronizationActive() ) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit () {
+                change.run();
+            }
+        } );
+    }
+
+    /**
+     * Reloads the cache from the database. Entries added while the reload was
+     * running are kept even if the reload did not see them.
+     */
+    @EventListener ( ApplicationReadyEvent.class )
+    @Scheduled ( fixedDelayString = "${itrust2.security.ip-cache.refresh-ms:60000}",
+            initialDelayString = "${itrust2.security.ip-cache.refresh-ms:60000}" )
+    public void refresh () {
+        final long started = System.currentTimeMillis();
+        final ZonedDateTime now = ZonedDateTime.now();
+
+        final Map<String, Block> bans = new HashMap<String, Block>();
+        for ( final LoginBan ban : banRepository.findByIpNotNullAndExpiresAtAfter( now ) ) {
+            bans.merge( ban.getIp(), new Block( started, ban.getExpiresAt() ), Block::later );
+        }
+        final Map<String, Block> lockouts = new HashMap<String, Block>();
+        for ( final LoginLockout lockout : lockoutRepository.findByIpNotNullAndExpiresAtAfter( now ) ) {
+            lockouts.merge( lockout.getIp(), new Block( started, lockout.getExpiresAt() ), Block::later );
+        }
+
+        replace( banned, bans, started );
+        replace( locked, lockouts, started );
+    }
+
+    /**
+     * Replaces the contents of one of the maps with what was read from the
+     * database, keeping anything newer than the read
+     *
+     * @param current
+     *            Map to update
+     * @param loaded
+     *            Entries read from the database
+     * @param started
+     *            When the read started
+     */
+    private static void replace ( final Map<String, Block> current, final Map<String, Block> loaded,
+            final long started ) {
+        current.entrySet().removeIf( e -> !loaded.containsKey( e.getKey() ) && e.getValue().added < started );
+        loaded.forEach( ( ip, block ) -> current.merge( ip, block, Block::later ) );
+    }
+
+    /**
+     * Checks whether one of the maps holds an unexpired entry for an IP
+     * address, dropping it if it has expired
+     *
+     * @param blocks
+     *            Map to check
+     * @param ipAddress
+     *            IP address to check
+     * @return Whether the IP address is blocked
+     */
+    private static boolean isActive ( final Map<String, Block> blocks, final String ipAddress ) {
+        if ( null == ipAddress ) {
+            return false;
+        }
+        final Block block = blocks.get( ipAddress );
+        if ( null == block ) {
+            return false;
+        }
+        if ( System.currentTimeMillis() < block.expires ) {
+            return true;
+        }
+        blocks.remove( ipAddress, block );
+        return false;
+    }
+
+    /**
+     * Adds an entry to one of the maps
+     *
+     * @param blocks
+     *            Map to add to
+     * @param ipAddress
+     *            IP address blocked
+     * @param expiresAt
+     *            When the block ends
+     */
+    private static void add ( final Map<String, Block> blocks, final String ipAddress,
+            final ZonedDateTime expiresAt ) {
+        blocks.merge( ipAddress, new Block( System.currentTimeMillis(), expiresAt ), Block::later );
+    }
+
+    /**
+     * A ban or lockout on an IP address, as held in the cache
+     */
+    private static final class Block {
+
+        /** When the entry was put in the cache (epoch millis) */
+        private final long added;
+
+        /** When the block ends (epoch millis) */
+        private final long expires;
+
+        /**
+         * Creates an entry for a ban or lockout read from the database
+         *
+         * @param added
+         *            When the entry was put in the cache
+         * @param expiresAt
+         *            When the block ends
+         */
+        private Block ( final long added, final ZonedDateTime expiresAt ) {
+            this( added, expiresAt.toInstant().toEpochMilli() );
+        }
+
+        /**
+         * Creates an entry
+         *
+         * @param added
+         *            When the entry was put in the cache
+         * @param expires
+         *            When the block ends
+         */
+        private Block ( final long added, final long expires ) {
+            this.added = added;
+            this.expires = expires;
+        }
+
+        /**
+         * Picks whichever of two entries ends later
+         *
+         * @param a
+         *            One entry
+         * @param b
+         *            The other
+         * @return The one that ends later
+         */
+        private static Block later ( final Block a, final Block b ) {
+            return a.expires >= b.expires ? a : b;
+        }
+    }
+
+}
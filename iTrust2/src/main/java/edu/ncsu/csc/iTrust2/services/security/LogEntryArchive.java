@@ -0,0 +1,579 @@
+package edu.ncsu.csc.iTrust2.services.security;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.gson.Gson;
+
+import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
+import edu.ncsu.csc.iTrust2.models.security.LogEntry;
+
+/**
+ * Cold storage for LogEntries that have been rolled out of the database. Each
+ * calendar month is one append-only file of newline-delimited JSON, gzipped;
+ * every append adds a new gzip member to the end of the file, and members are
+ * read back as one continuous stream. Reads only open the months that overlap
+ * the requested date range.
+ *
+ * Next to each segment is a small JSON index holding, for every user, how many
+ * entries of each type the segment has for them. Reads use it to skip months
+ * that have nothing for the user, and paged reads to skip whole months before
+ * the page without opening them.
+ *
+ * Entries are appended before they are deleted from the database, and stay
+ * pending in the index until the caller settles them once the delete has
+ * committed. Reads skip pending entries, which are still served from the
+ * database, so no entry is ever returned from both. Segments written before
+ * the indexes existed are indexed the first time they are read, and reads
+ * still skip repeated IDs within a segment.
+ *
+ * @author agent
+ *
+ */
+@Component
+public class LogEntryArchive {
+
+    /** Prefix of every segment file */
+    private static final String                PREFIX       = "log-entries-";
+
+    /** Suffix of every segment file */
+    private static final String                SUFFIX       = ".ndjson.gz";
+
+    /** Suffix of every segment's index file */
+    private static final String                INDEX_SUFFIX = ".index.json";
+
+    /** Used to (de)serialize entries */
+    private static final Gson                  GSON         = new Gson();
+
+    /** Orders entries newest first, as the paged queries do */
+    private static final Comparator<LogEntry>  NEWEST_FIRST = Comparator.comparing( LogEntry::getTime )
+            .thenComparing( LogEntry::getId ).reversed();
+
+    /** Directory the segment files live in */
+    @Value ( "${itrust2.audit.archive.dir:audit-archive}" )
+    private String                             directory;
+
+    /** Indexes read or written so far, by month. Guarded by this. */
+    private final Map<YearMonth, SegmentIndex> indexes      = new HashMap<YearMonth, SegmentIndex>();
+
+    /**
+     * Appends entries to the segment for a month. They stay pending, and are
+     * not read back, until settled.
+     *
+     * @param month
+     *            Month the entries belong to
+     * @param entries
+     *            Entries to append
+     */
+    public synchronized void append ( final YearMonth month, final List<LogEntry> entries ) {
+        try {
+            Files.createDirectories( Paths.get( directory ) );
+            final SegmentIndex index = index( month );
+
+            // Record the entries as pending before appending them, so that if
+            // the append is interrupted the index still knows which of the
+            // entries might be in both places
+            for ( final LogEntry entry : entries ) {
+                index.pending.add( entry.getId() );
+            }
+            writeIndex( month, index );
+
+            try ( FileOutputStream file = new FileOutputStream( segment( month ).toFile(), true );
+                    BufferedWriter out = new BufferedWriter(
+                            new OutputStreamWriter( new GZIPOutputStream( file ), StandardCharsets.UTF_8 ) ) ) {
+                for ( final LogEntry entry : entries ) {
+                    out.write( GSON.toJson( entry ) );
+                    out.newLine();
+                }
+                out.flush();
+                file.getFD().sync();
+            }
+            entries.forEach( index::add );
+            index.size = Files.size( segment( month ) );
+            writeIndex( month, index );
+        }
+        catch ( final IOException e ) {
+            throw new UncheckedIOException( "Unable to archive log entries for " + month, e );
+        }
+    }
+
+    /**
+     * Marks appended entries as no longer being in the database, so that
+     * reads return them
+     *
+     * @param month
+     *            Month the entries were appended to
+     * @param ids
+     *            IDs of the entries
+     */
+    public synchronized void settle ( final YearMonth month, final Collection<Long> ids ) {
+        final SegmentIndex index = index( month );
+        if ( index.pending.removeAll( ids ) ) {
+            writeIndex( month, index );
+        }
+    }
+
+    /**
+     * Finds the entries that were appended but never settled, such as by a
+     * roll-over that was interrupted before its delete committed
+     *
+     * @return IDs of the pending entries, by month
+     */
+    public synchronized Map<YearMonth, Set<Long>> pending () {
+        final Map<YearMonth, Set<Long>> pending = new TreeMap<YearMonth, Set<Long>>();
+        for ( final YearMonth month : months() ) {
+            final SegmentIndex index = index( month );
+            if ( !index.pending.isEmpty() ) {
+                pending.put( month, new HashSet<Long>( index.pending ) );
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Lists the months that have an archived segment, oldest first
+     *
+     * @return Archived months
+     */
+    public List<YearMonth> months () {
+        final Set<YearMonth> months = new TreeSet<YearMonth>();
+        final Path dir = Paths.get( directory );
+        if ( !Files.isDirectory( dir ) ) {
+            return new ArrayList<YearMonth>();
+        }
+        try ( DirectoryStream<Path> files = Files.newDirectoryStream( dir, PREFIX + "*" + SUFFIX ) ) {
+            for ( final Path file : files ) {
+                final String name = file.getFileName().toString();
+                months.add( YearMonth.parse( name.substring( PREFIX.length(), name.length() - SUFFIX.length() ) ) );
+            }
+        }
+        catch ( final IOException e ) {
+            throw new UncheckedIOException( "Unable to list archived log entries", e );
+        }
+        return new ArrayList<YearMonth>( months );
+    }
+
+    /**
+     * Checks whether any archived segment could hold entries in a date range
+     *
+     * @param startDate
+     *            Start of the range, or null for no lower bound
+     * @param endDate
+     *            End of the range, or null for no upper bound
+     * @return Whether the range overlaps the archive
+     */
+    public boolean covers ( final ZonedDateTime startDate, final ZonedDateTime endDate ) {
+        return months().stream().anyMatch( m -> overlaps( m, startDate, endDate ) );
+    }
+
+    /**
+     * Finds the archived entries for a user
+     *
+     * @param user
+     *            User who is either the primary or secondary user
+     * @param codes
+     *            Types of entries to include, or null for all
+     * @param startDate
+     *            Start of the range (inclusive), or null for no lower bound
+     * @param endDate
+     *            End of the range (inclusive), or null for no upper bound
+     * @return Matching entries, oldest month first
+     */
+    public List<LogEntry> find ( final String user, final Collection<TransactionType> codes,
+            final ZonedDateTime startDate, final ZonedDateTime endDate ) {
+        final List<LogEntry> found = new ArrayList<LogEntry>();
+        scan( user, codes, startDate, endDate, found::add );
+        return found;
+    }
+
+    /**
+     * Streams archived entries to a consumer one at a time, without holding
+     * more than one segment's worth of IDs in memory
+     *
+     * @param user
+     *            User who is either the primary or secondary user, or null
+     *            for every user
+     * @param codes
+     *            Types of entries to include, or null for all
+     * @param startDate
+     *            Start of the range (inclusive), or null for no lower bound
+     * @param endDate
+     *            End of the range (inclusive), or null for no upper bound
+     * @param consumer
+     *            Receives every matching entry, oldest month first
+     */
+    public void scan ( final String user, final Collection<TransactionType> codes, final ZonedDateTime startDate,
+            final ZonedDateTime endDate, final Consumer<LogEntry> consumer ) {
+        for ( final YearMonth month : months() ) {
+            if ( !overlaps( month, startDate, endDate ) ) {
+                continue;
+            }
+            final SegmentIndex index = snapshot( month );
+            if ( null == user || index.count( user, codes ) > 0 ) {
+                read( month, index.pending, user, codes, startDate, endDate, consumer );
+            }
+        }
+    }
+
+    /**
+     * Finds one page of the archived entries for a user, newest first. Months
+     * wholly inside the date range are skipped by their counts in the index,
+     * so only the months the page falls in, and those the range cuts through,
+     * are opened.
+     *
+     * @param user
+     *            User who is either the primary or secondary user
+     * @param codes
+     *            Types of entries to include
+     * @param startDate
+     *            Start of the range (inclusive), or null for no lower bound
+     * @param endDate
+     *            End of the range (inclusive), or null for no upper bound
+     * @param offset
+     *            Number of matching entries before the page
+     * @param limit
+     *            Most entries to return
+     * @return Matching entries on the page, newest first
+     */
+    public List<LogEntry> page ( final String user, final Collection<TransactionType> codes,
+            final ZonedDateTime startDate, final ZonedDateTime endDate, final long offset, final int limit ) {
+        final List<LogEntry> page = new ArrayList<LogEntry>();
+        final List<YearMonth> months = months();
+        Collections.reverse( months );
+        long skip = offset;
+        for ( final YearMonth month : months ) {
+            if ( page.size() >= limit ) {
+                break;
+            }
+            if ( !overlaps( month, startDate, endDate ) ) {
+                continue;
+            }
+            final SegmentIndex index = snapshot( month );
+            final int count = index.count( user, codes );
+            if ( 0 == count ) {
+                continue;
+            }
+            if ( skip >= count && index.pending.isEmpty() && within( month, startDate, endDate ) ) {
+                skip -= count;
+                continue;
+            }
+
+            final List<LogEntry> entries = new ArrayList<LogEntry>();
+            read( month, index.pending, user, codes, startDate, endDate, entries::add );
+            if ( skip >= entries.size() ) {
+                skip -= entries.size();
+                continue;
+            }
+            entries.sort( NEWEST_FIRST );
+            final int from = (int) skip;
+            skip = 0;
+            page.addAll( entries.subList( from, Math.min( entries.size(), from + limit - page.size() ) ) );
+        }
+        return page;
+    }
+
+    /**
+     * Streams the matching entries of one segment to a consumer, skipping
+     * pending and repeated entries
+     *
+     * @param month
+     *            Month to read
+     * @param pending
+     *            IDs of entries that are still in the database
+     * @param user
+     *            User who is either the primary or secondary user, or null
+     *            for every user
+     * @param codes
+     *            Types of entries to include, or null for all
+     * @param startDate
+     *            Start of the range (inclusive), or null for no lower bound
+     * @param endDate
+     *            End of the range (inclusive), or null for no upper bound
+     * @param consumer
+     *            Receives every matching entry
+     */
+    private void read ( final YearMonth month, final Set<Long> pending, final String user,
+            final Collection<TransactionType> codes, final ZonedDateTime startDate, final ZonedDateTime endDate,
+            final Consumer<LogEntry> consumer ) {
+        final String quotedUser = null == user ? null : GSON.toJson( user );
+        final Set<Long> seen = new HashSet<Long>( pending );
+        try ( BufferedReader in = new BufferedReader( new InputStreamReader(
+                new GZIPInputStream( Files.newInputStream( segment( month ) ) ), StandardCharsets.UTF_8 ) ) ) {
+            String line;
+            while ( null != ( line = in.readLine() ) ) {
+                // Cheap check before paying to parse the line
+                if ( null != quotedUser && !line.contains( quotedUser ) ) {
+                    continue;
+                }
+                final LogEntry entry = GSON.fromJson( line, LogEntry.class );
+                if ( matches( entry, user, codes, startDate, endDate ) && seen.add( entry.getId() ) ) {
+                    consumer.accept( entry );
+                }
+            }
+        }
+        catch ( final IOException e ) {
+            throw new UncheckedIOException( "Unable to read archived log entries for " + month, e );
+        }
+    }
+
+    /**
+     * Checks an archived entry against a query
+     *
+     * @param entry
+     *            Entry to check
+     * @param user
+     *            User who must be the primary or secondary user, or null
+     * @param codes
+     *            Allowed types, or null for all
+     * @param startDate
+     *            Start of the range (inclusive), or null
+     * @param endDate
+     *            End of the range (inclusive), or null
+     * @return Whether the entry matches
+     */
+    private static boolean matches ( final LogEntry entry, final String user, final Collection<TransactionType> codes,
+            final ZonedDateTime startDate, final ZonedDateTime endDate ) {
+        return ( null == user || user.equals( entry.getPrimaryUser() ) || user.equals( entry.getSecondaryUser() ) )
+                && ( null == codes || codes.contains( entry.getLogCode() ) )
+                && ( null == startDate || !entry.getTime().isBefore( startDate ) )
+                && ( null == endDate || !entry.getTime().isAfter( endDate ) );
+    }
+
+    /**
+     * Checks whether a month overlaps a date range
+     *
+     * @param month
+     *            Month to check
+     * @param startDate
+     *            Start of the range, or null
+     * @param endDate
+     *            End of the range, or null
+     * @return Whether they overlap
+     */
+    private static boolean overlaps ( final YearMonth month, final ZonedDateTime startDate,
+            final ZonedDateTime endDate ) {
+        final ZoneId zone = ZoneId.systemDefault();
+        return ( null == startDate || !month.isBefore( YearMonth.from( startDate.withZoneSameInstant( zone ) ) ) )
+                && ( null == endDate || !month.isAfter( YearMonth.from( endDate.withZoneSameInstant( zone ) ) ) );
+    }
+
+    /**
+     * Checks whether a month lies wholly inside a date range
+     *
+     * @param month
+     *            Month to check
+     * @param startDate
+     *            Start of the range, or null
+     * @param endDate
+     *            End of the range, or null
+     * @return Whether every instant of the month is in the range
+     */
+    private static boolean within ( final YearMonth month, final ZonedDateTime startDate,
+            final ZonedDateTime endDate ) {
+        final ZoneId zone = ZoneId.systemDefault();
+        return ( null == startDate || !month.atDay( 1 ).atStartOfDay( zone ).isBefore( startDate ) )
+                && ( null == endDate || !month.plusMonths( 1 ).atDay( 1 ).atStartOfDay( zone ).isAfter( endDate ) );
+    }
+
+    /**
+     * Copies the index of a month, for reading outside the lock
+     *
+     * @param month
+     *            Month to find the index of
+     * @return Copy of the index
+     */
+    private synchronized SegmentIndex snapshot ( final YearMonth month ) {
+        return index( month ).copy();
+    }
+
+    /**
+     * Finds the index of a month. An index that is missing, or that does not
+     * match the length of its segment because writing it was interrupted, is
+     * rebuilt from the segment, keeping any entries it had as pending. Must
+     * be called holding the lock.
+     *
+     * @param month
+     *            Month to find the index of
+     * @return The live index
+     */
+    private SegmentIndex index ( final YearMonth month ) {
+        try {
+            final Path segment = segment( month );
+            final long size = Files.exists( segment ) ? Files.size( segment ) : 0;
+            SegmentIndex index = indexes.get( month );
+            if ( null == index && Files.exists( indexFile( segment ) ) ) {
+                index = GSON.fromJson( Files.readString( indexFile( segment ) ), SegmentIndex.class );
+            }
+            if ( null == index || index.size != size ) {
+                final SegmentIndex rebuilt = new SegmentIndex();
+                if ( null != index ) {
+                    rebuilt.pending.addAll( index.pending );
+                }
+                if ( size > 0 ) {
+                    read( month, Collections.emptySet(), null, null, null, null, rebuilt::add );
+                }
+                rebuilt.size = size;
+                index = rebuilt;
+            }
+            indexes.put( month, index );
+            return index;
+        }
+        catch ( final IOException e ) {
+            throw new UncheckedIOException( "Unable to read the index of archived log entries for " + month, e );
+        }
+    }
+
+    /**
+     * Writes the index of a month, replacing the previous one in one step
+     *
+     * @param month
+     *            Month the index is for
+     * @param index
+     *            Index to write
+     */
+    private void writeIndex ( final YearMonth month, final SegmentIndex index ) {
+        final Path target = indexFile( segment( month ) );
+        final Path temp = target.resolveSibling( target.getFileName() + ".tmp" );
+        try {
+            Files.writeString( temp, GSON.toJson( index ) );
+            Files.move( temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( final IOException e ) {
+            throw new UncheckedIOException( "Unable to write the index of archived log entries for " + month, e );
+        }
+    }
+
+    /**
+     * Finds the index file for a segment
+     *
+     * @param segment
+     *            Segment to find the index of
+     * @return Path to the index
+     */
+    private static Path indexFile ( final Path segment ) {
+        final String name = segment.getFileName().toString();
+        return segment.resolveSibling( name.substring( 0, name.length() - SUFFIX.length() ) + INDEX_SUFFIX );
+    }
+
+    /**
+     * Finds the segment file for a month
+     *
+     * @param month
+     *            Month to find
+     * @return Path to the segment
+     */
+    private Path segment ( final YearMonth month ) {
+        return Paths.get( directory, PREFIX + month + SUFFIX );
+    }
+
+    /**
+     * What a segment holds, by user and type, and which of its entries may
+     * still be in the database
+     */
+    private static final class SegmentIndex {
+
+        /** Length of the segment file when the counts were taken */
+        private long                              size;
+
+        /**
+         * Number of entries in the segment for each user, by type. An entry
+         * counts once for each different user on it.
+         */
+        private Map<String, Map<String, Integer>> counts  = new HashMap<String, Map<String, Integer>>();
+
+        /** IDs of entries appended but not yet settled */
+        private Set<Long>                         pending = new HashSet<Long>();
+
+        /**
+         * Counts an entry
+         *
+         * @param entry
+         *            Entry to count
+         */
+        private void add ( final LogEntry entry ) {
+            add( entry.getPrimaryUser(), entry.getLogCode() );
+            if ( !Objects.equals( entry.getPrimaryUser(), entry.getSecondaryUser() ) ) {
+                add( entry.getSecondaryUser(), entry.getLogCode() );
+            }
+        }
+
+        /**
+         * Counts an entry for one user
+         *
+         * @param user
+         *            User on the entry; null is ignored
+         * @param code
+         *            Type of the entry
+         */
+        private void add ( final String user, final TransactionType code ) {
+            if ( null != user ) {
+                counts.computeIfAbsent( user, u -> new HashMap<String, Integer>() ).merge( code.name(), 1,
+                        Integer::sum );
+            }
+        }
+
+        /**
+         * Finds how many entries the segment holds for a user, including
+         * pending ones
+         *
+         * @param user
+         *            User who is either the primary or secondary user
+         * @param codes
+         *            Types of entries to include, or null for all
+         * @return Number of entries
+         */
+        private int count ( final String user, final Collection<TransactionType> codes ) {
+            final Map<String, Integer> byCode = counts.getOrDefault( user, Collections.emptyMap() );
+            if ( null == codes ) {
+                return byCode.values().stream().mapToInt( Integer::intValue ).sum();
+            }
+            return codes.stream().mapToInt( c -> byCode.getOrDefault( c.name(), 0 ) ).sum();
+        }
+
+        /**
+         * Copies the index
+         *
+         * @return An independent copy
+         */
+        private SegmentIndex copy () {
+            final SegmentIndex copy = new SegmentIndex();
+            copy.size = size;
+            counts.forEach( ( user, byCode ) -> copy.counts.put( user, new HashMap<String, Integer>( byCode ) ) );
+            copy.pending.addAll( pending );
+            return copy;
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package edu.ncsu.csc.iTrust2.services.security;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled job that rolls LogEntries older than `itrust2.audit.archive.hot-days`
+ * out of the database and into the LogEntryArchive. Entries are moved in
+ * batches, each in its own transaction, so the job never holds a long-running
+ * transaction against the LogEntry table.
+ *
+ * @author agent
+ *
+ */
+@Component
+public class LogEntryArchiver {
+
+    /** Logger, to report how much was archived */
+    private static final Logger LOG = LoggerFactory.getLogger( LogEntryArchiver.class );
+
+    /** LogEntry service, which does the moving */
+    @Autowired
+    private LogEntryService     service;
+
+    /** Number of days of entries kept in the database */
+    @Value ( "${itrust2.audit.archive.hot-days:90}" )
+    private int                 hotDays;
+
+    /** Number of entries moved per transaction */
+    @Value ( "${itrust2.audit.archive.batch-size:5000}" )
+    private int                 batchSize;
+
+    /**
+     * Archives every entry older than the hot window. Runs nightly by default;
+     * set `itrust2.audit.archive.cron` to `-` to disable.
+     */
+    @Scheduled ( cron = "${itrust2.audit.archive.cron:0 0 3 * * *}" )
+    public void rollOver () {
+        final ZonedDateTime cutoff = ZonedDateTime.now().truncatedTo( ChronoUnit.DAYS ).minusDays( hotDays );
+        long total = 0;
+        int moved;
+        do {
+            moved = service.archiveBefore( cutoff, batchSize );
+            total += moved;
+        }
+        while ( moved == batchSize );
+        LOG.info( "Archived " + total + " log entries from before " + cutoff );
+    }
+
+}
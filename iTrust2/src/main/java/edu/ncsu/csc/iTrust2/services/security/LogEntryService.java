@@ -1,15 +1,36 @@
 package edu.ncsu.csc.iTrust2.services.security;
 
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
 import edu.ncsu.csc.iTrust2.models.security.LogEntry;
 import edu.ncsu.csc.iTrust2.repositories.security.LogEntryRepository;
 import edu.ncsu.csc.iTrust2.services.Service;
@@ -17,6 +38,12 @@ import edu.ncsu.csc.iTrust2.services.Service;
 /**
  * Service for interacting with LogEntries. Used by the LoggerUtil class.
  *
+ * Recent entries (the hot segment) live in the LogEntry table; older ones are
+ * rolled out by LogEntryArchiver into the LogEntryArchive (the cold segments).
+ * Reads consult the archive only for the months that overlap their date range
+ * and hold entries for the user. Every read covers both tiers, hot first, and
+ * an entry that is being rolled over is only ever returned from one of them.
+ *
  * @author Kai Presler-Marshall
  *
  */
@@ -28,7 +55,21 @@ public class LogEntryService extends Service<LogEntry, Long> {
      * LogEntry repository, for CRUD tasks
      */
     @Autowired
-    private LogEntryRepository repository;
+    private LogEntryRepository         repository;
+
+    /** Cold storage for entries rolled out of the database */
+    @Autowired
+    private LogEntryArchive            archive;
+
+    /** Stands in for a missing start date on an export or page */
+    private static final ZonedDateTime EARLIEST = ZonedDateTime.ofInstant( Instant.EPOCH, ZoneOffset.UTC );
+
+    /** Stands in for a missing end date on an export or page */
+    private static final ZonedDateTime LATEST   = ZonedDateTime.of( 9999, 12, 31, 0, 0, 0, 0, ZoneOffset.UTC );
+
+    /** Used to detach exported entries as they are streamed */
+    @PersistenceContext
+    private EntityManager              entityManager;
 
     @Override
     protected JpaRepository<LogEntry, Long> getRepository () {
@@ -44,7 +85,9 @@ public class LogEntryService extends Service<LogEntry, Long> {
      * @return All matching LogEntries
      */
     public List<LogEntry> findAllForUser ( final String user ) {
-        return repository.findByPrimaryUserOrSecondaryUser( user );
+        final List<LogEntry> entries = archive.find( user, null, null, null );
+        entries.addAll( repository.findByPrimaryUserOrSecondaryUser( user ) );
+        return entries;
     }
 
     /**
@@ -60,13 +103,158 @@ public class LogEntryService extends Service<LogEntry, Long> {
      */
     public List<LogEntry> findByDateRange ( final String user, final ZonedDateTime startDate,
             final ZonedDateTime endDate ) {
+        final List<LogEntry> entries = archive.find( user, null, startDate, endDate );
+        entries.addAll( repository.findByUserAndTimeBetween( user, startDate, endDate ) );
+        return entries;
+    }
+
+    /**
+     * Finds one page of the LogEntries for a user, newest first. Filtering,
+     * ordering, and paging all happen in the database, and neither the page
+     * nor the check for a following page counts the user's whole history, so
+     * the cost depends on how far into the log the page is rather than on how
+     * long the log is. If the date range, or the lack of one, reaches back
+     * into archived months, the archived entries follow the (newer) database
+     * entries, and only the archived months the page falls in are read.
+     * Either end of the range may be left open.
+     *
+     * @param user
+     *            User to find entries for
+     * @param codes
+     *            Types of entries to include
+     * @param startDate
+     *            Start date (inclusive), or null for no lower bound
+     * @param endDate
+     *            End date (inclusive), or null for no upper bound
+     * @param page
+     *            Zero-based index of the page to find
+     * @param pageLength
+     *            Number of entries on a page
+     * @return The page of matching LogEntries, and whether there is another
+     *         page after it
+     */
+    public Slice<LogEntry> findPageForUser ( final String user, final Collection<TransactionType> codes,
+            final ZonedDateTime startDate, final ZonedDateTime endDate, final int page, final int pageLength ) {
+        final List<Integer> stored = stored( codes );
+        final ZonedDateTime from = null == startDate ? EARLIEST : startDate;
+        final ZonedDateTime to = null == endDate ? LATEST : endDate;
+        final long offset = (long) page * pageLength;
 
-        final List<LogEntry> withinRange = repository.findByTimeBetween( startDate, endDate );
+        // One entry past the end of the page says whether there is another
+        final List<LogEntry> content = new ArrayList<LogEntry>( repository.findPageByUser( user, stored, from, to,
+                offset + pageLength + 1, pageLength + 1, offset ) );
+        if ( content.size() <= pageLength && archive.covers( from, to ) ) {
+            // Everything archived is older than everything still in the
+            // database, so the archived entries simply come after the hot
+            // ones. If the page starts past the last hot entry, count the hot
+            // entries, but no further than the page
+            final long hot = content.isEmpty() && offset > 0
+                    ? repository.countByUserUpTo( user, stored, from, to, offset ) : offset + content.size();
+            content.addAll( archive.page( user, codes, from, to, Math.max( 0, offset - hot ),
+                    pageLength + 1 - content.size() ) );
+        }
 
-        return withinRange.stream()
-                .filter( e -> e.getPrimaryUser().equals( user ) || e.getSecondaryUser().equals( user ) )
-                .collect( Collectors.toList() );
+        final boolean hasNext = content.size() > pageLength;
+        return new SliceImpl<LogEntry>( hasNext ? content.subList( 0, pageLength ) : content,
+                PageRequest.of( page, pageLength ), hasNext );
+    }
 
+    /**
+     * Moves the oldest LogEntries from before a cutoff out of the database and
+     * into the archive. Entries are appended to the archive before they are
+     * deleted, so an interruption can never lose an entry; they stay pending
+     * in the archive, and are read from the database, until the delete
+     * commits. Entries left pending by an earlier, interrupted call are
+     * deleted from the database first.
+     *
+     * @param cutoff
+     *            Entries older than this are archived
+     * @param limit
+     *            Most entries to move in this call
+     * @return Number of entries moved; fewer than `limit` means there are no
+     *         more to move
+     */
+    public int archiveBefore ( final ZonedDateTime cutoff, final int limit ) {
+        final Map<YearMonth, Set<Long>> moved = archive.pending();
+        moved.values().forEach( repository::deleteByIdIn );
+
+        final List<LogEntry> batch = repository.findByTimeBefore( cutoff,
+                PageRequest.of( 0, limit, Sort.by( "time", "id" ) ) );
+        final Map<YearMonth, List<LogEntry>> byMonth = batch.stream()
+                .collect( Collectors.groupingBy(
+                        e -> YearMonth.from( e.getTime().withZoneSameInstant( ZoneId.systemDefault() ) ),
+                        TreeMap::new, Collectors.toList() ) );
+        byMonth.forEach( archive::append );
+        if ( !batch.isEmpty() ) {
+            repository.deleteInBatch( batch );
+        }
+        byMonth.forEach( ( month, entries ) -> moved.computeIfAbsent( month, m -> new HashSet<Long>() )
+                .addAll( entries.stream().map( LogEntry::getId ).collect( Collectors.toList() ) ) );
+
+        if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit () {
+                    moved.forEach( archive::settle );
+                }
+            } );
+        }
+        else {
+            moved.forEach( archive::settle );
+        }
+        return batch.size();
+    }
+
+    /**
+     * Streams every LogEntry matching an export to a consumer, oldest first:
+     * first those in the archive, then those in the database. Database rows
+     * are read through a server-side cursor and detached once consumed, so
+     * memory use does not grow with the size of the export.
+     *
+     * @param user
+     *            User who is the primary or secondary user, or null for every
+     *            user
+     * @param codes
+     *            Types of entries to include
+     * @param startDate
+     *            Start date (inclusive), or null for no lower bound
+     * @param endDate
+     *            End date (inclusive), or null for no upper bound
+     * @param consumer
+     *            Receives every matching entry
+     * @return Number of entries exported
+     */
+    public long export ( final String user, final Collection<TransactionType> codes, final ZonedDateTime startDate,
+            final ZonedDateTime endDate, final Consumer<LogEntry> consumer ) {
+        final long[] count = { 0 };
+        archive.scan( user, codes, startDate, endDate, e -> {
+            consumer.accept( e );
+            count[0]++;
+        } );
+
+        final ZonedDateTime from = null == startDate ? EARLIEST : startDate;
+        final ZonedDateTime to = null == endDate ? LATEST : endDate;
+        try ( Stream<LogEntry> hot = null == user ? repository.streamByTimeBetween( codes, from, to )
+                : repository.streamByUserAndTimeBetween( user, stored( codes ), from, to ) ) {
+            hot.forEach( e -> {
+                consumer.accept( e );
+                entityManager.detach( e );
+                count[0]++;
+            } );
+        }
+        return count[0];
+    }
+
+    /**
+     * Converts types to the values stored in the log_code column, for the
+     * native queries
+     *
+     * @param codes
+     *            Types to convert
+     * @return Stored values
+     */
+    private static List<Integer> stored ( final Collection<TransactionType> codes ) {
+        return codes.stream().map( TransactionType::getCode ).collect( Collectors.toList() );
     }
 
 }
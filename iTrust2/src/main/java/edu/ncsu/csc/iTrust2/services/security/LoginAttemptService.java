@@ -1,18 +1,52 @@
 package edu.ncsu.csc.iTrust2.services.security;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import edu.ncsu.csc.iTrust2.models.User;
 import edu.ncsu.csc.iTrust2.models.security.LoginAttempt;
 import edu.ncsu.csc.iTrust2.repositories.security.LoginAttemptRepository;
 import edu.ncsu.csc.iTrust2.services.Service;
+import edu.ncsu.csc.iTrust2.services.UserService;
+import edu.ncsu.csc.iTrust2.utils.SlidingWindowCounter;
 
 /**
- * Service for interacting with LoginAttempts.
+ * Service for interacting with LoginAttempts. Failed attempts are counted in
+ * memory, per IP address and per user, over a sliding window of
+ * `itrust2.security.login-attempts.window-minutes`; attempts older than that
+ * no longer count towards a lockout.
+ *
+ * The LoginAttempt table only holds a snapshot of the counters, one row per
+ * IP address or user per bucket, written every
+ * `itrust2.security.login-attempts.persist-ms` (unless
+ * `itrust2.security.login-attempts.persist` is off) and read back on startup,
+ * so that a restart does not reset them. The service remembers the rows it
+ * has written, so each snapshot compares the counters against those rather
+ * than reading the table back, and only writes the rows whose counts changed.
+ * Counters are not shared between instances of the application.
+ *
+ * Keys with nothing left in the window are dropped from the counters every
+ * `itrust2.security.login-attempts.purge-ms`, whether or not they are
+ * persisted.
  *
  * @author Kai Presler-Marshall
  *
@@ -23,13 +57,77 @@ public class LoginAttemptService extends Service<LoginAttempt, Long> {
 
     /** Repository for CRUD operations */
     @Autowired
-    private LoginAttemptRepository repository;
+    private LoginAttemptRepository          repository;
+
+    /** Used to find the users in a snapshot */
+    @Autowired
+    private UserService<User>               userService;
+
+    /** How long an attempt counts for, in minutes */
+    @Value ( "${itrust2.security.login-attempts.window-minutes:1440}" )
+    private long                            windowMinutes;
+
+    /** Number of buckets the window is split into */
+    @Value ( "${itrust2.security.login-attempts.buckets:24}" )
+    private int                             buckets;
+
+    /** Whether the counters are written to the database */
+    @Value ( "${itrust2.security.login-attempts.persist:true}" )
+    private boolean                         persist;
+
+    /** Failed attempts by IP address */
+    private SlidingWindowCounter            ipAttempts;
+
+    /** Failed attempts by username */
+    private SlidingWindowCounter            userAttempts;
+
+    /**
+     * The rows in the snapshot table, by key, as last written or read. Guarded
+     * by itself.
+     */
+    private final Map<String, LoginAttempt> persisted = new HashMap<String, LoginAttempt>();
+
+    /**
+     * Whether persisted matches the table. False until the snapshot has been
+     * read, and again after a snapshot fails to commit. Guarded by persisted.
+     */
+    private boolean                         synced    = false;
 
     @Override
     protected JpaRepository<LoginAttempt, Long> getRepository () {
         return repository;
     }
 
+    /**
+     * Sets up the counters
+     */
+    @PostConstruct
+    public void init () {
+        final Duration window = Duration.ofMinutes( windowMinutes );
+        ipAttempts = new SlidingWindowCounter( window, buckets );
+        userAttempts = new SlidingWindowCounter( window, buckets );
+    }
+
+    /**
+     * Records a failed login attempt from an IP address
+     *
+     * @param ipAddress
+     *            IP address the attempt came from
+     */
+    public void recordIP ( final String ipAddress ) {
+        ipAttempts.increment( ipAddress );
+    }
+
+    /**
+     * Records a failed login attempt for a user
+     *
+     * @param user
+     *            User the attempt was for
+     */
+    public void recordUser ( final User user ) {
+        userAttempts.increment( user.getUsername() );
+    }
+
     /**
      * Reports the number of login attempts for a given IP address
      *
@@ -38,7 +136,7 @@ public class LoginAttemptService extends Service<LoginAttempt, Long> {
      * @return Number of login attempts
      */
     public long countByIP ( final String ipAddress ) {
-        return repository.countByIp( ipAddress );
+        return null == ipAddress ? 0 : ipAttempts.count( ipAddress );
     }
 
     /**
@@ -46,10 +144,14 @@ public class LoginAttemptService extends Service<LoginAttempt, Long> {
      *
      * @param ipAddress
      *            IP address to clear
-     * @return Number of records deleted
+     * @return Number of attempts cleared
      */
     public long clearIP ( final String ipAddress ) {
-        return repository.deleteByIp( ipAddress );
+        final long cleared = countByIP( ipAddress );
+        if ( null != ipAddress ) {
+            ipAttempts.clear( ipAddress );
+        }
+        return cleared;
     }
 
     /**
@@ -60,7 +162,7 @@ public class LoginAttemptService extends Service<LoginAttempt, Long> {
      * @return Number of login attempts
      */
     public long countByUser ( final User user ) {
-        return repository.countByUser( user );
+        return null == user ? 0 : userAttempts.count( user.getUsername() );
     }
 
     /**
@@ -68,10 +170,222 @@ public class LoginAttemptService extends Service<LoginAttempt, Long> {
      *
      * @param user
      *            User to clear
-     * @return Number of records deleted
+     * @return Number of attempts cleared
      */
     public long clearUser ( final User user ) {
-        return repository.deleteByUser( user );
+        final long cleared = countByUser( user );
+        if ( null != user ) {
+            userAttempts.clear( user.getUsername() );
+        }
+        return cleared;
+    }
+
+    /**
+     * Clears the login attempts for an IP address and a user, after they
+     * log in successfully
+     *
+     * @param ipAddress
+     *            IP address to clear
+     * @param username
+     *            Name of the user to clear
+     */
+    public void clearLogin ( final String ipAddress, final String username ) {
+        clearIP( ipAddress );
+        if ( null != username ) {
+            userAttempts.clear( username );
+        }
+    }
+
+    @Override
+    public void deleteAll () {
+        synchronized ( persisted ) {
+            super.deleteAll();
+            persisted.clear();
+            ipAttempts.clearAll();
+            userAttempts.clearAll();
+        }
+    }
+
+    /**
+     * Reloads the counters from the last snapshot
+     */
+    @EventListener ( ApplicationReadyEvent.class )
+    public void recover () {
+        if ( !persist ) {
+            return;
+        }
+        synchronized ( persisted ) {
+            for ( final LoginAttempt attempt : load() ) {
+                final long time = attempt.getTime().toInstant().toEpochMilli();
+                if ( null != attempt.getIp() ) {
+                    ipAttempts.add( attempt.getIp(), time, attempt.getAttempts() );
+                }
+                else if ( null != attempt.getUser() ) {
+                    userAttempts.add( attempt.getUser().getUsername(), time, attempt.getAttempts() );
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops IP addresses and users with no attempts left in the window, so
+     * that the counters do not grow without bound
+     */
+    @Scheduled ( fixedDelayString = "${itrust2.security.login-attempts.purge-ms:60000}",
+            initialDelayString = "${itrust2.security.login-attempts.purge-ms:60000}" )
+    public void purge () {
+        ipAttempts.purge();
+        userAttempts.purge();
+    }
+
+    /**
+     * Brings the snapshot in the database up to date with the current
+     * counters. Each bucket with attempts in it is one row holding its count;
+     * only rows whose count changed are written, and rows for buckets that
+     * have left the window or been cleared are deleted. The counters are
+     * compared against the rows the service last wrote, so the table is only
+     * read if an earlier snapshot failed.
+     */
+    @Scheduled ( fixedDelayString = "${itrust2.security.login-attempts.persist-ms:60000}",
+            initialDelayString = "${itrust2.security.login-attempts.persist-ms:60000}" )
+    public void snapshot () {
+        if ( !persist ) {
+            return;
+        }
+        synchronized ( persisted ) {
+            if ( !synced ) {
+                load();
+            }
+            write();
+        }
+    }
+
+    /**
+     * Reads the snapshot table into persisted, first deleting the rows for
+     * buckets that have left the window
+     *
+     * @return The rows read
+     */
+    private List<LoginAttempt> load () {
+        final ZonedDateTime cutoff = ZonedDateTime.now().minusMinutes( windowMinutes );
+        repository.deleteByTimeBefore( cutoff );
+        final List<LoginAttempt> rows = repository.findByTimeAfter( cutoff );
+        persisted.clear();
+        rows.forEach( attempt -> persisted.put( key( attempt ), attempt ) );
+        synced = true;
+        return rows;
+    }
+
+    /**
+     * Writes the difference between the counters and persisted to the
+     * snapshot table, and updates persisted to match once the write commits
+     */
+    private void write () {
+        final Map<String, LoginAttempt> stale = new HashMap<String, LoginAttempt>( persisted );
+        final List<LoginAttempt> changed = new ArrayList<LoginAttempt>();
+        ipAttempts.forEachBucket( ( ip, start, count ) -> {
+            final LoginAttempt old = stale.remove( key( ip, null, toTime( start ) ) );
+            if ( null == old || old.getAttempts() != count ) {
+                final LoginAttempt attempt = new LoginAttempt();
+                attempt.setId( null == old ? null : old.getId() );
+                attempt.setIp( ip );
+                attempt.setTime( toTime( start ) );
+                attempt.setAttempts( (int) count );
+                changed.add( attempt );
+            }
+        } );
+
+        final Map<String, Map<Long, Long>> added = new HashMap<String, Map<Long, Long>>();
+        userAttempts.forEachBucket( ( username, start, count ) -> {
+            final LoginAttempt old = stale.remove( key( null, username, toTime( start ) ) );
+            if ( null == old ) {
+                added.computeIfAbsent( username, k -> new HashMap<Long, Long>() ).put( start, count );
+            }
+            else if ( old.getAttempts() != count ) {
+                final LoginAttempt attempt = new LoginAttempt();
+                attempt.setId( old.getId() );
+                attempt.setUser( old.getUser() );
+                attempt.setTime( old.getTime() );
+                attempt.setAttempts( (int) count );
+                changed.add( attempt );
+            }
+        } );
+        if ( !added.isEmpty() ) {
+            for ( final User user : userService.findByNames( added.keySet() ) ) {
+                added.get( user.getUsername() ).forEach( ( start, count ) -> {
+                    final LoginAttempt attempt = new LoginAttempt();
+                    attempt.setUser( user );
+                    attempt.setTime( toTime( start ) );
+                    attempt.setAttempts( count.intValue() );
+                    changed.add( attempt );
+                } );
+            }
+        }
+
+        final List<LoginAttempt> saved = repository.saveAll( changed );
+        if ( !stale.isEmpty() ) {
+            repository.deleteInBatch( stale.values() );
+        }
+
+        final Runnable apply = () -> {
+            saved.forEach( attempt -> persisted.put( key( attempt ), attempt ) );
+            stale.keySet().forEach( persisted::remove );
+        };
+        if ( !TransactionSynchronizationManager.isSynchronizationActive() ) {
+            apply.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion ( final int status ) {
+                synchronized ( persisted ) {
+                    if ( STATUS_COMMITTED == status ) {
+                        apply.run();
+                    }
+                    else {
+                        synced = false;
+                    }
+                }
+            }
+        } );
+    }
+
+    /**
+     * Identifies a row of the snapshot
+     *
+     * @param attempt
+     *            The row
+     * @return Key for the row
+     */
+    private static String key ( final LoginAttempt attempt ) {
+        return null != attempt.getIp() ? key( attempt.getIp(), null, attempt.getTime() )
+                : key( null, attempt.getUser().getUsername(), attempt.getTime() );
+    }
+
+    /**
+     * Identifies the row for one bucket of an IP address or user
+     *
+     * @param ip
+     *            IP address, or null for a user
+     * @param username
+     *            Name of the user, or null for an IP address
+     * @param start
+     *            Start of the bucket
+     * @return Key for the row
+     */
+    private static String key ( final String ip, final String username, final ZonedDateTime start ) {
+        return ( null != ip ? "ip " + ip : "user " + username ) + " " + start.toEpochSecond();
+    }
+
+    /**
+     * Converts epoch milliseconds to a time
+     *
+     * @param millis
+     *            Epoch milliseconds
+     * @return The time, in the system zone
+     */
+    private static ZonedDateTime toTime ( final long millis ) {
+        return ZonedDateTime.ofInstant( Instant.ofEpochMilli( millis ), ZoneId.systemDefault() );
     }
 
 }
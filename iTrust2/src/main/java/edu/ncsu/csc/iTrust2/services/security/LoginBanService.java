@@ -1,8 +1,11 @@
 package edu.ncsu.csc.iTrust2.services.security;
 
+import java.time.ZonedDateTime;
+
 import javax.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
 
@@ -12,7 +15,9 @@ import edu.ncsu.csc.iTrust2.repositories.security.LoginBanRepository;
 import edu.ncsu.csc.iTrust2.services.Service;
 
 /**
- * Service for interacting with LoginBans
+ * Service for interacting with LoginBans. Bans saved without an end last
+ * `itrust2.security.ban.duration-days` if that is set, and otherwise do not
+ * expire.
  *
  * @author Kai Presler-Marshall
  *
@@ -25,13 +30,63 @@ public class LoginBanService extends Service<LoginBan, Long> {
      * Repository for CRUD actions
      */
     @Autowired
-    private LoginBanRepository repository;
+    private LoginBanRepository       repository;
+
+    /** Banned IP addresses, kept in step with the repository */
+    @Autowired
+    private IPBlockCache             ipCache;
+
+    /** Users cached for logging in, dropped when they are banned */
+    @Autowired
+    private CachedUserDetailsService userDetailsCache;
+
+    /** How long a ban lasts, in days; 0 or less for bans that do not expire */
+    @Value ( "${itrust2.security.ban.duration-days:0}" )
+    private long                     durationDays;
 
     @Override
     protected JpaRepository<LoginBan, Long> getRepository () {
         return repository;
     }
 
+    @Override
+    public void save ( final LoginBan ban ) {
+        if ( null == ban.getTime() ) {
+            ban.setTime( ZonedDateTime.now() );
+        }
+        if ( null == ban.getExpiresAt() ) {
+            ban.setExpiresAt( durationDays > 0 ? ban.getTime().plusDays( durationDays ) : LoginBan.PERMANENT );
+        }
+        super.save( ban );
+        final String ip = ban.getIp();
+        if ( null != ip ) {
+            final ZonedDateTime expiresAt = ban.getExpiresAt();
+            ipCache.afterCommit( () -> ipCache.ban( ip, expiresAt ) );
+        }
+        if ( null != ban.getUser() ) {
+            userDetailsCache.invalidate( ban.getUser().getUsername() );
+        }
+    }
+
+    @Override
+    public void delete ( final LoginBan ban ) {
+        super.delete( ban );
+        final String ip = ban.getIp();
+        if ( null != ip && !repository.existsByIp( ip ) ) {
+            ipCache.afterCommit( () -> ipCache.unban( ip ) );
+        }
+        if ( null != ban.getUser() ) {
+            userDetailsCache.invalidate( ban.getUser().getUsername() );
+        }
+    }
+
+    @Override
+    public void deleteAll () {
+        super.deleteAll();
+        ipCache.afterCommit( ipCache::unbanAll );
+        userDetailsCache.invalidateAll();
+    }
+
     /**
      * Checks if an IP address is banned
      * 
@@ -40,7 +95,7 @@ public class LoginBanService extends Service<LoginBan, Long> {
      * @return Ban status
      */
     public boolean isIPBanned ( final String ipAddress ) {
-        return repository.existsByIp( ipAddress );
+        return ipCache.isBanned( ipAddress );
     }
 
     /**
@@ -51,7 +106,7 @@ public class LoginBanService extends Service<LoginBan, Long> {
      * @return Ban status
      */
     public boolean isUserBanned ( final User user ) {
-        return repository.existsByUser( user );
+        return repository.existsByUserAndExpiresAtAfter( user, ZonedDateTime.now() );
     }
 
     /**
@@ -62,6 +117,7 @@ public class LoginBanService extends Service<LoginBan, Long> {
      * @return Number of bans deleted
      */
     public long clearIP ( final String ipAddress ) {
+        ipCache.afterCommit( () -> ipCache.unban( ipAddress ) );
         return repository.deleteByIp( ipAddress );
     }
 
@@ -73,6 +129,9 @@ public class LoginBanService extends Service<LoginBan, Long> {
      * @return Number of bans deleted
      */
     public long clearUser ( final User user ) {
+        if ( null != user ) {
+            userDetailsCache.invalidate( user.getUsername() );
+        }
         return repository.deleteByUser( user );
     }
 }
@@ -0,0 +1,99 @@
+package edu.ncsu.csc.iTrust2.services.security;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.iTrust2.repositories.security.LoginBanRepository;
+import edu.ncsu.csc.iTrust2.repositories.security.LoginLockoutRepository;
+
+/**
+ * Deletes LoginBans that have expired, and LoginLockouts too old to count
+ * towards a ban, so that the security tables only hold what the login checks
+ * can still see. Runs every `itrust2.security.sweeper.interval-ms` and deletes
+ * `itrust2.security.sweeper.batch-size` rows per statement, each batch in its
+ * own transaction, so that clearing a large backlog never holds locks on the
+ * tables for long.
+ *
+ * @author agent
+ *
+ */
+@Component
+public class LoginBlockSweeper {
+
+    /** Repository for LoginBans */
+    @Autowired
+    private LoginBanRepository     banRepository;
+
+    /** Repository for LoginLockouts */
+    @Autowired
+    private LoginLockoutRepository lockoutRepository;
+
+    /** Most rows deleted per statement */
+    @Value ( "${itrust2.security.sweeper.batch-size:500}" )
+    private int                    batchSize;
+
+    /**
+     * Deletes expired bans and lockouts
+     *
+     * @return Number of rows deleted
+     */
+    @Scheduled ( fixedDelayString = "${itrust2.security.sweeper.interval-ms:3600000}",
+            initialDelayString = "${itrust2.security.sweeper.interval-ms:3600000}" )
+    public int sweep () {
+        return sweepBans() + sweepLockouts();
+    }
+
+    /**
+     * Deletes bans that have ended
+     *
+     * @return Number of bans deleted
+     */
+    public int sweepBans () {
+        final ZonedDateTime now = ZonedDateTime.now();
+        return sweep( page -> banRepository.findIdsByExpiresAtBefore( now, page ), banRepository::deleteByIdIn );
+    }
+
+    /**
+     * Deletes lockouts that no longer count towards a ban
+     *
+     * @return Number of lockouts deleted
+     */
+    public int sweepLockouts () {
+        final ZonedDateTime cutoff = LoginLockoutService.banWindowStart();
+        return sweep( page -> lockoutRepository.findIdsByExpiresAtBefore( cutoff, page ),
+                lockoutRepository::deleteByIdIn );
+    }
+
+    /**
+     * Deletes rows a batch at a time until none are left
+     *
+     * @param find
+     *            Finds the IDs of up to a page of rows to delete
+     * @param delete
+     *            Deletes rows by ID
+     * @return Number of rows deleted
+     */
+    private int sweep ( final Function<Pageable, List<Long>> find, final ToIntFunction<List<Long>> delete ) {
+        final Pageable page = PageRequest.of( 0, batchSize );
+        int deleted = 0;
+        List<Long> ids = find.apply( page );
+        while ( !ids.isEmpty() ) {
+            deleted += delete.applyAsInt( ids );
+            if ( ids.size() < batchSize ) {
+                break;
+            }
+            ids = find.apply( page );
+        }
+        return deleted;
+    }
+
+}
@@ -1,7 +1,8 @@
 package edu.ncsu.csc.iTrust2.services.security;
 
+import java.time.Duration;
 import java.time.ZonedDateTime;
-import java.util.stream.Collectors;
+import java.util.Comparator;
 
 import javax.transaction.Transactional;
 
@@ -24,17 +25,51 @@ import edu.ncsu.csc.iTrust2.services.Service;
 @Transactional
 public class LoginLockoutService extends Service<LoginLockout, Long> {
 
+    /** How far back lockouts count towards a ban */
+    public static final Duration   BAN_WINDOW = Duration.ofHours( 24 );
+
     /**
      * Repository for CRUD operations
      */
     @Autowired
     private LoginLockoutRepository repository;
 
+    /** Locked out IP addresses, kept in step with the repository */
+    @Autowired
+    private IPBlockCache           ipCache;
+
     @Override
     protected JpaRepository<LoginLockout, Long> getRepository () {
         return repository;
     }
 
+    @Override
+    public void save ( final LoginLockout lockout ) {
+        super.save( lockout );
+        final String ip = lockout.getIp();
+        if ( null != ip ) {
+            final ZonedDateTime expiresAt = lockout.getExpiresAt();
+            ipCache.afterCommit( () -> ipCache.lock( ip, expiresAt ) );
+        }
+    }
+
+    @Override
+    public void delete ( final LoginLockout lockout ) {
+        super.delete( lockout );
+        final String ip = lockout.getIp();
+        if ( null != ip ) {
+            final ZonedDateTime latest = repository.findByIp( ip ).stream().map( LoginLockout::getExpiresAt )
+                    .max( Comparator.naturalOrder() ).orElse( null );
+            ipCache.afterCommit( () -> ipCache.unlock( ip, latest ) );
+        }
+    }
+
+    @Override
+    public void deleteAll () {
+        super.deleteAll();
+        ipCache.afterCommit( ipCache::unlockAll );
+    }
+
     /**
      * Checks if an IP address is locked out
      *
@@ -43,11 +78,7 @@ public class LoginLockoutService extends Service<LoginLockout, Long> {
      * @return Lockout status
      */
     public boolean isIPLocked ( final String ipAddress ) {
-        final long now = ZonedDateTime.now().toEpochSecond();
-
-        return repository.findByIp( ipAddress ).stream().filter( e -> ( now - e.getTime().toEpochSecond() ) < 60 * 60 )
-                .collect( Collectors.toList() ).size() > 0; // locked if within
-                                                            // 60 minutes
+        return ipCache.isLocked( ipAddress );
     }
 
     /**
@@ -58,35 +89,31 @@ public class LoginLockoutService extends Service<LoginLockout, Long> {
      * @return Number of records deleted
      */
     public long clearIP ( final String ipAddress ) {
+        ipCache.afterCommit( () -> ipCache.unlock( ipAddress ) );
         return repository.deleteByIp( ipAddress );
 
     }
 
     /**
-     * Gets the number of IP lockouts for an address within the past 60 minutes
+     * Gets the number of IP lockouts for an address within the past 24 hours
      *
      * @param ipAddress
      *            IP address to check
      * @return Number of lockouts
      */
     public int getRecentIPLockouts ( final String ipAddress ) {
-        final long now = ZonedDateTime.now().toEpochSecond();
-        return repository.findByIp( ipAddress ).stream()
-                .filter( e -> ( now - e.getTime().toEpochSecond() ) < 1440 * 60 ).collect( Collectors.toList() ).size(); // 1440
-                                                                                                                         // minutes
+        return (int) repository.countByIpAndExpiresAtAfter( ipAddress, banWindowStart() );
     }
 
     /**
-     * Gets the number of lockouts for a user within the past 60 minutes
+     * Gets the number of lockouts for a user within the past 24 hours
      *
      * @param user
      *            to check
      * @return Number of lockouts
      */
     public int getRecentUserLockouts ( final User user ) {
-        final long now = ZonedDateTime.now().toEpochSecond();
-        return repository.findByUser( user ).stream().filter( e -> ( now - e.getTime().toEpochSecond() ) < 1440 * 60 )
-                .collect( Collectors.toList() ).size(); // 1440 minutes
+        return (int) repository.countByUserAndExpiresAtAfter( user, banWindowStart() );
     }
 
     /**
@@ -101,18 +128,25 @@ public class LoginLockoutService extends Service<LoginLockout, Long> {
     }
 
     /**
-     * Checks if a user is locked out (do they have a lockout within the past
-     * hour)
+     * Checks if a user is locked out (do they have a lockout that has not yet
+     * ended)
      *
      * @param user
      *            User to check
      * @return Lockout status
      */
     public boolean isUserLocked ( final User user ) {
-        final long now = ZonedDateTime.now().toEpochSecond();
-        return repository.findByUser( user ).stream().filter( e -> ( now - e.getTime().toEpochSecond() ) < 60 * 60 )
-                .collect( Collectors.toList() ).size() > 0; // locked if within
-                                                            // 60 minutes
+        return repository.existsByUserAndExpiresAtAfter( user, ZonedDateTime.now() );
+    }
+
+    /**
+     * Lockouts ending after this time started within the past BAN_WINDOW, and
+     * so count towards a ban
+     *
+     * @return Start of the ban window, shifted by how long a lockout lasts
+     */
+    public static ZonedDateTime banWindowStart () {
+        return ZonedDateTime.now().minus( BAN_WINDOW ).plus( LoginLockout.DURATION );
     }
 
 }
@@ -0,0 +1,106 @@
+package edu.ncsu.csc.iTrust2.services.security;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.repositories.UserRepository;
+
+/**
+ * Brings stored password hashes in line with the configured BCrypt cost
+ * (`itrust2.security.password.strength`). After a successful login, if the
+ * user's hash was made at a different cost, the authentication provider hashes
+ * the password they logged in with again at the configured cost, and the new
+ * hash is stored here.
+ *
+ * A hash is only replaced if it has not changed since the login, so a password
+ * change made in the meantime is never overwritten. Rehashing is best effort:
+ * if storing the new hash fails, the login still succeeds and the user is
+ * rehashed on a later login instead. Setting
+ * `itrust2.security.password.rehash-on-login` to false turns it off.
+ *
+ * @author agent
+ *
+ */
+@Component
+public class PasswordRehashService {
+
+    /** Logger, for reporting failed rehashes */
+    private static final Logger      LOG  = LoggerFactory.getLogger( PasswordRehashService.class );
+
+    /** Finds the cost in a BCrypt hash, with or without an encoder id */
+    private static final Pattern     COST = Pattern.compile( "^(?:\\{bcrypt\\})?\\$2[aby]?\\$(\\d{2})\\$" );
+
+    /** Repository the hashes are stored through */
+    @Autowired
+    private UserRepository<User>     repository;
+
+    /** Users cached for logging in, which hold the old hash */
+    @Autowired
+    private CachedUserDetailsService userDetailsCache;
+
+    /** BCrypt cost new hashes are made at */
+    @Value ( "${itrust2.security.password.strength:10}" )
+    private int                      strength;
+
+    /** Whether hashes are brought in line on login */
+    @Value ( "${itrust2.security.password.rehash-on-login:true}" )
+    private boolean                  enabled;
+
+    /**
+     * Checks whether a hash was made at a cost other than the configured one.
+     * Hashes that are not BCrypt are left alone.
+     *
+     * @param hash
+     *            Stored hash
+     * @return Whether it should be rehashed
+     */
+    public boolean needsRehash ( final String hash ) {
+        if ( null == hash ) {
+            return false;
+        }
+        final Matcher matcher = COST.matcher( hash );
+        return matcher.find() && Integer.parseInt( matcher.group( 1 ) ) != strength;
+    }
+
+    /**
+     * Checks whether a user who just logged in with the given hash should have
+     * their password rehashed
+     *
+     * @param hash
+     *            Hash their password was checked against
+     * @return Whether rehashing is on and the hash was made at another cost
+     */
+    public boolean rehashOnLogin ( final String hash ) {
+        return enabled && needsRehash( hash );
+    }
+
+    /**
+     * Stores a new password hash for a user, if their stored hash has not
+     * changed since they logged in
+     *
+     * @param username
+     *            User who logged in
+     * @param oldHash
+     *            Hash their password was checked against
+     * @param newHash
+     *            Their password, hashed at the configured cost
+     */
+    public void updatePassword ( final String username, final String oldHash, final String newHash ) {
+        try {
+            if ( repository.updatePasswordIfUnchanged( username, oldHash, newHash ) > 0 ) {
+                userDetailsCache.invalidate( username );
+            }
+        }
+        catch ( final RuntimeException e ) {
+            LOG.warn( "Could not rehash the password of " + username, e );
+        }
+    }
+
+}
@@ -0,0 +1,252 @@
+package edu.ncsu.csc.iTrust2.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.iTrust2.models.security.LogEntry;
+import edu.ncsu.csc.iTrust2.services.security.LogEntryService;
+
+/**
+ * Write-behind pipeline for audit log entries. Entries handed to the writer
+ * are placed on a bounded in-memory queue and a single background thread
+ * drains them, persisting them in batches (Hibernate JDBC batching is enabled
+ * in `ITrust2Application`) so that logging an event does not cost the caller a
+ * database round trip.
+ *
+ * When the queue is full, callers block for up to `offer-timeout-ms` and then
+ * fall back to writing the entry themselves; audit records are never dropped.
+ * On shutdown the queue is drained before the LogEntryService goes away.
+ *
+ * Configured through the `itrust2.audit.*` properties; setting
+ * `itrust2.audit.async` to false restores fully synchronous writes.
+ *
+ * @author agent
+ *
+ */
+@Component
+public class AuditLogWriter {
+
+    /** Logger, for reporting failed batches */
+    private static final Logger     LOG  = LoggerFactory.getLogger( AuditLogWriter.class );
+
+    /** LogEntry service, for persisting entries */
+    @Autowired
+    private LogEntryService         service;
+
+    /** Whether entries are written by the background thread at all */
+    @Value ( "${itrust2.audit.async:true}" )
+    private boolean                 async;
+
+    /** Maximum number of entries waiting to be written */
+    @Value ( "${itrust2.audit.queue-capacity:10000}" )
+    private int                     queueCapacity;
+
+    /** Maximum number of entries persisted in a single batch */
+    @Value ( "${itrust2.audit.batch-size:200}" )
+    private int                     batchSize;
+
+    /** Longest an entry waits for its batch to fill before being written */
+    @Value ( "${itrust2.audit.flush-interval-ms:250}" )
+    private long                    flushIntervalMs;
+
+    /** How long a caller waits on a full queue before writing directly */
+    @Value ( "${itrust2.audit.offer-timeout-ms:2000}" )
+    private long                    offerTimeoutMs;
+
+    /** Entries waiting to be written */
+    private BlockingQueue<LogEntry> queue;
+
+    /**
+     * Held while a batch is being persisted, so that `flush()` can wait for a
+     * batch the background thread has already taken off the queue
+     */
+    private final Object            lock = new Object();
+
+    /** Background thread draining the queue */
+    private Thread                  worker;
+
+    /** Whether the background thread should keep running */
+    private volatile boolean        running;
+
+    /**
+     * Starts the background writer, if asynchronous writes are enabled
+     */
+    @PostConstruct
+    public void start () {
+        if ( !async ) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<LogEntry>( queueCapacity );
+        running = true;
+        worker = new Thread( this::drain, "audit-log-writer" );
+        worker.setDaemon( true );
+        worker.start();
+    }
+
+    /**
+     * Stops the background writer and writes out anything still queued.
+     * Called by Spring on shutdown. Entries queued by a `write()` that raced
+     * with this are written by that call, once it sees the writer has stopped.
+     */
+    @PreDestroy
+    public void stop () {
+        if ( null == worker ) {
+            return;
+        }
+        running = false;
+        try {
+            worker.join( 2 * flushIntervalMs + offerTimeoutMs );
+        }
+        catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Hands a LogEntry off to be written. Returns as soon as the entry is
+     * queued; if the writer is disabled, stopped, or saturated the entry is
+     * written on the calling thread instead.
+     *
+     * @param entry
+     *            The LogEntry to write
+     */
+    public void write ( final LogEntry entry ) {
+        if ( !running ) {
+            service.save( entry );
+            return;
+        }
+        try {
+            if ( queue.offer( entry, offerTimeoutMs, TimeUnit.MILLISECONDS ) ) {
+                // If the writer stopped while the entry was being queued, the
+                // final drain may already have run; write it out here instead
+                if ( !running ) {
+                    flush();
+                }
+                return;
+            }
+            LOG.warn( "Audit log queue is full, writing entry synchronously" );
+        }
+        catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        service.save( entry );
+    }
+
+    /**
+     * Hands a number of LogEntries off to be written together. If the writer
+     * is disabled or stopped they are written on the calling thread, in one
+     * transaction; otherwise they are queued as with `write()`.
+     *
+     * @param entries
+     *            The LogEntries to write
+     */
+    public void writeAll ( final List<LogEntry> entries ) {
+        if ( entries.isEmpty() ) {
+            return;
+        }
+        if ( !running ) {
+            persist( entries );
+            return;
+        }
+        for ( final LogEntry entry : entries ) {
+            write( entry );
+        }
+    }
+
+    /**
+     * Writes every entry currently queued on the calling thread, and waits for
+     * any batch the background thread is in the middle of writing. Once this
+     * returns, every entry handed to `write()` beforehand is in the database.
+     */
+    public void flush () {
+        if ( null == queue ) {
+            return;
+        }
+        final List<LogEntry> batch = new ArrayList<LogEntry>( batchSize );
+        synchronized ( lock ) {
+            while ( queue.drainTo( batch, batchSize ) > 0 ) {
+                persist( batch );
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Body of the background thread. Waits for an entry, then collects entries
+     * until either the batch is full or the flush interval has passed since the
+     * first one arrived, and writes them all at once.
+     */
+    private void drain () {
+        final List<LogEntry> batch = new ArrayList<LogEntry>( batchSize );
+        while ( running ) {
+            try {
+                final LogEntry first = queue.poll( flushIntervalMs, TimeUnit.MILLISECONDS );
+                if ( null == first ) {
+                    continue;
+                }
+                synchronized ( lock ) {
+                    batch.add( first );
+                    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( flushIntervalMs );
+                    long remaining;
+                    while ( batch.size() < batchSize && ( remaining = deadline - System.nanoTime() ) > 0 ) {
+                        final LogEntry next = queue.poll( remaining, TimeUnit.NANOSECONDS );
+                        if ( null == next ) {
+                            break;
+                        }
+                        batch.add( next );
+                        queue.drainTo( batch, batchSize - batch.size() );
+                    }
+                    persist( batch );
+                    batch.clear();
+                }
+            }
+            catch ( final InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                synchronized ( lock ) {
+                    persist( batch );
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Persists a batch of entries in one transaction. If the batch is rejected
+     * the entries are retried one at a time, so a single bad entry does not
+     * lose the rest of the batch.
+     *
+     * @param batch
+     *            Entries to write
+     */
+    private void persist ( final List<LogEntry> batch ) {
+        try {
+            service.saveAll( batch );
+        }
+        catch ( final Exception e ) {
+            LOG.error( "Failed to write batch of " + batch.size() + " audit log entries, retrying individually", e );
+            for ( final LogEntry entry : batch ) {
+                try {
+                    service.save( entry );
+                }
+                catch ( final Exception inner ) {
+                    LOG.error( "Dropping audit log entry that could not be written: " + entry.getLogCode() + " for "
+                            + entry.getPrimaryUser(), inner );
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,285 @@
+package edu.ncsu.csc.iTrust2.utils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * In-memory cache that holds at most a fixed number of entries, evicting the
+ * least recently used, and forgets each one a fixed time after it was loaded.
+ * A size of 0 or less turns the cache off, and every lookup goes to the
+ * loader.
+ *
+ * Values are loaded outside the lock, so a slow load does not hold up other
+ * lookups. Every invalidation bumps a generation counter, and a load that
+ * started before one is handed to its caller but not kept, so that a value
+ * read before a change is not put back after it. Values handed out are shared
+ * between callers and must not be changed.
+ *
+ * @author agent
+ *
+ * @param <K>
+ *            Type of the keys
+ * @param <V>
+ *            Type of the values
+ */
+public class ExpiringLruCache <K, V> {
+
+    /** Most entries to hold; 0 or less to turn the cache off */
+    private final int                 maxSize;
+
+    /** How long an entry is held for */
+    private final long                ttlMillis;
+
+    /** Cached entries, least recently used first. Guarded by itself. */
+    private final Map<K, Expiring<V>> entries    = new LinkedHashMap<K, Expiring<V>>( 16, 0.75f, true );
+
+    /**
+     * Bumped on every invalidation, so that a load which started before it
+     * does not put a stale value back. Guarded by entries.
+     */
+    private long                      generation = 0;
+
+    /** Keys answered from the cache */
+    private final AtomicLong          hits       = new AtomicLong();
+
+    /** Keys that went to the loader */
+    private final AtomicLong          misses     = new AtomicLong();
+
+    /**
+     * Creates a cache
+     *
+     * @param maxSize
+     *            Most entries to hold; 0 or less to turn the cache off
+     * @param ttlMillis
+     *            How long an entry is held for, in milliseconds
+     */
+    public ExpiringLruCache ( final int maxSize, final long ttlMillis ) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Finds the value for a key, loading it if it is not cached
+     *
+     * @param key
+     *            Key to find
+     * @param loader
+     *            Loads the value for the key. May throw, in which case nothing
+     *            is cached; a null value is returned but not cached.
+     * @return The value
+     */
+    public V get ( final K key, final Function<K, V> loader ) {
+        final long now = System.currentTimeMillis();
+        final long loadGeneration;
+        synchronized ( entries ) {
+            final Expiring<V> cached = entries.get( key );
+            if ( null != cached && cached.expires > now ) {
+                hits.incrementAndGet();
+                return cached.value;
+            }
+            loadGeneration = generation;
+        }
+        misses.incrementAndGet();
+
+        final V loaded = loader.apply( key );
+        store( Collections.singletonMap( key, loaded ), loadGeneration, now );
+        return loaded;
+    }
+
+    /**
+     * Finds the values for a number of keys. Keys that are not cached are
+     * handed to the loader together, so that they can be loaded in one query.
+     *
+     * @param keys
+     *            Keys to find; nulls are ignored
+     * @param loader
+     *            Loads the values for the keys it is given. Keys it leaves out,
+     *            or maps to null, are left out of the result and not cached.
+     * @return The value of each key found
+     */
+    public Map<K, V> getAll ( final Collection<K> keys, final Function<Set<K>, Map<K, V>> loader ) {
+        final Map<K, V> found = new HashMap<K, V>();
+        final Set<K> missing = new HashSet<K>();
+        final long now = System.currentTimeMillis();
+        final long loadGeneration;
+        synchronized ( entries ) {
+            for ( final K key : keys ) {
+                if ( null == key ) {
+                    continue;
+                }
+                final Expiring<V> cached = entries.get( key );
+                if ( null != cached && cached.expires > now ) {
+                    found.put( key, cached.value );
+                }
+                else {
+                    missing.add( key );
+                }
+            }
+            loadGeneration = generation;
+        }
+        hits.addAndGet( found.size() );
+        if ( missing.isEmpty() ) {
+            return found;
+        }
+        misses.addAndGet( missing.size() );
+
+        final Map<K, V> loaded = loader.apply( missing );
+        store( loaded, loadGeneration, now );
+        loaded.forEach( ( key, value ) -> {
+            if ( null != value ) {
+                found.put( key, value );
+            }
+        } );
+        return found;
+    }
+
+    /**
+     * Forgets a key. If called inside a transaction, the key is forgotten
+     * again once it completes, so that a value read before the change commits
+     * is not kept.
+     *
+     * @param key
+     *            Key to forget; null is ignored
+     */
+    public void invalidate ( final K key ) {
+        if ( null == key ) {
+            return;
+        }
+        remove( key );
+        if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion ( final int status ) {
+                    remove( key );
+                }
+            } );
+        }
+    }
+
+    /**
+     * Forgets every key
+     */
+    public void invalidateAll () {
+        synchronized ( entries ) {
+            entries.clear();
+            generation++;
+        }
+    }
+
+    /**
+     * Reports the number of keys answered from the cache so far
+     *
+     * @return Number of hits
+     */
+    public long hits () {
+        return hits.get();
+    }
+
+    /**
+     * Reports the number of keys that went to the loader so far
+     *
+     * @return Number of misses
+     */
+    public long misses () {
+        return misses.get();
+    }
+
+    /**
+     * Reports the number of entries held, including any that have expired but
+     * not yet been replaced or evicted
+     *
+     * @return Number of entries
+     */
+    public int size () {
+        synchronized ( entries ) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Keeps freshly loaded values, unless the cache is off or something was
+     * invalidated while they were being loaded, and evicts the least recently
+     * used entries beyond the most allowed
+     *
+     * @param loaded
+     *            Values by key; null values are not kept
+     * @param loadGeneration
+     *            Generation when the load started
+     * @param loadedAt
+     *            When the load started, in epoch milliseconds
+     */
+    private void store ( final Map<K, V> loaded, final long loadGeneration, final long loadedAt ) {
+        if ( maxSize <= 0 ) {
+            return;
+        }
+        final long expires = loadedAt + ttlMillis;
+        synchronized ( entries ) {
+            if ( loadGeneration != generation ) {
+                return;
+            }
+            loaded.forEach( ( key, value ) -> {
+                if ( null != value ) {
+                    entries.put( key, new Expiring<V>( value, expires ) );
+                }
+            } );
+            final Iterator<K> eldest = entries.keySet().iterator();
+            while ( entries.size() > maxSize ) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes a key from the cache
+     *
+     * @param key
+     *            Key to remove
+     */
+    private void remove ( final K key ) {
+        synchronized ( entries ) {
+            entries.remove( key );
+            generation++;
+        }
+    }
+
+    /**
+     * A cached value, and when it stops being valid
+     *
+     * @param <V>
+     *            Type of the value
+     */
+    private static final class Expiring <V> {
+
+        /** The value */
+        private final V    value;
+
+        /** When the value expires, in epoch milliseconds */
+        private final long expires;
+
+        /**
+         * Creates a cache entry
+         *
+         * @param value
+         *            The value
+         * @param expires
+         *            When the value expires
+         */
+        private Expiring ( final V value, final long expires ) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+}
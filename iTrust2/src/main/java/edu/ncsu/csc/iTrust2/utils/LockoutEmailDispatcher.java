@@ -0,0 +1,150 @@
+package edu.ncsu.csc.iTrust2.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import edu.ncsu.csc.iTrust2.models.Email;
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
+import edu.ncsu.csc.iTrust2.services.EmailService;
+import edu.ncsu.csc.iTrust2.services.UserService;
+
+/**
+ * Sends the emails telling users their account has been locked out, off the
+ * request that caused the lockout. Handling a LockoutEmailEvent only notes the
+ * user; every `itrust2.email.lockout.flush-ms` the users noted since the last
+ * run are looked up and emailed together in one batch.
+ *
+ * A user is emailed about each kind of event (lockout or ban) at most once
+ * every `itrust2.email.lockout.dedup-ms`, so a burst of lockouts produces a
+ * single email, but a ban that follows them still gets its own. If saving the
+ * emails fails, they are queued again for the next run.
+ *
+ * @author agent
+ *
+ */
+@Component
+public class LockoutEmailDispatcher {
+
+    /** Sender of the emails */
+    private static final String                SENDER      = "iTrust2 System";
+
+    /** Subject of the emails about a lockout */
+    private static final String                SUBJECT     = "iTrust2: Your account has been locked out";
+
+    /** Body of the emails about a lockout */
+    private static final String                BODY        = "Your iTrust2 account has been locked out due to too many "
+            + "failed log in attempts.";
+
+    /** Subject of the emails about a ban */
+    private static final String                BAN_SUBJECT = "iTrust2: Your account has been banned";
+
+    /** Body of the emails about a ban */
+    private static final String                BAN_BODY    = "Your iTrust2 account has been banned due to too many "
+            + "failed log in attempts.";
+
+    /** For saving the emails */
+    @Autowired
+    private EmailService                       emailService;
+
+    /** For finding the users to email */
+    @Autowired
+    private UserService<User>                  userService;
+
+    /** For logging the emails sent */
+    @Autowired
+    private LoggerUtil                         loggerUtil;
+
+    /** Shortest time between two emails to the same user about the same kind of event */
+    @Value ( "${itrust2.email.lockout.dedup-ms:3600000}" )
+    private long                               dedupMillis;
+
+    /** Events waiting to be emailed about */
+    private final Set<LockoutEmailEvent>       pending     = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Events emailed about recently, with when (epoch millis). Only touched by
+     * `flush()`.
+     */
+    private final Map<LockoutEmailEvent, Long> sent        = new ConcurrentHashMap<LockoutEmailEvent, Long>();
+
+    /**
+     * Notes that a user should be emailed
+     *
+     * @param event
+     *            The lockout
+     */
+    @EventListener
+    public void onLockout ( final LockoutEmailEvent event ) {
+        if ( null != event.getUsername() ) {
+            pending.add( event );
+        }
+    }
+
+    /**
+     * Emails every user noted since the last run, unless they were emailed
+     * about the same kind of event recently
+     */
+    @Scheduled ( fixedDelayString = "${itrust2.email.lockout.flush-ms:1000}" )
+    @PreDestroy
+    public synchronized void flush () {
+        final long now = System.currentTimeMillis();
+        sent.values().removeIf( time -> now - time >= dedupMillis );
+        if ( pending.isEmpty() ) {
+            return;
+        }
+
+        final List<LockoutEmailEvent> due = new ArrayList<LockoutEmailEvent>();
+        for ( final LockoutEmailEvent event : pending ) {
+            pending.remove( event );
+            if ( !sent.containsKey( event ) ) {
+                due.add( event );
+            }
+        }
+        if ( due.isEmpty() ) {
+            return;
+        }
+
+        final Map<String, User> users = new HashMap<String, User>();
+        for ( final User user : userService
+                .findByNames( due.stream().map( LockoutEmailEvent::getUsername ).collect( Collectors.toSet() ) ) ) {
+            users.put( user.getUsername(), user );
+        }
+        final List<LockoutEmailEvent> emailed = new ArrayList<LockoutEmailEvent>();
+        final List<Email> emails = new ArrayList<Email>();
+        for ( final LockoutEmailEvent event : due ) {
+            final User user = users.get( event.getUsername() );
+            if ( null != user ) {
+                final boolean ban = LockoutEmailEvent.Kind.BAN == event.getKind();
+                emails.add( new Email( SENDER, user, ban ? BAN_SUBJECT : SUBJECT, ban ? BAN_BODY : BODY ) );
+                emailed.add( event );
+            }
+        }
+
+        try {
+            emailService.saveAll( emails );
+        }
+        catch ( final RuntimeException e ) {
+            pending.addAll( emailed );
+            throw e;
+        }
+        for ( final LockoutEmailEvent event : emailed ) {
+            sent.put( event, now );
+            loggerUtil.log( TransactionType.CREATE_LOCKOUT_EMAIL, event.getUsername() );
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package edu.ncsu.csc.iTrust2.utils;
+
+import java.util.Objects;
+
+/**
+ * Published when a user is locked out or banned, or when an IP address is
+ * locked out while logging in as them, so that they can be emailed about it.
+ * LockoutEmailDispatcher sends the emails. Two events are equal if they are
+ * of the same kind for the same user.
+ *
+ * @author agent
+ *
+ */
+public class LockoutEmailEvent {
+
+    /**
+     * What happened to the user
+     */
+    public enum Kind {
+        /** Locked out for a while */
+        LOCKOUT,
+        /** Banned */
+        BAN
+    }
+
+    /** User to notify */
+    private final String username;
+
+    /** What happened to them */
+    private final Kind   kind;
+
+    /**
+     * Creates the event for a lockout
+     *
+     * @param username
+     *            User to notify
+     */
+    public LockoutEmailEvent ( final String username ) {
+        this( username, Kind.LOCKOUT );
+    }
+
+    /**
+     * Creates the event
+     *
+     * @param username
+     *            User to notify
+     * @param kind
+     *            What happened to them
+     */
+    public LockoutEmailEvent ( final String username, final Kind kind ) {
+        this.username = username;
+        this.kind = kind;
+    }
+
+    /**
+     * Returns the user to notify
+     *
+     * @return Their username
+     */
+    public String getUsername () {
+        return username;
+    }
+
+    /**
+     * Returns what happened to the user
+     *
+     * @return The kind of event
+     */
+    public Kind getKind () {
+        return kind;
+    }
+
+    @Override
+    public boolean equals ( final Object obj ) {
+        if ( !( obj instanceof LockoutEmailEvent ) ) {
+            return false;
+        }
+        final LockoutEmailEvent other = (LockoutEmailEvent) obj;
+        return Objects.equals( username, other.username ) && kind == other.kind;
+    }
+
+    @Override
+    public int hashCode () {
+        return Objects.hash( username, kind );
+    }
+
+}
@@ -1,10 +1,14 @@
 package edu.ncsu.csc.iTrust2.utils;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import edu.ncsu.csc.iTrust2.models.User;
 import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
@@ -15,6 +19,13 @@ import edu.ncsu.csc.iTrust2.services.security.LogEntryService;
  * Logging class to handle saving log-worthy events and for retrieving those
  * that previously occurred. All actions that need to be logged (as defined in
  * the iTrust Wiki) should be logged using one of the three `Log` methods here.
+ * Events are handed to the AuditLogWriter, which persists them in the
+ * background, so logging does not add a database round trip to the caller.
+ *
+ * Events logged while handling an HTTP request are held until the request
+ * completes and then handed over together, so an endpoint that logs once per
+ * patient costs one batch rather than one write per patient. Set
+ * `itrust2.audit.coalesce-requests` to false to hand each event over at once.
  *
  * @author Kai Presler-Marshall
  *
@@ -22,6 +33,9 @@ import edu.ncsu.csc.iTrust2.services.security.LogEntryService;
 @Component
 public class LoggerUtil {
 
+    /** Request attribute holding the events logged during the request */
+    private static final String BUFFER_ATTRIBUTE = LoggerUtil.class.getName() + ".buffer";
+
     /**
      * LogEntry service, for saving events to the database and finding saved
      * events
@@ -29,6 +43,14 @@ public class LoggerUtil {
     @Autowired
     private LogEntryService service;
 
+    /** Writer that persists new events in the background */
+    @Autowired
+    private AuditLogWriter  writer;
+
+    /** Whether events logged during a request are written when it completes */
+    @Value ( "${itrust2.audit.coalesce-requests:true}" )
+    private boolean         coalesceRequests;
+
     /**
      * Most complete logger utility. Usually won't need all of this information,
      * but if you do, it has it all. The time of the event is added
@@ -46,7 +68,42 @@ public class LoggerUtil {
     public void log ( final TransactionType code, final String primaryUser, final String secondaryUser,
             final String message ) {
         final LogEntry le = new LogEntry( code, primaryUser, secondaryUser, message );
-        service.save( le );
+        if ( !coalesceRequests || !buffer( le ) ) {
+            writer.write( le );
+        }
+    }
+
+    /**
+     * Holds an event until the current request completes, if there is one
+     *
+     * @param le
+     *            The event to hold
+     * @return Whether the event is being held; if not, the caller must write
+     *         it
+     */
+    @SuppressWarnings ( "unchecked" )
+    private boolean buffer ( final LogEntry le ) {
+        final RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if ( null == request ) {
+            return false;
+        }
+        try {
+            List<LogEntry> buffer = (List<LogEntry>) request.getAttribute( BUFFER_ATTRIBUTE,
+                    RequestAttributes.SCOPE_REQUEST );
+            if ( null == buffer ) {
+                final List<LogEntry> created = new ArrayList<LogEntry>();
+                request.registerDestructionCallback( BUFFER_ATTRIBUTE, () -> writer.writeAll( created ),
+                        RequestAttributes.SCOPE_REQUEST );
+                request.setAttribute( BUFFER_ATTRIBUTE, created, RequestAttributes.SCOPE_REQUEST );
+                buffer = created;
+            }
+            buffer.add( le );
+            return true;
+        }
+        catch ( final IllegalStateException e ) {
+            // The request has already completed
+            return false;
+        }
     }
 
     /**
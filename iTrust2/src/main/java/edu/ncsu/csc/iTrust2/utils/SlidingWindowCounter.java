@@ -0,0 +1,230 @@
+package edu.ncsu.csc.iTrust2.utils;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events per key over a sliding window of time, without locks. The
+ * window is split into a fixed number of buckets; each key has one slot per
+ * bucket, reused round-robin as time moves on. A slot packs the index of the
+ * bucket it currently holds together with the count for that bucket into a
+ * single long, so that moving a slot on to a new bucket and counting into it
+ * are both one compare-and-set. Counts are exact to within one bucket's width
+ * at the old end of the window.
+ *
+ * Keys that have seen nothing for a whole window should be dropped with
+ * `purge()` from time to time. An event counted against a key at the same
+ * moment it is purged may be lost.
+ *
+ * @author agent
+ *
+ */
+public class SlidingWindowCounter {
+
+    /** Low bits of a slot hold the count; the rest hold the bucket index */
+    private static final int                   COUNT_BITS = 24;
+
+    /** Mask for the count in a slot */
+    private static final long                  COUNT_MASK = ( 1L << COUNT_BITS ) - 1;
+
+    /** Width of a bucket */
+    private final long                         bucketMillis;
+
+    /** Number of buckets in the window */
+    private final int                          buckets;
+
+    /** Slots for each key */
+    private final Map<String, AtomicLongArray> windows    = new ConcurrentHashMap<String, AtomicLongArray>();
+
+    /**
+     * Receives the non-empty buckets of a counter
+     */
+    public interface BucketVisitor {
+
+        /**
+         * Visits one bucket
+         *
+         * @param key
+         *            Key the bucket belongs to
+         * @param startMillis
+         *            Start of the bucket, in epoch milliseconds
+         * @param count
+         *            Events counted in the bucket
+         */
+        void visit ( String key, long startMillis, long count );
+    }
+
+    /**
+     * Creates a counter
+     *
+     * @param window
+     *            Length of the window
+     * @param buckets
+     *            Number of buckets the window is split into
+     */
+    public SlidingWindowCounter ( final Duration window, final int buckets ) {
+        if ( buckets < 1 || window.toMillis() < buckets ) {
+            throw new IllegalArgumentException( "Window must be at least one millisecond per bucket" );
+        }
+        this.buckets = buckets;
+        this.bucketMillis = window.toMillis() / buckets;
+    }
+
+    /**
+     * Counts an event against a key now
+     *
+     * @param key
+     *            Key to count against
+     */
+    public void increment ( final String key ) {
+        add( key, System.currentTimeMillis() );
+    }
+
+    /**
+     * Counts an event against a key at a given time. Events outside the
+     * current window are ignored.
+     *
+     * @param key
+     *            Key to count against
+     * @param atMillis
+     *            When the event happened, in epoch milliseconds
+     */
+    public void add ( final String key, final long atMillis ) {
+        add( key, atMillis, 1 );
+    }
+
+    /**
+     * Counts a number of events against a key at a given time. Events outside
+     * the current window are ignored.
+     *
+     * @param key
+     *            Key to count against
+     * @param atMillis
+     *            When the events happened, in epoch milliseconds
+     * @param events
+     *            Number of events
+     */
+    public void add ( final String key, final long atMillis, final long events ) {
+        final long bucket = atMillis / bucketMillis;
+        final long now = System.currentTimeMillis() / bucketMillis;
+        if ( events < 1 || bucket <= now - buckets || bucket > now ) {
+            return;
+        }
+        final AtomicLongArray slots = windows.computeIfAbsent( key, k -> new AtomicLongArray( buckets ) );
+        final int slot = (int) ( bucket % buckets );
+        while ( true ) {
+            final long current = slots.get( slot );
+            final long held = current >>> COUNT_BITS;
+            final long next;
+            if ( held == bucket ) {
+                if ( ( current & COUNT_MASK ) == COUNT_MASK ) {
+                    return; // saturated
+                }
+                next = ( bucket << COUNT_BITS ) | Math.min( COUNT_MASK, ( current & COUNT_MASK ) + events );
+            }
+            else if ( held < bucket ) {
+                next = ( bucket << COUNT_BITS ) | Math.min( COUNT_MASK, events );
+            }
+            else {
+                return; // slot already moved on past this bucket
+            }
+            if ( slots.compareAndSet( slot, current, next ) ) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Counts the events for a key within the window ending now
+     *
+     * @param key
+     *            Key to count
+     * @return Number of events
+     */
+    public long count ( final String key ) {
+        return count( key, System.currentTimeMillis() );
+    }
+
+    /**
+     * Counts the events for a key within the window ending at a given time
+     *
+     * @param key
+     *            Key to count
+     * @param atMillis
+     *            End of the window, in epoch milliseconds
+     * @return Number of events
+     */
+    public long count ( final String key, final long atMillis ) {
+        final AtomicLongArray slots = windows.get( key );
+        return null == slots ? 0 : sum( slots, atMillis / bucketMillis );
+    }
+
+    /**
+     * Forgets every event for a key
+     *
+     * @param key
+     *            Key to clear
+     */
+    public void clear ( final String key ) {
+        windows.remove( key );
+    }
+
+    /**
+     * Forgets every event for every key
+     */
+    public void clearAll () {
+        windows.clear();
+    }
+
+    /**
+     * Drops keys with no events left in the window
+     */
+    public void purge () {
+        final long now = System.currentTimeMillis() / bucketMillis;
+        windows.keySet().forEach( key -> windows.computeIfPresent( key,
+                ( k, slots ) -> sum( slots, now ) == 0 ? null : slots ) );
+    }
+
+    /**
+     * Visits every non-empty bucket within the current window
+     *
+     * @param visitor
+     *            Receives each bucket
+     */
+    public void forEachBucket ( final BucketVisitor visitor ) {
+        final long now = System.currentTimeMillis() / bucketMillis;
+        windows.forEach( ( key, slots ) -> {
+            for ( int i = 0; i < buckets; i++ ) {
+                final long current = slots.get( i );
+                final long held = current >>> COUNT_BITS;
+                if ( held > now - buckets && held <= now && ( current & COUNT_MASK ) > 0 ) {
+                    visitor.visit( key, held * bucketMillis, current & COUNT_MASK );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Adds up the slots holding buckets within the window
+     *
+     * @param slots
+     *            Slots for a key
+     * @param now
+     *            Index of the newest bucket in the window
+     * @return Total of the counts
+     */
+    private long sum ( final AtomicLongArray slots, final long now ) {
+        long total = 0;
+        for ( int i = 0; i < buckets; i++ ) {
+            final long current = slots.get( i );
+            final long held = current >>> COUNT_BITS;
+            if ( held > now - buckets && held <= now ) {
+                total += current & COUNT_MASK;
+            }
+        }
+        return total;
+    }
+
+}
@@ -1,10 +1,12 @@
 package edu.ncsu.csc.iTrust2.api;
 
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.io.UnsupportedEncodingException;
+import java.time.OffsetDateTime;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -113,4 +115,125 @@ public class APILogEntryTest {
 
     }
 
+    /**
+     * Tests that pages come back newest first, with the correct page count
+     *
+     * @throws Exception
+     */
+    @Test
+    @Transactional
+    @WithMockUser ( username = "admin", roles = { "USER", "ADMIN" } )
+    public void testLogQueryPaging () throws Exception {
+        // Keep the entries well clear of the VIEW_USER_LOG entry the request
+        // itself creates
+        final ZonedDateTime base = ZonedDateTime.now().minusDays( 10 );
+        for ( int i = 0; i < 5; i++ ) {
+            final LogEntry logEntry = new LogEntry();
+            logEntry.setLogCode( TransactionType.LOGIN_SUCCESS );
+            logEntry.setPrimaryUser( "admin" );
+            logEntry.setMessage( "Logged In " + i );
+            logEntry.setTime( base.minusMinutes( 5 - i ) );
+            service.save( logEntry );
+        }
+        final LogEntry other = new LogEntry( TransactionType.LOGIN_SUCCESS, "someoneElse", null, "Logged In" );
+        other.setTime( base );
+        service.save( other );
+
+        final LogEntryRequestBody body = new LogEntryRequestBody();
+        body.setStartDate( base.toLocalDate().minusDays( 1 ).toString() );
+        body.setEndDate( base.toLocalDate().toString() );
+        body.setPageLength( 2 );
+        body.setPage( 1 );
+
+        final String content1 = mvc
+                .perform( post( "/api/v1/logentries/range" ).with( csrf() ).contentType( MediaType.APPLICATION_JSON )
+                        .content( TestUtils.asJsonString( body ) ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+        final List<LogEntryTableRow> first = TestUtils.gson().fromJson( content1,
+                new TypeToken<ArrayList<LogEntryTableRow>>() {
+                }.getType() );
+        Assertions.assertEquals( 2, first.size() );
+        Assertions.assertEquals( 2, first.get( 0 ).getNumPages(),
+                "The page count should run one page past a page with more after it" );
+        Assertions.assertTrue(
+                OffsetDateTime.parse( first.get( 0 ).getDateTime() )
+                        .isAfter( OffsetDateTime.parse( first.get( 1 ).getDateTime() ) ),
+                "The newest entry should be first" );
+
+        body.setPage( 3 );
+        final String content3 = mvc
+                .perform( post( "/api/v1/logentries/range" ).with( csrf() ).contentType( MediaType.APPLICATION_JSON )
+                        .content( TestUtils.asJsonString( body ) ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+        final List<LogEntryTableRow> last = TestUtils.gson().fromJson( content3,
+                new TypeToken<ArrayList<LogEntryTableRow>>() {
+                }.getType() );
+        Assertions.assertEquals( 1, last.size(), "The last page should hold only the oldest entry" );
+        Assertions.assertEquals( "admin", last.get( 0 ).getPrimary() );
+        Assertions.assertEquals( 3, last.get( 0 ).getNumPages(), "The last page should say that it is the last" );
+
+        body.setEndDate( "not a date" );
+        mvc.perform( post( "/api/v1/logentries/range" ).with( csrf() ).contentType( MediaType.APPLICATION_JSON )
+                .content( TestUtils.asJsonString( body ) ) ).andExpect( status().isBadRequest() );
+    }
+
+    /**
+     * Tests exporting log entries, filtered by user, date, and type
+     *
+     * @throws Exception
+     */
+    @Test
+    @Transactional
+    @WithMockUser ( username = "admin", roles = { "USER", "ADMIN" } )
+    public void testLogExport () throws Exception {
+        final ZonedDateTime base = ZonedDateTime.now().minusDays( 10 );
+        for ( int i = 0; i < 3; i++ ) {
+            final LogEntry logEntry = new LogEntry( TransactionType.LOGIN_SUCCESS, "admin", null,
+                    "Logged In, attempt \"" + i + "\"" );
+            logEntry.setTime( base.minusMinutes( 3 - i ) );
+            service.save( logEntry );
+        }
+        final LogEntry logout = new LogEntry( TransactionType.LOGOUT, "admin", null, "Logged Out" );
+        logout.setTime( base );
+        service.save( logout );
+        final LogEntry other = new LogEntry( TransactionType.LOGIN_SUCCESS, "someoneElse", null, "Logged In" );
+        other.setTime( base );
+        service.save( other );
+
+        final String from = base.toLocalDate().minusDays( 1 ).toString();
+        final String to = base.toLocalDate().toString();
+
+        final String csv = mvc
+                .perform( get( "/api/v1/logentries/export" ).param( "user", "admin" ).param( "startDate", from )
+                        .param( "endDate", to ).param( "type", TransactionType.LOGIN_SUCCESS.name() ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+        final String[] lines = csv.split( "\n" );
+        Assertions.assertEquals( 4, lines.length, "Expected a header and three entries, but got " + csv );
+        Assertions.assertTrue( lines[0].startsWith( "id,time,transactionType" ) );
+        Assertions.assertTrue( lines[1].endsWith( ",admin,,\"Logged In, attempt \"\"0\"\"\"" ),
+                "Entries should be oldest first and quoted where needed" );
+
+        final String ndjson = mvc
+                .perform( get( "/api/v1/logentries/export" ).param( "format", "ndjson" ).param( "startDate", from )
+                        .param( "endDate", to ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals( 5, ndjson.split( "\n" ).length, "Every user's entries should be exported" );
+        Assertions.assertEquals( TransactionType.LOGIN_SUCCESS,
+                TestUtils.gson().fromJson( ndjson.split( "\n" )[0], LogEntry.class ).getLogCode() );
+
+        mvc.perform( get( "/api/v1/logentries/export" ).param( "format", "xml" ) )
+                .andExpect( status().isNotAcceptable() );
+    }
+
+    /**
+     * Tests that only admins can export log entries
+     *
+     * @throws Exception
+     */
+    @Test
+    @WithMockUser ( username = "patient", roles = { "USER", "PATIENT" } )
+    public void testLogExportForbidden () throws Exception {
+        mvc.perform( get( "/api/v1/logentries/export" ) ).andExpect( status().isForbidden() );
+    }
+
 }
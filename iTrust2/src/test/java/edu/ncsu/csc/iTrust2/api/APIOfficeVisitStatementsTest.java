@@ -0,0 +1,321 @@
+package edu.ncsu.csc.iTrust2.api;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import edu.ncsu.csc.iTrust2.forms.DiagnosisForm;
+import edu.ncsu.csc.iTrust2.forms.OfficeVisitForm;
+import edu.ncsu.csc.iTrust2.forms.PrescriptionForm;
+import edu.ncsu.csc.iTrust2.forms.UserForm;
+import edu.ncsu.csc.iTrust2.models.CPTCode;
+import edu.ncsu.csc.iTrust2.models.Drug;
+import edu.ncsu.csc.iTrust2.models.Hospital;
+import edu.ncsu.csc.iTrust2.models.ICDCode;
+import edu.ncsu.csc.iTrust2.models.OfficeVisit;
+import edu.ncsu.csc.iTrust2.models.Patient;
+import edu.ncsu.csc.iTrust2.models.Personnel;
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.AppointmentType;
+import edu.ncsu.csc.iTrust2.models.enums.Role;
+import edu.ncsu.csc.iTrust2.services.CPTCodeService;
+import edu.ncsu.csc.iTrust2.services.DrugService;
+import edu.ncsu.csc.iTrust2.services.HospitalService;
+import edu.ncsu.csc.iTrust2.services.ICDCodeService;
+import edu.ncsu.csc.iTrust2.services.OfficeVisitService;
+import edu.ncsu.csc.iTrust2.services.UserService;
+
+/**
+ * Checks how many SQL statements the office visit read endpoints run. Each one
+ * is called with a single visit, and again with more visits, diagnoses,
+ * prescriptions and CPT codes. Every visit is between a different patient,
+ * HCP and hospital wherever the endpoint allows it, and every diagnosis,
+ * prescription and CPT code uses a different code, so that nothing they link
+ * to is already loaded. The number of statements must not grow, which it
+ * would if the visits or anything they link to were loaded one at a time, and
+ * must stay within a fixed budget.
+ *
+ * Each list endpoint reads the visits, the roles of their users, their
+ * diagnoses, prescriptions and CPT codes, and the permissions of their
+ * patients; the detail endpoint also reads the current user, and reads the
+ * diagnoses along with the visit. The audit log entry for the request takes
+ * up to three more. Background writers are turned off so that the only
+ * statements counted are those run by the request.
+ *
+ * @author agent
+ *
+ */
+@ExtendWith ( SpringExtension.class )
+@SpringBootTest ( properties = { "itrust2.audit.async=false", "itrust2.audit.http.window-ms=3600000",
+        "itrust2.security.login-attempts.persist=false", "itrust2.security.ip-cache.refresh-ms=3600000" } )
+@AutoConfigureMockMvc
+@ActiveProfiles ( { "test" } )
+public class APIOfficeVisitStatementsTest {
+
+    private static final List<String> PATIENTS      = List.of( "stmtPatient0", "stmtPatient1", "stmtPatient2" );
+
+    private static final List<String> HCPS          = List.of( "stmtHcp0", "stmtHcp1", "stmtHcp2" );
+
+    private static final List<String> HOSPITALS     = List.of( "Statement Count Hospital 0",
+            "Statement Count Hospital 1", "Statement Count Hospital 2" );
+
+    private static final String       PATIENT       = "stmtPatient0";
+
+    private static final String       HCP           = "stmtHcp0";
+
+    private static final int          MAX_ITEMS     = 4;
+
+    private static final int          LIST_BUDGET   = 9;
+
+    private static final int          DETAIL_BUDGET = 10;
+
+    @Autowired
+    private MockMvc                   mvc;
+
+    @Autowired
+    private OfficeVisitService        officeVisitService;
+
+    @Autowired
+    private UserService<User>         userService;
+
+    @Autowired
+    private HospitalService           hospitalService;
+
+    @Autowired
+    private ICDCodeService            icdCodeService;
+
+    @Autowired
+    private DrugService               drugService;
+
+    @Autowired
+    private CPTCodeService            cptCodeService;
+
+    @Autowired
+    private EntityManagerFactory      entityManagerFactory;
+
+    private Statistics                statistics;
+
+    @BeforeEach
+    public void setup () {
+        officeVisitService.deleteAll();
+
+        for ( int i = 0; i < PATIENTS.size(); i++ ) {
+            if ( null == userService.findByName( PATIENTS.get( i ) ) ) {
+                userService.saveAll(
+                        List.of( new Patient( new UserForm( PATIENTS.get( i ), "123456", Role.ROLE_PATIENT, 1 ) ),
+                                new Personnel( new UserForm( HCPS.get( i ), "123456", Role.ROLE_HCP, 1 ) ) ) );
+            }
+            if ( null == hospitalService.findByName( HOSPITALS.get( i ) ) ) {
+                hospitalService.save( new Hospital( HOSPITALS.get( i ), i + " Count Street", "27606", "NC" ) );
+            }
+        }
+        for ( int i = 0; i < MAX_ITEMS; i++ ) {
+            if ( null == icdCodeService.findByCode( icdCode( i ) ) ) {
+                final ICDCode code = new ICDCode();
+                code.setCode( icdCode( i ) );
+                code.setDescription( "Gastritis " + i );
+                icdCodeService.save( code );
+            }
+            if ( null == drugService.findByCode( drug( i ) ) ) {
+                final Drug drug = new Drug();
+                drug.setCode( drug( i ) );
+                drug.setName( "Omeprazole " + i );
+                drug.setDescription( "Proton pump inhibitor" );
+                drugService.save( drug );
+            }
+            if ( null == cptCodeService.findByCode( cptCode( i ) ) ) {
+                final CPTCode code = new CPTCode();
+                code.setCode( cptCode( i ) );
+                code.setDescription( "Interprofessional consultation " + i );
+                code.setCost( 40 );
+                code.setVersion( 0 );
+                cptCodeService.save( code );
+            }
+        }
+
+        statistics = entityManagerFactory.unwrap( SessionFactory.class ).getStatistics();
+        statistics.setStatisticsEnabled( true );
+    }
+
+    @Test
+    @WithMockUser ( username = HCP, roles = { "HCP" } )
+    public void testAllOfficeVisits () throws Exception {
+        addVisit( PATIENTS.get( 0 ), HCPS.get( 0 ), HOSPITALS.get( 0 ), 1 );
+        final long one = statements( "/api/v1/officevisits", LIST_BUDGET );
+
+        addVisit( PATIENTS.get( 1 ), HCPS.get( 1 ), HOSPITALS.get( 1 ), 3 );
+        addVisit( PATIENTS.get( 2 ), HCPS.get( 2 ), HOSPITALS.get( 2 ), 2 );
+        final long many = statements( "/api/v1/officevisits", LIST_BUDGET );
+
+        Assertions.assertEquals( one, many, "Listing every visit should not run a statement per visit" );
+    }
+
+    @Test
+    @WithMockUser ( username = HCP, roles = { "HCP" } )
+    public void testHcpOfficeVisits () throws Exception {
+        addVisit( PATIENTS.get( 0 ), HCP, HOSPITALS.get( 0 ), 1 );
+        final long one = statements( "/api/v1/officevisits/HCP", LIST_BUDGET );
+
+        addVisit( PATIENTS.get( 1 ), HCP, HOSPITALS.get( 1 ), 3 );
+        addVisit( PATIENTS.get( 2 ), HCP, HOSPITALS.get( 2 ), 2 );
+        final long many = statements( "/api/v1/officevisits/HCP", LIST_BUDGET );
+
+        Assertions.assertEquals( one, many, "Listing an HCP's visits should not run a statement per visit" );
+    }
+
+    @Test
+    @WithMockUser ( username = PATIENT, roles = { "PATIENT" } )
+    public void testMyOfficeVisits () throws Exception {
+        addVisit( PATIENT, HCPS.get( 0 ), HOSPITALS.get( 0 ), 1 );
+        final long one = statements( "/api/v1/officevisits/myofficevisits", LIST_BUDGET );
+
+        addVisit( PATIENT, HCPS.get( 1 ), HOSPITALS.get( 1 ), 3 );
+        addVisit( PATIENT, HCPS.get( 2 ), HOSPITALS.get( 2 ), 2 );
+        final long many = statements( "/api/v1/officevisits/myofficevisits", LIST_BUDGET );
+
+        Assertions.assertEquals( one, many, "Listing a patient's visits should not run a statement per visit" );
+    }
+
+    @Test
+    @WithMockUser ( username = HCP, roles = { "HCP" } )
+    public void testOfficeVisit () throws Exception {
+        final long small = statements(
+                "/api/v1/officevisits/" + addVisit( PATIENTS.get( 1 ), HCPS.get( 1 ), HOSPITALS.get( 1 ), 1 ),
+                DETAIL_BUDGET );
+        final long large = statements( "/api/v1/officevisits/"
+                + addVisit( PATIENTS.get( 2 ), HCPS.get( 2 ), HOSPITALS.get( 2 ), MAX_ITEMS ), DETAIL_BUDGET );
+
+        Assertions.assertEquals( small, large,
+                "Showing a visit should not run a statement per diagnosis, prescription or CPT code" );
+    }
+
+    /**
+     * Runs a GET request, counts the SQL statements it prepared, and checks
+     * they are within budget. The request is made once beforehand, so that
+     * caches it fills are not counted.
+     *
+     * @param url
+     *            URL to get
+     * @param budget
+     *            Most statements the request may run
+     * @return Number of statements
+     * @throws Exception
+     *             If the request fails
+     */
+    private long statements ( final String url, final int budget ) throws Exception {
+        mvc.perform( get( url ) ).andExpect( status().isOk() );
+        statistics.clear();
+        mvc.perform( get( url ) ).andExpect( status().isOk() );
+        final long count = statistics.getPrepareStatementCount();
+        Assertions.assertTrue( count <= budget,
+                "GET " + url + " ran " + count + " statements, more than its budget of " + budget );
+        return count;
+    }
+
+    /**
+     * Saves a visit. Its diagnoses, prescriptions and CPT codes each use a
+     * different code.
+     *
+     * @param patient
+     *            Username of the patient
+     * @param hcp
+     *            Username of the HCP
+     * @param hospital
+     *            Name of the hospital
+     * @param items
+     *            Number of diagnoses, prescriptions and CPT codes to give it,
+     *            at most MAX_ITEMS
+     * @return ID of the visit
+     */
+    private Long addVisit ( final String patient, final String hcp, final String hospital, final int items ) {
+        final OfficeVisitForm form = new OfficeVisitForm();
+        form.setPatient( patient );
+        form.setHcp( hcp );
+        form.setDate( ZonedDateTime.now().minusDays( items ).toString() );
+        form.setType( AppointmentType.GENERAL_CHECKUP.toString() );
+        form.setHospital( hospital );
+        form.setNotes( "Visit with " + items + " of everything" );
+
+        final List<DiagnosisForm> diagnoses = new ArrayList<DiagnosisForm>();
+        final List<PrescriptionForm> prescriptions = new ArrayList<PrescriptionForm>();
+        final List<Long> cptCodes = new ArrayList<Long>();
+        for ( int i = 0; i < items; i++ ) {
+            final DiagnosisForm diagnosis = new DiagnosisForm();
+            diagnosis.setCode( icdCode( i ) );
+            diagnosis.setNote( "Diagnosis " + i );
+            diagnoses.add( diagnosis );
+
+            final PrescriptionForm prescription = new PrescriptionForm();
+            prescription.setDrug( drug( i ) );
+            prescription.setDosage( 20 );
+            prescription.setRenewals( i );
+            prescription.setPatient( patient );
+            prescription.setStartDate( LocalDate.now().toString() );
+            prescription.setEndDate( LocalDate.now().plusDays( 30 ).toString() );
+            prescriptions.add( prescription );
+
+            cptCodes.add( cptCodeService.findByCode( cptCode( i ) ).getId() );
+        }
+        form.setDiagnoses( diagnoses );
+        form.setPrescriptions( prescriptions );
+        form.setCptCodes( cptCodes );
+
+        final OfficeVisit visit = officeVisitService.build( form );
+        officeVisitService.save( visit );
+        return visit.getId();
+    }
+
+    /**
+     * Returns the ICD code for a diagnosis
+     *
+     * @param i
+     *            Position of the diagnosis in its visit
+     * @return The ICD code
+     */
+    private static String icdCode ( final int i ) {
+        return "K2" + i;
+    }
+
+    /**
+     * Returns the drug code for a prescription
+     *
+     * @param i
+     *            Position of the prescription in its visit
+     * @return The drug code
+     */
+    private static String drug ( final int i ) {
+        return "3000-0000-0" + i;
+    }
+
+    /**
+     * Returns the CPT code at a position in a visit
+     *
+     * @param i
+     *            Position of the CPT code in its visit
+     * @return The CPT code
+     */
+    private static int cptCode ( final int i ) {
+        return 99451 + i;
+    }
+
+}
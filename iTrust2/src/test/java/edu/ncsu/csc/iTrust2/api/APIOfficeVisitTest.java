@@ -5,6 +5,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.time.LocalDate;
@@ -142,6 +143,54 @@ public class APIOfficeVisitTest {
         mvc.perform( get( "/api/v1/officevisits/-1" ) ).andExpect( status().isNotFound() );
     }
 
+    /**
+     * Tests reading pages of office visit summaries
+     *
+     * @throws Exception
+     *             exception
+     */
+    @Test
+    @Transactional
+    @WithMockUser ( username = "hcp", roles = { "HCP" } )
+    public void testOfficeVisitSummaries () throws Exception {
+        final OfficeVisitForm visit = new OfficeVisitForm();
+        visit.setHcp( "hcp" );
+        visit.setPatient( "patient" );
+        visit.setNotes( "Test office visit" );
+        visit.setType( AppointmentType.GENERAL_CHECKUP.toString() );
+        visit.setHospital( "iTrust Test Hospital 2" );
+
+        visit.setDate( "2030-11-19T04:50:00.000-05:00" );
+        final OfficeVisit first = officeVisitService.build( visit );
+        officeVisitService.save( first );
+        visit.setDate( "2030-11-21T04:50:00.000-05:00" );
+        final OfficeVisit last = officeVisitService.build( visit );
+        officeVisitService.save( last );
+        visit.setDate( "2030-11-20T04:50:00.000-05:00" );
+        officeVisitService.save( officeVisitService.build( visit ) );
+
+        /* Newest first by default */
+        mvc.perform( get( "/api/v1/officevisits/HCP/summaries" ).param( "size", "2" ) ).andExpect( status().isOk() )
+                .andExpect( jsonPath( "$.totalElements" ).value( 3 ) )
+                .andExpect( jsonPath( "$.content.length()" ).value( 2 ) )
+                .andExpect( jsonPath( "$.content[0].id" ).value( last.getId() ) )
+                .andExpect( jsonPath( "$.content[0].patient" ).value( "patient" ) )
+                .andExpect( jsonPath( "$.content[0].hcp" ).value( "hcp" ) )
+                .andExpect( jsonPath( "$.content[0].hospital" ).value( "iTrust Test Hospital 2" ) )
+                .andExpect( jsonPath( "$.content[0].type" ).value( AppointmentType.GENERAL_CHECKUP.toString() ) );
+
+        mvc.perform( get( "/api/v1/officevisits/summaries" ).param( "page", "1" ).param( "size", "2" ) )
+                .andExpect( status().isOk() ).andExpect( jsonPath( "$.content.length()" ).value( 1 ) )
+                .andExpect( jsonPath( "$.content[0].id" ).value( first.getId() ) );
+
+        mvc.perform( get( "/api/v1/officevisits/summaries" ).param( "sort", "date,asc" ) )
+                .andExpect( status().isOk() ).andExpect( jsonPath( "$.content[0].id" ).value( first.getId() ) );
+
+        /* Only the fields in a summary can be sorted by */
+        mvc.perform( get( "/api/v1/officevisits/summaries" ).param( "sort", "notes" ) )
+                .andExpect( status().isBadRequest() );
+    }
+
     /**
      * Tests handling of errors when creating a visit for a pre-scheduled
      * appointment.
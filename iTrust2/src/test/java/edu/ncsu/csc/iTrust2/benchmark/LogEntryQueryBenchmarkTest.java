@@ -0,0 +1,236 @@
+package edu.ncsu.csc.iTrust2.benchmark;
+
+import java.lang.reflect.Method;
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ncsu.csc.iTrust2.TestConfig;
+import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
+import edu.ncsu.csc.iTrust2.repositories.security.LogEntryRepository;
+import edu.ncsu.csc.iTrust2.services.security.LogEntryService;
+
+/**
+ * Regression benchmark for the LogEntry indexes. Seeds the LogEntry table with
+ * millions of rows, then checks that the native queries on LogEntryRepository
+ * use the indexes declared on LogEntry and that a user's log comes back
+ * quickly.
+ *
+ * Slow, so only runs when asked for:
+ *
+ * <pre>
+ * mvn test -Dtest=LogEntryQueryBenchmarkTest -Ditrust2.benchmark=true [-Ditrust2.benchmark.rows=2000000]
+ * </pre>
+ */
+@ExtendWith ( SpringExtension.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class )
+@ActiveProfiles ( { "test" } )
+@TestInstance ( TestInstance.Lifecycle.PER_CLASS )
+@EnabledIfSystemProperty ( named = "itrust2.benchmark", matches = "true" )
+public class LogEntryQueryBenchmarkTest {
+
+    /** Seeded rows get IDs from here up, well clear of Hibernate's sequence */
+    private static final long        FIRST_ID    = 1_000_000_000_000L;
+
+    /** Number of distinct users the seeded rows are spread across */
+    private static final int         USERS       = 10_000;
+
+    /** Rows inserted per JDBC batch */
+    private static final int         BATCH       = 10_000;
+
+    /** User whose entries are looked up */
+    private static final String      USER        = "benchUser42";
+
+    /** Indexes the lookups are expected to use */
+    private static final Set<String> LOG_INDEXES = Set.of( "idx_log_entry_primary_user_time",
+            "idx_log_entry_secondary_user_time", "idx_log_entry_time" );
+
+    @Autowired
+    private JdbcTemplate             jdbc;
+
+    @Autowired
+    private LogEntryService          service;
+
+    @BeforeAll
+    public void seed () {
+        final int rows = Integer.getInteger( "itrust2.benchmark.rows", 2_000_000 );
+        final ZonedDateTime now = ZonedDateTime.now();
+        final List<Object[]> batch = new ArrayList<Object[]>( BATCH );
+        for ( int i = 0; i < rows; i++ ) {
+            final String primary = "benchUser" + ( i % USERS );
+            final String secondary = i % 3 == 0 ? "benchUser" + ( ( i / 3 ) % USERS ) : null;
+            batch.add( new Object[] { FIRST_ID + i, TransactionType.LOGIN_SUCCESS.getCode(), primary,
+                    primary.equals( secondary ) ? null : secondary, "Benchmark entry",
+                    Timestamp.from( now.minusMinutes( i ).toInstant() ) } );
+            if ( batch.size() == BATCH ) {
+                insert( batch );
+            }
+        }
+        insert( batch );
+        jdbc.execute( "ANALYZE TABLE log_entry" );
+    }
+
+    @AfterAll
+    public void cleanup () {
+        jdbc.update( "DELETE FROM log_entry WHERE id >= ?", FIRST_ID );
+    }
+
+    /**
+     * Explains every native query on LogEntryRepository, exactly as it is
+     * declared there, and checks that each one reads LogEntry through its
+     * indexes
+     */
+    @Test
+    public void testUserLookupUsesIndexes () {
+        int explained = 0;
+        for ( final Method method : LogEntryRepository.class.getDeclaredMethods() ) {
+            final Query query = method.getAnnotation( Query.class );
+            if ( null != query && query.nativeQuery() ) {
+                assertUsesIndexes( method.getName(), query.value(), arguments( method ) );
+                explained++;
+            }
+        }
+        Assertions.assertTrue( explained > 0, "LogEntryRepository should declare native queries to explain" );
+    }
+
+    @Test
+    public void testUserLookupLatency () {
+        final ZonedDateTime now = ZonedDateTime.now();
+        final List<TransactionType> codes = Arrays.asList( TransactionType.values() );
+
+        // Warm up, then take the median of a number of runs
+        final long[] pageNanos = new long[25];
+        final long[] rangeNanos = new long[25];
+        for ( int run = -5; run < pageNanos.length; run++ ) {
+            final long start = System.nanoTime();
+            service.findPageForUser( USER, codes, null, null, 0, 50 );
+            final long middle = System.nanoTime();
+            service.findByDateRange( USER, now.minusDays( 7 ), now );
+            final long end = System.nanoTime();
+            if ( run >= 0 ) {
+                pageNanos[run] = middle - start;
+                rangeNanos[run] = end - middle;
+            }
+        }
+        Arrays.sort( pageNanos );
+        Arrays.sort( rangeNanos );
+
+        final long pageMillis = pageNanos[pageNanos.length / 2] / 1_000_000;
+        final long rangeMillis = rangeNanos[rangeNanos.length / 2] / 1_000_000;
+        Assertions.assertTrue( pageMillis < 100, "First page of a user's log took " + pageMillis + "ms" );
+        Assertions.assertTrue( rangeMillis < 100, "A week of a user's log took " + rangeMillis + "ms" );
+    }
+
+    /**
+     * Makes up arguments for a repository query: the benchmark user, every
+     * type of entry, the last week, and a page of 50 entries
+     *
+     * @param method
+     *            Repository method the query belongs to
+     * @return Arguments, in the order the method takes them
+     */
+    private Object[] arguments ( final Method method ) {
+        final List<Integer> codes = Arrays.stream( TransactionType.values() ).map( TransactionType::getCode )
+                .collect( Collectors.toList() );
+        final ZonedDateTime now = ZonedDateTime.now();
+        final Deque<Timestamp> dates = new ArrayDeque<Timestamp>(
+                Arrays.asList( Timestamp.from( now.minusDays( 7 ).toInstant() ), Timestamp.from( now.toInstant() ) ) );
+        final List<Object> args = new ArrayList<Object>();
+        for ( final Class< ? > type : method.getParameterTypes() ) {
+            if ( String.class == type ) {
+                args.add( USER );
+            }
+            else if ( Collection.class.isAssignableFrom( type ) ) {
+                args.add( codes );
+            }
+            else if ( ZonedDateTime.class == type ) {
+                args.add( dates.pop() );
+            }
+            else {
+                args.add( 50 );
+            }
+        }
+        return args.toArray();
+    }
+
+    /**
+     * Runs EXPLAIN on a native repository query and checks that every access
+     * to the LogEntry table goes through one of its indexes. The query's
+     * numbered parameters are rewritten for JDBC the way Hibernate does it,
+     * with a collection becoming one parameter per element.
+     *
+     * @param name
+     *            Name of the repository method, for failure messages
+     * @param sql
+     *            Query to explain, with ?1-style parameters
+     * @param args
+     *            Arguments to the query, by parameter number
+     */
+    private void assertUsesIndexes ( final String name, final String sql, final Object[] args ) {
+        final StringBuffer jdbcSql = new StringBuffer( "EXPLAIN " );
+        final List<Object> jdbcArgs = new ArrayList<Object>();
+        final Matcher parameter = Pattern.compile( "\\?(\\d+)" ).matcher( sql );
+        while ( parameter.find() ) {
+            final Object arg = args[Integer.parseInt( parameter.group( 1 ) ) - 1];
+            if ( arg instanceof Collection ) {
+                final Collection< ? > values = (Collection< ? >) arg;
+                jdbcArgs.addAll( values );
+                parameter.appendReplacement( jdbcSql,
+                        "(" + String.join( ", ", Collections.nCopies( values.size(), "?" ) ) + ")" );
+            }
+            else {
+                jdbcArgs.add( arg );
+                parameter.appendReplacement( jdbcSql, "?" );
+            }
+        }
+        parameter.appendTail( jdbcSql );
+
+        final List<Map<String, Object>> plan = jdbc.queryForList( jdbcSql.toString(), jdbcArgs.toArray() );
+        for ( final Map<String, Object> step : plan ) {
+            if ( "log_entry".equals( step.get( "table" ) ) ) {
+                Assertions.assertTrue( LOG_INDEXES.contains( step.get( "key" ) ),
+                        name + " should read log_entry through an index, but the plan was " + plan );
+            }
+        }
+    }
+
+    /**
+     * Inserts and clears a batch of seed rows
+     *
+     * @param batch
+     *            Rows to insert
+     */
+    private void insert ( final List<Object[]> batch ) {
+        jdbc.batchUpdate( "INSERT INTO log_entry (id, log_code, primary_user, secondary_user, message, time) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", batch );
+        batch.clear();
+    }
+
+}
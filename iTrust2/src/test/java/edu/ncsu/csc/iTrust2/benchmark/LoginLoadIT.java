@@ -0,0 +1,254 @@
+package edu.ncsu.csc.iTrust2.benchmark;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import edu.ncsu.csc.iTrust2.config.WebSecurityConfig;
+import edu.ncsu.csc.iTrust2.forms.UserForm;
+import edu.ncsu.csc.iTrust2.models.Personnel;
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.Role;
+import edu.ncsu.csc.iTrust2.services.UserService;
+import edu.ncsu.csc.iTrust2.utils.AuditLogWriter;
+
+/**
+ * Load test for the login pipeline. Drives the form login at /login through
+ * the full filter chain (IPFilter, the authentication provider,
+ * FailureHandler and LoginAuditingListener) from many simulated IP addresses
+ * at once: most of them well-behaved clients that usually get their password
+ * right, and a few attackers guessing passwords, who get locked out and then
+ * banned along the way. Reports logins per second, p50 and p99 latency, and
+ * the database statements run per login, and fails if the statements per login
+ * go over `loadtest.max-statements-per-login`.
+ *
+ * Runs against an in-memory H2 database, with passwords hashed at the lowest
+ * BCrypt cost so that the cost of the lockout logic is not hidden behind
+ * hashing. Run with:
+ *
+ * <pre>
+ * mvn -Ploadtest verify [-Dloadtest.logins=20000] [-Dloadtest.threads=32]
+ * </pre>
+ */
+@ExtendWith ( SpringExtension.class )
+@SpringBootTest ( properties = {
+        "spring.datasource.url=jdbc:h2:mem:loadtest;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver", "spring.datasource.username=sa",
+        "spring.datasource.password=", "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true", "itrust2.security.password.strength=4",
+        "itrust2.security.login-attempts.persist=false", "itrust2.security.ip-cache.refresh-ms=3600000",
+        "itrust2.audit.archive.cron=-", "itrust2.audit.async=true" } )
+@AutoConfigureMockMvc
+@ActiveProfiles ( { "test" } )
+public class LoginLoadIT {
+
+    /** Password of every seeded user */
+    private static final String  PASSWORD     = "123456";
+
+    /** Number of seeded users */
+    private static final int     USERS        = 200;
+
+    /** Number of well-behaved client IPs */
+    private static final int     CLIENTS      = 500;
+
+    /** Number of attacking IPs */
+    private static final int     ATTACKERS    = 20;
+
+    /** Share of logins that come from attackers */
+    private static final double  ATTACK_SHARE = 0.1;
+
+    /** Share of client logins with a mistyped password */
+    private static final double  TYPO_SHARE   = 0.05;
+
+    /** Logins run before measuring, to warm up */
+    private static final int     WARMUP       = 500;
+
+    @Autowired
+    private MockMvc              mvc;
+
+    @Autowired
+    private UserService<User>    userService;
+
+    @Autowired
+    private AuditLogWriter       auditLogWriter;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value ( "${loadtest.logins:5000}" )
+    private int                  logins;
+
+    @Value ( "${loadtest.threads:16}" )
+    private int                  threads;
+
+    @Value ( "${loadtest.max-statements-per-login:25}" )
+    private double               maxStatementsPerLogin;
+
+    @Test
+    public void testLoginLoad () throws Exception {
+        seedUsers();
+        run( WARMUP );
+
+        auditLogWriter.flush();
+        final Statistics statistics = entityManagerFactory.unwrap( SessionFactory.class ).getStatistics();
+        statistics.clear();
+
+        final long start = System.nanoTime();
+        final List<Result> results = run( logins );
+        final double seconds = ( System.nanoTime() - start ) / 1e9;
+        auditLogWriter.flush();
+        final double statementsPerLogin = (double) statistics.getPrepareStatementCount() / logins;
+
+        final long[] latencies = results.stream().mapToLong( r -> r.nanos ).sorted().toArray();
+        final Map<String, Integer> outcomes = new TreeMap<String, Integer>();
+        results.forEach( r -> outcomes.merge( r.outcome, 1, Integer::sum ) );
+
+        System.out.printf( "Login load test: %d logins on %d threads%n", logins, threads );
+        System.out.printf( "  throughput:   %.1f logins/s%n", logins / seconds );
+        System.out.printf( "  latency p50:  %.2f ms%n", percentile( latencies, 0.50 ) / 1e6 );
+        System.out.printf( "  latency p99:  %.2f ms%n", percentile( latencies, 0.99 ) / 1e6 );
+        System.out.printf( "  statements:   %.2f per login%n", statementsPerLogin );
+        System.out.printf( "  outcomes:     %s%n", outcomes );
+
+        Assertions.assertTrue( outcomes.getOrDefault( "/", 0 ) > 0, "Some logins should succeed" );
+        Assertions.assertTrue( statementsPerLogin <= maxStatementsPerLogin, "Logins ran " + statementsPerLogin
+                + " statements each, over the budget of " + maxStatementsPerLogin );
+    }
+
+    /**
+     * Creates the users logged in as, if they are not there yet
+     */
+    private void seedUsers () {
+        final PasswordEncoder encoder = WebSecurityConfig.passwordEncoder( 4 );
+        final String hash = encoder.encode( PASSWORD );
+        final List<User> users = new ArrayList<User>();
+        for ( int i = 0; i < USERS; i++ ) {
+            final User user = new Personnel( new UserForm( user( i ), PASSWORD, Role.ROLE_HCP, 1 ) );
+            user.setPassword( hash );
+            users.add( user );
+        }
+        userService.saveAll( users );
+    }
+
+    /**
+     * Runs a number of logins across the worker threads
+     *
+     * @param count
+     *            Number of logins
+     * @return What happened to each
+     * @throws Exception
+     *             If a login could not be run
+     */
+    private List<Result> run ( final int count ) throws Exception {
+        final ExecutorService pool = Executors.newFixedThreadPool( threads );
+        try {
+            final List<Future<Result>> futures = new ArrayList<Future<Result>>( count );
+            for ( int i = 0; i < count; i++ ) {
+                futures.add( pool.submit( this::login ) );
+            }
+            final List<Result> results = new ArrayList<Result>( count );
+            for ( final Future<Result> future : futures ) {
+                results.add( future.get() );
+            }
+            return results;
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Makes one login, as either a client or an attacker
+     *
+     * @return What happened
+     * @throws Exception
+     *             If the login could not be run
+     */
+    private Result login () throws Exception {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final boolean attack = random.nextDouble() < ATTACK_SHARE;
+        final int client = random.nextInt( CLIENTS );
+        final String ip = attack ? "10.1.0." + random.nextInt( ATTACKERS ) : "10.2." + client / 250 + "." + client % 250;
+        final String password = attack || random.nextDouble() < TYPO_SHARE ? "wrong" + random.nextInt() : PASSWORD;
+
+        final long start = System.nanoTime();
+        final MockHttpServletResponse response = mvc.perform( post( "/login" )
+                .param( "username", user( random.nextInt( USERS ) ) ).param( "password", password ).with( csrf() )
+                .with( request -> {
+                    request.setRemoteAddr( ip );
+                    return request;
+                } ) ).andReturn().getResponse();
+        final long nanos = System.nanoTime() - start;
+
+        final String redirect = response.getRedirectedUrl();
+        return new Result( nanos, null != redirect ? redirect : String.valueOf( response.getStatus() ) );
+    }
+
+    /**
+     * Name of one of the seeded users
+     *
+     * @param i
+     *            Index of the user
+     * @return Username
+     */
+    private static String user ( final int i ) {
+        return "loadUser" + i;
+    }
+
+    /**
+     * Finds a percentile of some sorted values
+     *
+     * @param sorted
+     *            Values, in ascending order
+     * @param fraction
+     *            Percentile wanted, as a fraction
+     * @return The value at that percentile
+     */
+    private static long percentile ( final long[] sorted, final double fraction ) {
+        return sorted[Math.min( sorted.length - 1, (int) Math.ceil( fraction * sorted.length ) - 1 )];
+    }
+
+    /**
+     * Outcome of one login
+     */
+    private static final class Result {
+
+        /** How long it took */
+        private final long   nanos;
+
+        /** Where it was redirected, or its status if it was not */
+        private final String outcome;
+
+        private Result ( final long nanos, final String outcome ) {
+            this.nanos = nanos;
+            this.outcome = outcome;
+        }
+    }
+
+}
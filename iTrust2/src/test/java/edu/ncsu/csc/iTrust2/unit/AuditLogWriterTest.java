@@ -0,0 +1,86 @@
+package edu.ncsu.csc.iTrust2.unit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import edu.ncsu.csc.iTrust2.TestConfig;
+import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
+import edu.ncsu.csc.iTrust2.services.security.LogEntryService;
+import edu.ncsu.csc.iTrust2.utils.AuditLogWriter;
+import edu.ncsu.csc.iTrust2.utils.LoggerUtil;
+
+@ExtendWith ( SpringExtension.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class, properties = "itrust2.audit.async=true" )
+@ActiveProfiles ( { "test" } )
+public class AuditLogWriterTest {
+
+    @Autowired
+    private LoggerUtil          loggerUtil;
+
+    @Autowired
+    private AuditLogWriter      writer;
+
+    @Autowired
+    private LogEntryService     service;
+
+    private static final String USER_1 = "auditUser1";
+
+    @BeforeEach
+    public void setup () {
+        writer.flush();
+        service.deleteAll();
+    }
+
+    @Test
+    public void testQueuedEntriesAreWritten () {
+        for ( int i = 0; i < 500; i++ ) {
+            loggerUtil.log( TransactionType.LOGIN_SUCCESS, USER_1, "Login " + i );
+        }
+
+        writer.flush();
+
+        Assertions.assertEquals( 500, service.findAllForUser( USER_1 ).size(),
+                "Every logged event should be in the database once the writer has been flushed" );
+    }
+
+    @Test
+    public void testFlushWithNothingQueued () {
+        writer.flush();
+
+        Assertions.assertEquals( 0, service.count(), "Flushing an empty writer should not write anything" );
+    }
+
+    @Test
+    public void testEntriesHeldUntilRequestCompletes () {
+        final ServletRequestAttributes request = new ServletRequestAttributes( new MockHttpServletRequest() );
+        RequestContextHolder.setRequestAttributes( request );
+        try {
+            for ( int i = 0; i < 20; i++ ) {
+                loggerUtil.log( TransactionType.LOGIN_SUCCESS, USER_1, "Login " + i );
+            }
+            writer.flush();
+            Assertions.assertEquals( 0, service.count(), "Entries should be held while the request is running" );
+
+            request.requestCompleted();
+        }
+        finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+
+        writer.flush();
+        Assertions.assertEquals( 20, service.findAllForUser( USER_1 ).size(),
+                "Every entry held by the request should be written once it completes" );
+    }
+
+}
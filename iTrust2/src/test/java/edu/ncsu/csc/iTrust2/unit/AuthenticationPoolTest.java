@@ -0,0 +1,71 @@
+package edu.ncsu.csc.iTrust2.unit;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ncsu.csc.iTrust2.TestConfig;
+import edu.ncsu.csc.iTrust2.config.LoginThrottledException;
+import edu.ncsu.csc.iTrust2.services.security.CachedUserDetailsService;
+
+@ExtendWith ( SpringExtension.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class, properties = { "itrust2.security.auth-pool.threads=1",
+        "itrust2.security.auth-pool.queue=0" } )
+@ActiveProfiles ( { "test" } )
+public class AuthenticationPoolTest {
+
+    @Autowired
+    private DaoAuthenticationProvider provider;
+
+    @Autowired
+    private CachedUserDetailsService  userDetailsService;
+
+    @Test
+    public void testFullPoolRejectsLogins () throws Exception {
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        // Hold the only thread in the pool inside a user lookup
+        provider.setUserDetailsService( username -> {
+            started.countDown();
+            try {
+                release.await( 10, TimeUnit.SECONDS );
+            }
+            catch ( final InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+            throw new UsernameNotFoundException( username );
+        } );
+        try {
+            final CompletableFuture<Void> first = CompletableFuture.runAsync( () -> Assertions.assertThrows(
+                    BadCredentialsException.class,
+                    () -> provider.authenticate( new UsernamePasswordAuthenticationToken( "first", "pw" ) ) ) );
+            Assertions.assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+
+            Assertions.assertThrows( LoginThrottledException.class,
+                    () -> provider.authenticate( new UsernamePasswordAuthenticationToken( "second", "pw" ) ),
+                    "A login beyond the pool and its queue should be turned away" );
+
+            release.countDown();
+            first.get( 10, TimeUnit.SECONDS );
+        }
+        finally {
+            release.countDown();
+            provider.setUserDetailsService( userDetailsService );
+        }
+    }
+
+}
@@ -1,25 +1,38 @@
 package edu.ncsu.csc.iTrust2.unit;
 
 import java.time.ZonedDateTime;
+import java.util.List;
 
 import javax.transaction.Transactional;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import edu.ncsu.csc.iTrust2.TestConfig;
+import edu.ncsu.csc.iTrust2.forms.DiagnosisForm;
 import edu.ncsu.csc.iTrust2.forms.DiagnosisListForm;
+import edu.ncsu.csc.iTrust2.forms.OfficeVisitForm;
 import edu.ncsu.csc.iTrust2.forms.UserForm;
 import edu.ncsu.csc.iTrust2.models.Diagnosis;
+import edu.ncsu.csc.iTrust2.models.Hospital;
 import edu.ncsu.csc.iTrust2.models.ICDCode;
 import edu.ncsu.csc.iTrust2.models.OfficeVisit;
+import edu.ncsu.csc.iTrust2.models.Patient;
 import edu.ncsu.csc.iTrust2.models.Personnel;
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.AppointmentType;
 import edu.ncsu.csc.iTrust2.models.enums.Role;
+import edu.ncsu.csc.iTrust2.services.DiagnosisService;
+import edu.ncsu.csc.iTrust2.services.HospitalService;
+import edu.ncsu.csc.iTrust2.services.ICDCodeService;
+import edu.ncsu.csc.iTrust2.services.OfficeVisitService;
+import edu.ncsu.csc.iTrust2.services.UserService;
 
 /**
  * Class to test that DiagnosisList and DiagnosisListForms are created from each
@@ -34,6 +47,21 @@ import edu.ncsu.csc.iTrust2.models.enums.Role;
 @ActiveProfiles ( { "test" } )
 public class DiagnosisListTest {
 
+    @Autowired
+    private DiagnosisService   diagnosisService;
+
+    @Autowired
+    private OfficeVisitService officeVisitService;
+
+    @Autowired
+    private UserService<User>  userService;
+
+    @Autowired
+    private HospitalService    hospitalService;
+
+    @Autowired
+    private ICDCodeService     icdCodeService;
+
     @Test
     @Transactional
     public void testCodes () {
@@ -61,4 +89,69 @@ public class DiagnosisListTest {
         Assertions.assertEquals( "hcp", form.getHcp().getUsername() );
     }
 
+    @Test
+    @Transactional
+    public void testFindByPatient () {
+        officeVisitService.deleteAll();
+        userService.saveAll( List.of( new Patient( new UserForm( "diagPatient", "123456", Role.ROLE_PATIENT, 1 ) ),
+                new Personnel( new UserForm( "diagHcp", "123456", Role.ROLE_HCP, 1 ) ) ) );
+        hospitalService.save( new Hospital( "Diagnosis Hospital", "1 Diagnosis Road", "27606", "NC" ) );
+        final ICDCode code = new ICDCode();
+        code.setCode( "J45" );
+        code.setDescription( "Asthma" );
+        icdCodeService.save( code );
+
+        final User patient = userService.findByName( "diagPatient" );
+        Assertions.assertTrue( diagnosisService.findListByPatient( patient ).isEmpty() );
+
+        saveVisit( "2030-11-19T04:50:00.000-05:00", "First" );
+        final List<DiagnosisListForm> first = diagnosisService.findListByPatient( patient );
+        Assertions.assertEquals( 1, first.size() );
+        Assertions.assertEquals( "First", first.get( 0 ).getNote() );
+        Assertions.assertEquals( "J45", first.get( 0 ).getCode().getCode() );
+        Assertions.assertEquals( "diagHcp", first.get( 0 ).getHcp().getUsername() );
+
+        /* Served from the cache until the patient's visits change */
+        Assertions.assertSame( first, diagnosisService.findListByPatient( patient ) );
+
+        saveVisit( "2030-11-20T04:50:00.000-05:00", "Second" );
+        final List<DiagnosisListForm> both = diagnosisService.findListByPatient( patient );
+        Assertions.assertEquals( 2, both.size() );
+        Assertions.assertEquals( "Second", both.get( 1 ).getNote() );
+        Assertions.assertEquals( 2, diagnosisService.findByPatient( patient ).size() );
+
+        /* Changing an ICD-10 code forgets the copies of it in the cache */
+        code.setDescription( "Asthma, unspecified" );
+        icdCodeService.save( code );
+        Assertions.assertEquals( "Asthma, unspecified",
+                diagnosisService.findListByPatient( patient ).get( 0 ).getCode().getDescription() );
+
+        officeVisitService.deleteAll();
+        Assertions.assertTrue( diagnosisService.findListByPatient( patient ).isEmpty() );
+    }
+
+    /**
+     * Saves a visit for the test patient with a single diagnosis
+     *
+     * @param date
+     *            Date of the visit
+     * @param note
+     *            Note on the diagnosis
+     */
+    private void saveVisit ( final String date, final String note ) {
+        final DiagnosisForm diagnosis = new DiagnosisForm();
+        diagnosis.setCode( "J45" );
+        diagnosis.setNote( note );
+
+        final OfficeVisitForm form = new OfficeVisitForm();
+        form.setPatient( "diagPatient" );
+        form.setHcp( "diagHcp" );
+        form.setDate( date );
+        form.setType( AppointmentType.GENERAL_CHECKUP.toString() );
+        form.setHospital( "Diagnosis Hospital" );
+        form.setNotes( "Visit" );
+        form.setDiagnoses( List.of( diagnosis ) );
+        officeVisitService.save( officeVisitService.build( form ) );
+    }
+
 }
@@ -0,0 +1,125 @@
+package edu.ncsu.csc.iTrust2.unit;
+
+import java.time.ZonedDateTime;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ncsu.csc.iTrust2.TestConfig;
+import edu.ncsu.csc.iTrust2.models.security.LoginBan;
+import edu.ncsu.csc.iTrust2.models.security.LoginLockout;
+import edu.ncsu.csc.iTrust2.repositories.security.LoginBanRepository;
+import edu.ncsu.csc.iTrust2.services.security.IPBlockCache;
+import edu.ncsu.csc.iTrust2.services.security.LoginBanService;
+import edu.ncsu.csc.iTrust2.services.security.LoginLockoutService;
+
+@ExtendWith ( SpringExtension.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class )
+@ActiveProfiles ( { "test" } )
+public class IPBlockCacheTest {
+
+    private static final String        IP = "10.0.0.42";
+
+    @Autowired
+    private IPBlockCache               cache;
+
+    @Autowired
+    private LoginBanService            banService;
+
+    @Autowired
+    private LoginLockoutService        lockoutService;
+
+    @Autowired
+    private LoginBanRepository         banRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setup () {
+        banService.deleteAll();
+        lockoutService.deleteAll();
+    }
+
+    @Test
+    public void testLockoutsExpire () {
+        final LoginLockout old = new LoginLockout();
+        old.setIp( IP );
+        old.setTime( ZonedDateTime.now().minus( IPBlockCache.LOCKOUT_WINDOW ).minusMinutes( 1 ) );
+        lockoutService.save( old );
+        Assertions.assertFalse( lockoutService.isIPLocked( IP ), "An expired lockout should not lock the IP" );
+
+        final LoginLockout lockout = new LoginLockout();
+        lockout.setIp( IP );
+        lockout.setTime( ZonedDateTime.now() );
+        lockoutService.save( lockout );
+        Assertions.assertTrue( cache.isLocked( IP ), "Saving a lockout should lock the IP straight away" );
+
+        lockoutService.clearIP( IP );
+        Assertions.assertFalse( cache.isLocked( IP ), "Clearing lockouts should unlock the IP" );
+    }
+
+    @Test
+    public void testDeletingLockouts () {
+        final LoginLockout earlier = new LoginLockout();
+        earlier.setIp( IP );
+        earlier.setTime( ZonedDateTime.now().minusMinutes( 10 ) );
+        lockoutService.save( earlier );
+        final LoginLockout later = new LoginLockout();
+        later.setIp( IP );
+        later.setTime( ZonedDateTime.now() );
+        lockoutService.save( later );
+
+        lockoutService.delete( later );
+        Assertions.assertTrue( cache.isLocked( IP ), "The remaining lockout should still lock the IP" );
+        lockoutService.delete( earlier );
+        Assertions.assertFalse( cache.isLocked( IP ), "Deleting the last lockout should unlock the IP" );
+    }
+
+    @Test
+    public void testChangesWaitForCommit () {
+        final LoginBan ban = new LoginBan();
+        ban.setIp( IP );
+        ban.setTime( ZonedDateTime.now() );
+        new TransactionTemplate( transactionManager ).execute( status -> {
+            banService.save( ban );
+            Assertions.assertFalse( cache.isBanned( IP ), "A ban should not be cached before it commits" );
+            status.setRollbackOnly();
+            return null;
+        } );
+        Assertions.assertFalse( cache.isBanned( IP ), "A ban that was rolled back should never be cached" );
+    }
+
+    @Test
+    public void testBansFollowDatabase () {
+        final LoginBan ban = new LoginBan();
+        ban.setIp( IP );
+        ban.setTime( ZonedDateTime.now() );
+        banService.save( ban );
+        Assertions.assertTrue( cache.isBanned( IP ), "Saving a ban should ban the IP straight away" );
+
+        // Changes made behind the service's back are picked up on refresh
+        banRepository.deleteAll();
+        Assertions.assertTrue( cache.isBanned( IP ) );
+        cache.refresh();
+        Assertions.assertFalse( cache.isBanned( IP ), "A refresh should drop bans no longer in the database" );
+
+        final LoginBan direct = new LoginBan();
+        direct.setIp( IP );
+        direct.setTime( ZonedDateTime.now() );
+        banRepository.saveAndFlush( direct );
+        cache.refresh();
+        Assertions.assertTrue( banService.isIPBanned( IP ), "A refresh should load bans from the database" );
+    }
+
+}
@@ -0,0 +1,94 @@
+package edu.ncsu.csc.iTrust2.unit;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ncsu.csc.iTrust2.TestConfig;
+import edu.ncsu.csc.iTrust2.forms.UserForm;
+import edu.ncsu.csc.iTrust2.models.Email;
+import edu.ncsu.csc.iTrust2.models.Personnel;
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.Role;
+import edu.ncsu.csc.iTrust2.services.EmailService;
+import edu.ncsu.csc.iTrust2.services.UserService;
+import edu.ncsu.csc.iTrust2.utils.LockoutEmailDispatcher;
+import edu.ncsu.csc.iTrust2.utils.LockoutEmailEvent;
+
+@ExtendWith ( SpringExtension.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class )
+@ActiveProfiles ( { "test" } )
+public class LockoutEmailDispatcherTest {
+
+    private static final String       USER = "lockoutEmailUser";
+
+    @Autowired
+    private ApplicationEventPublisher publisher;
+
+    @Autowired
+    private LockoutEmailDispatcher    dispatcher;
+
+    @Autowired
+    private EmailService              emailService;
+
+    @Autowired
+    private UserService<User>         userService;
+
+    @BeforeEach
+    public void setup () {
+        emailService.deleteAll();
+        if ( null == userService.findByName( USER ) ) {
+            userService.save( new Personnel( new UserForm( USER, "123456", Role.ROLE_HCP, 1 ) ) );
+        }
+    }
+
+    @Test
+    public void testBurstSendsOneEmail () {
+        final User user = userService.findByName( USER );
+        for ( int i = 0; i < 3; i++ ) {
+            publisher.publishEvent( new LockoutEmailEvent( USER ) );
+        }
+        publisher.publishEvent( new LockoutEmailEvent( "noSuchLockoutUser" ) );
+        dispatcher.flush();
+        Assertions.assertEquals( 1, emailService.findByReceiver( user ).size(),
+                "A burst of lockouts should produce a single email" );
+
+        publisher.publishEvent( new LockoutEmailEvent( USER ) );
+        dispatcher.flush();
+        Assertions.assertEquals( 1, emailService.findByReceiver( user ).size(),
+                "A user emailed recently should not be emailed again" );
+    }
+
+    @Test
+    public void testBanAfterLockoutSendsEmail () {
+        final String banned = "lockoutEmailBanUser";
+        if ( null == userService.findByName( banned ) ) {
+            userService.save( new Personnel( new UserForm( banned, "123456", Role.ROLE_HCP, 1 ) ) );
+        }
+        final User user = userService.findByName( banned );
+
+        publisher.publishEvent( new LockoutEmailEvent( banned, LockoutEmailEvent.Kind.LOCKOUT ) );
+        dispatcher.flush();
+        publisher.publishEvent( new LockoutEmailEvent( banned, LockoutEmailEvent.Kind.BAN ) );
+        dispatcher.flush();
+        Assertions.assertEquals( 2, emailService.findByReceiver( user ).size(),
+                "A ban should be emailed even if the user was just emailed about a lockout" );
+        final List<Email> emails = emailService.findByReceiver( user );
+        Assertions.assertTrue( emails.stream().anyMatch( e -> e.getSubject().contains( "locked out" ) ) );
+        final Email ban = emails.stream().filter( e -> e.getSubject().contains( "banned" ) ).findFirst()
+                .orElseThrow( () -> new AssertionError( "The ban should be emailed with its own subject" ) );
+        Assertions.assertTrue( ban.getMessageBody().contains( "has been banned" ),
+                "The ban email should say the account was banned" );
+    }
+
+}
@@ -0,0 +1,151 @@
+package edu.ncsu.csc.iTrust2.unit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Slice;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ncsu.csc.iTrust2.TestConfig;
+import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
+import edu.ncsu.csc.iTrust2.models.security.LogEntry;
+import edu.ncsu.csc.iTrust2.services.security.LogEntryArchive;
+import edu.ncsu.csc.iTrust2.services.security.LogEntryService;
+
+@ExtendWith ( SpringExtension.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class, properties = "itrust2.audit.archive.dir=" + LogEntryArchiveTest.DIR )
+@ActiveProfiles ( { "test" } )
+public class LogEntryArchiveTest {
+
+    static final String         DIR    = "target/test-audit-archive";
+
+    private static final String USER_1 = "archiveUser1";
+
+    private static final String USER_2 = "archiveUser2";
+
+    @Autowired
+    private LogEntryService     service;
+
+    @Autowired
+    private LogEntryArchive     archive;
+
+    @BeforeEach
+    public void setup () throws IOException {
+        service.deleteAll();
+        final Path dir = Paths.get( DIR );
+        if ( Files.exists( dir ) ) {
+            try ( Stream<Path> files = Files.walk( dir ) ) {
+                files.sorted( Comparator.reverseOrder() ).forEach( p -> p.toFile().delete() );
+            }
+        }
+    }
+
+    @Test
+    public void testArchiveAndRead () {
+        final ZonedDateTime now = ZonedDateTime.now();
+
+        for ( int i = 0; i < 3; i++ ) {
+            final LogEntry old = new LogEntry( TransactionType.LOGIN_SUCCESS, USER_1, USER_2, "Old entry " + i );
+            old.setTime( now.minusDays( 200 + 40 * i ) );
+            service.save( old );
+        }
+        service.save( new LogEntry( TransactionType.LOGIN_SUCCESS, USER_1, null, "Recent entry" ) );
+        service.save( new LogEntry( TransactionType.LOGIN_SUCCESS, USER_2, null, "Other user" ) );
+
+        Assertions.assertEquals( 3, service.archiveBefore( now.minusDays( 90 ), 100 ),
+                "Every entry older than the cutoff should be archived" );
+        Assertions.assertEquals( 2, service.count(), "Archived entries should no longer be in the database" );
+        Assertions.assertEquals( 3, archive.months().size(), "Each month should have its own segment" );
+
+        Assertions.assertEquals( 4, service.findAllForUser( USER_1 ).size(),
+                "Reading every entry for a user should include the archive" );
+        Assertions.assertEquals( 4, service.findAllForUser( USER_2 ).size(),
+                "Archived entries should be found through the secondary user too" );
+        Assertions.assertEquals( 1,
+                service.findByDateRange( USER_1, now.minusDays( 210 ), now.minusDays( 190 ) ).size(),
+                "A date range should only return the archived entries within it" );
+        Assertions.assertEquals( 1, service.findByDateRange( USER_1, now.minusDays( 1 ), now.plusDays( 1 ) ).size(),
+                "A recent date range should not return archived entries" );
+
+        Assertions.assertEquals( 0, service.archiveBefore( now.minusDays( 90 ), 100 ),
+                "Nothing should be left to archive" );
+    }
+
+    @Test
+    public void testPagesSpanDatabaseAndArchive () {
+        final ZonedDateTime now = ZonedDateTime.now();
+
+        for ( int i = 0; i < 3; i++ ) {
+            final LogEntry old = new LogEntry( TransactionType.LOGIN_SUCCESS, USER_1, null, "Old entry " + i );
+            old.setTime( now.minusDays( 100 + i ) );
+            service.save( old );
+        }
+        service.archiveBefore( now.minusDays( 90 ), 100 );
+        for ( int i = 0; i < 3; i++ ) {
+            service.save( new LogEntry( TransactionType.LOGIN_SUCCESS, USER_1, null, "Recent entry " + i ) );
+        }
+
+        final List<TransactionType> codes = Arrays.asList( TransactionType.values() );
+        final ZonedDateTime from = now.minusDays( 365 );
+        final ZonedDateTime to = now.plusDays( 1 );
+        Assertions.assertTrue( service.findPageForUser( USER_1, codes, from, to, 0, 4 ).hasNext() );
+        final Slice<LogEntry> second = service.findPageForUser( USER_1, codes, from, to, 1, 4 );
+        Assertions.assertEquals( 2, second.getContent().size(),
+                "The second page should hold the rest of the archived entries" );
+        Assertions.assertFalse( second.hasNext() );
+        Assertions.assertEquals( 0, service.findPageForUser( USER_1, codes, from, to, 2, 4 ).getContent().size(),
+                "A page past the end should be empty" );
+        Assertions.assertEquals( 2, service.findPageForUser( USER_1, codes, null, null, 1, 4 ).getContent().size(),
+                "Without a date range the archive should still be read" );
+        Assertions.assertEquals( "Old entry 2",
+                service.findPageForUser( USER_1, codes, null, null, 2, 2 ).getContent().get( 1 ).getMessage(),
+                "Archived entries should be paged newest first" );
+        Assertions.assertEquals( 2, service.findPageForUser( USER_1, codes, from, null, 1, 4 ).getContent().size(),
+                "A range with only a start date should reach into the archive" );
+        Assertions.assertEquals( 3, service.findPageForUser( USER_1, codes, null, now.minusDays( 90 ), 0, 4 )
+                .getContent().size(), "A range with only an end date should stop at it" );
+    }
+
+    @Test
+    public void testInterruptedRollOverIsNotReadTwice () {
+        final ZonedDateTime now = ZonedDateTime.now();
+        final LogEntry old = new LogEntry( TransactionType.LOGIN_SUCCESS, USER_1, null, "Old entry" );
+        old.setTime( now.minusDays( 100 ) );
+        service.save( old );
+
+        // Archived, but the delete from the database never happened
+        final YearMonth month = YearMonth.from( old.getTime().withZoneSameInstant( ZoneId.systemDefault() ) );
+        archive.append( month, new ArrayList<LogEntry>( Arrays.asList( old ) ) );
+        Assertions.assertEquals( 1, service.findAllForUser( USER_1 ).size(),
+                "An entry in both the archive and the database should be read once" );
+        Assertions.assertEquals( 1, service.findPageForUser( USER_1, Arrays.asList( TransactionType.values() ),
+                null, null, 0, 4 ).getContent().size() );
+
+        Assertions.assertEquals( 0, service.archiveBefore( now.minusDays( 90 ), 100 ),
+                "The interrupted roll-over should be finished without archiving the entry again" );
+        Assertions.assertEquals( 0, service.count() );
+        Assertions.assertTrue( archive.pending().isEmpty() );
+        Assertions.assertEquals( 1, service.findAllForUser( USER_1 ).size(),
+                "The entry should now be read from the archive" );
+    }
+
+}
@@ -12,11 +12,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.transaction.annotation.Transactional;
 
 import edu.ncsu.csc.iTrust2.TestConfig;
+import edu.ncsu.csc.iTrust2.config.LogCodeMigration;
 import edu.ncsu.csc.iTrust2.models.enums.TransactionType;
 import edu.ncsu.csc.iTrust2.models.security.LogEntry;
 import edu.ncsu.csc.iTrust2.services.security.LogEntryService;
@@ -30,6 +32,12 @@ public class LogEntryTest {
     @Autowired
     private LogEntryService     service;
 
+    @Autowired
+    private LogCodeMigration    migration;
+
+    @Autowired
+    private JdbcTemplate        jdbc;
+
     private static final String USER_1 = "testUser123";
 
     private static final String USER_2 = "testUser1234";
@@ -80,4 +88,30 @@ public class LogEntryTest {
                 "Creating a Log Entry with a secondary user should still find the Log Entry when querying by the primary user" );
 
     }
+
+    @Test
+    public void testLogCodeStorage () {
+        Assertions.assertEquals( TransactionType.LOGIN_SUCCESS, TransactionType.parse( 202 ) );
+        Assertions.assertEquals( TransactionType.HTTP_REQUEST, TransactionType.parse( 9001 ) );
+        Assertions.assertThrows( IllegalArgumentException.class, () -> TransactionType.parse( 8 ) );
+
+        final LogEntry entry = new LogEntry( TransactionType.LOGIN_SUCCESS, USER_1, null,
+                "User has logged in successfully" );
+        service.save( entry );
+        Assertions.assertEquals( 202,
+                jdbc.queryForObject( "SELECT log_code FROM log_entry WHERE id = ?", Integer.class, entry.getId() ),
+                "The code of the TransactionType should be stored" );
+
+        // A row from before codes were stored, holding the position of
+        // LOGIN_SUCCESS instead
+        jdbc.update( "UPDATE log_entry SET log_code = 8 WHERE id = ?", entry.getId() );
+        Assertions.assertEquals( TransactionType.LOGIN_SUCCESS, service.findById( entry.getId() ).getLogCode(),
+                "A row that has not been rewritten yet should still be readable" );
+        migration.migrate();
+        migration.migrate();
+        Assertions.assertEquals( 202,
+                jdbc.queryForObject( "SELECT log_code FROM log_entry WHERE id = ?", Integer.class, entry.getId() ),
+                "Stored positions should be rewritten to codes, once" );
+        Assertions.assertEquals( TransactionType.LOGIN_SUCCESS, service.findById( entry.getId() ).getLogCode() );
+    }
 }
@@ -0,0 +1,72 @@
+package edu.ncsu.csc.iTrust2.unit;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ncsu.csc.iTrust2.TestConfig;
+import edu.ncsu.csc.iTrust2.forms.UserForm;
+import edu.ncsu.csc.iTrust2.models.Personnel;
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.Role;
+import edu.ncsu.csc.iTrust2.models.security.LoginAttempt;
+import edu.ncsu.csc.iTrust2.services.security.LoginAttemptService;
+
+@ExtendWith ( SpringExtension.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class )
+@ActiveProfiles ( { "test" } )
+public class LoginAttemptTest {
+
+    private static final String IP = "10.0.0.45";
+
+    @Autowired
+    private LoginAttemptService service;
+
+    @BeforeEach
+    public void setup () {
+        service.deleteAll();
+    }
+
+    @Test
+    public void testAttemptsClearedOnLogin () {
+        final User user = new Personnel( new UserForm( "attemptUser", "123456", Role.ROLE_HCP, 1 ) );
+        service.recordIP( IP );
+        service.recordIP( IP );
+        service.recordUser( user );
+        Assertions.assertEquals( 2, service.countByIP( IP ) );
+        Assertions.assertEquals( 1, service.countByUser( user ) );
+
+        service.clearLogin( IP, user.getUsername() );
+        Assertions.assertEquals( 0, service.countByIP( IP ), "A successful login should clear its IP's attempts" );
+        Assertions.assertEquals( 0, service.countByUser( user ), "A successful login should clear the user's attempts" );
+    }
+
+    @Test
+    public void testSnapshotHoldsOneRowPerBucket () {
+        for ( int i = 0; i < 3; i++ ) {
+            service.recordIP( IP );
+        }
+        service.snapshot();
+        final List<LoginAttempt> rows = service.findAll();
+        Assertions.assertEquals( 1, rows.size(), "Attempts in one bucket should be stored as one row" );
+        Assertions.assertEquals( 3, rows.get( 0 ).getAttempts() );
+
+        service.clearIP( IP );
+        service.recover();
+        Assertions.assertEquals( 3, service.countByIP( IP ), "The counts should be restored from the snapshot" );
+
+        service.clearIP( IP );
+        service.snapshot();
+        Assertions.assertEquals( 0, service.count(), "Cleared attempts should be removed from the snapshot" );
+    }
+
+}
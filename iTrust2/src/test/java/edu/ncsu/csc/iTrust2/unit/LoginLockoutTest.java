@@ -0,0 +1,126 @@
+package edu.ncsu.csc.iTrust2.unit;
+
+import java.time.ZonedDateTime;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ncsu.csc.iTrust2.TestConfig;
+import edu.ncsu.csc.iTrust2.config.LoginBlockExpiryMigration;
+import edu.ncsu.csc.iTrust2.models.security.LoginBan;
+import edu.ncsu.csc.iTrust2.models.security.LoginLockout;
+import edu.ncsu.csc.iTrust2.services.security.IPBlockCache;
+import edu.ncsu.csc.iTrust2.services.security.LoginBanService;
+import edu.ncsu.csc.iTrust2.services.security.LoginBlockSweeper;
+import edu.ncsu.csc.iTrust2.services.security.LoginLockoutService;
+
+@ExtendWith ( SpringExtension.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class )
+@ActiveProfiles ( { "test" } )
+public class LoginLockoutTest {
+
+    private static final String       IP = "10.0.0.43";
+
+    @Autowired
+    private LoginLockoutService       service;
+
+    @Autowired
+    private LoginBanService           banService;
+
+    @Autowired
+    private LoginBlockSweeper         sweeper;
+
+    @Autowired
+    private LoginBlockExpiryMigration migration;
+
+    @Autowired
+    private IPBlockCache              cache;
+
+    @Autowired
+    private JdbcTemplate              jdbc;
+
+    @BeforeEach
+    public void setup () {
+        service.deleteAll();
+        banService.deleteAll();
+    }
+
+    @Test
+    public void testRecentLockoutsAndSweep () {
+        final ZonedDateTime now = ZonedDateTime.now();
+        lockout( now.minusHours( 30 ) );
+        lockout( now.minusHours( 5 ) );
+        lockout( now.minusMinutes( 5 ) );
+
+        Assertions.assertEquals( 2, service.getRecentIPLockouts( IP ),
+                "Only lockouts within the past day should count towards a ban" );
+        Assertions.assertEquals( 0, service.getRecentIPLockouts( "10.0.0.44" ) );
+
+        Assertions.assertFalse( service.isIPLocked( "10.0.0.44" ) );
+        Assertions.assertTrue( service.isIPLocked( IP ) );
+
+        Assertions.assertEquals( 1, sweeper.sweepLockouts(), "Lockouts older than a day should be swept" );
+        Assertions.assertEquals( 2, service.count() );
+        Assertions.assertEquals( 2, service.getRecentIPLockouts( IP ) );
+    }
+
+    @Test
+    public void testBansExpire () {
+        final ZonedDateTime now = ZonedDateTime.now();
+        final LoginBan expired = new LoginBan();
+        expired.setIp( IP );
+        expired.setTime( now.minusDays( 31 ) );
+        expired.setExpiresAt( now.minusHours( 1 ) );
+        banService.save( expired );
+        Assertions.assertFalse( banService.isIPBanned( IP ), "An expired ban should not ban the IP" );
+
+        final LoginBan ban = new LoginBan();
+        ban.setIp( "10.0.0.44" );
+        ban.setTime( now.minusDays( 365 ) );
+        banService.save( ban );
+        Assertions.assertEquals( LoginBan.PERMANENT.toInstant(), ban.getExpiresAt().toInstant(),
+                "A ban should not expire unless a duration is configured" );
+        Assertions.assertTrue( banService.isIPBanned( "10.0.0.44" ) );
+
+        Assertions.assertEquals( 1, sweeper.sweepBans(), "Only expired bans should be swept" );
+        Assertions.assertEquals( 1, banService.count() );
+        Assertions.assertEquals( 0, sweeper.sweep() );
+    }
+
+    @Test
+    public void testBlocksFromBeforeExpiryAreKept () {
+        final ZonedDateTime now = ZonedDateTime.now();
+        final LoginBan ban = new LoginBan();
+        ban.setIp( IP );
+        ban.setTime( now.minusDays( 365 ) );
+        banService.save( ban );
+        lockout( now.minusMinutes( 5 ) );
+
+        // Rows saved before expires_at existed
+        jdbc.update( "UPDATE login_ban SET expires_at = NULL" );
+        jdbc.update( "UPDATE login_lockout SET expires_at = NULL" );
+        migration.migrate();
+        cache.refresh();
+
+        Assertions.assertTrue( banService.isIPBanned( IP ), "An old ban should still be in force" );
+        Assertions.assertTrue( service.isIPLocked( IP ), "A recent old lockout should still be in force" );
+        Assertions.assertEquals( 0, sweeper.sweep(), "Old bans and lockouts should not be swept as expired" );
+    }
+
+    private void lockout ( final ZonedDateTime time ) {
+        final LoginLockout lockout = new LoginLockout();
+        lockout.setIp( IP );
+        lockout.setTime( time );
+        service.save( lockout );
+    }
+
+}
@@ -21,9 +21,13 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import edu.ncsu.csc.iTrust2.TestConfig;
+import edu.ncsu.csc.iTrust2.forms.DiagnosisForm;
+import edu.ncsu.csc.iTrust2.forms.OfficeVisitForm;
 import edu.ncsu.csc.iTrust2.forms.OphthalmologyVisitForm;
+import edu.ncsu.csc.iTrust2.forms.PrescriptionForm;
 import edu.ncsu.csc.iTrust2.forms.UserForm;
 import edu.ncsu.csc.iTrust2.models.BasicHealthMetrics;
+import edu.ncsu.csc.iTrust2.models.CPTCode;
 import edu.ncsu.csc.iTrust2.models.Diagnosis;
 import edu.ncsu.csc.iTrust2.models.Drug;
 import edu.ncsu.csc.iTrust2.models.Hospital;
@@ -38,6 +42,7 @@ import edu.ncsu.csc.iTrust2.models.enums.AppointmentType;
 import edu.ncsu.csc.iTrust2.models.enums.HouseholdSmokingStatus;
 import edu.ncsu.csc.iTrust2.models.enums.Role;
 import edu.ncsu.csc.iTrust2.services.BasicHealthMetricsService;
+import edu.ncsu.csc.iTrust2.services.CPTCodeService;
 import edu.ncsu.csc.iTrust2.services.DrugService;
 import edu.ncsu.csc.iTrust2.services.HospitalService;
 import edu.ncsu.csc.iTrust2.services.ICDCodeService;
@@ -72,6 +77,9 @@ public class OfficeVisitTest {
     @Autowired
     private PrescriptionService       prescriptionService;
 
+    @Autowired
+    private CPTCodeService            cptCodeService;
+
     @BeforeEach
     public void setup () {
         officeVisitService.deleteAll();
@@ -354,4 +362,123 @@ public class OfficeVisitTest {
         Assertions.assertEquals( 20, retrieved.getOphthalmologyMetrics().getVisualAcuityLeft().intValue() );
 
     }
+
+    @Test
+    @Transactional
+    public void testBuildFromForm () {
+        hospitalService.save( new Hospital( "Dr. Jenkins' Form Clinic", "123 Main St", "12345", "NC" ) );
+
+        final ICDCode flu = new ICDCode();
+        flu.setCode( "J10" );
+        flu.setDescription( "Influenza" );
+        final ICDCode cold = new ICDCode();
+        cold.setCode( "J00" );
+        cold.setDescription( "Common cold" );
+        icdCodeService.saveAll( List.of( flu, cold ) );
+
+        final Drug drug = new Drug();
+        drug.setCode( "2000-0000-01" );
+        drug.setDescription( "Oseltamivir" );
+        drug.setName( "Tamiflu" );
+        drugService.save( drug );
+
+        final List<Long> cptIds = new ArrayList<Long>();
+        for ( final int c : new int[] { 99301, 99302, 99303 } ) {
+            final CPTCode code = new CPTCode();
+            code.setCode( c );
+            code.setDescription( "Visit " + c );
+            code.setCost( 50 );
+            code.setVersion( 0 );
+            cptCodeService.save( code );
+            cptIds.add( code.getId() );
+        }
+        // Codes may repeat, and must come back in the order given
+        cptIds.add( cptIds.get( 0 ) );
+
+        final OfficeVisitForm form = new OfficeVisitForm();
+        form.setPatient( "AliceThirteen" );
+        form.setHcp( "hcp" );
+        form.setDate( ZonedDateTime.now().toString() );
+        form.setType( AppointmentType.GENERAL_CHECKUP.toString() );
+        form.setHospital( "Dr. Jenkins' Form Clinic" );
+        form.setNotes( "Built from a form" );
+        form.setCptCodes( cptIds );
+
+        final List<DiagnosisForm> diagnoses = new ArrayList<DiagnosisForm>();
+        for ( final String code : List.of( "J10", "J00" ) ) {
+            final DiagnosisForm diagnosis = new DiagnosisForm();
+            diagnosis.setCode( code );
+            diagnosis.setNote( "Diagnosed with " + code );
+            diagnoses.add( diagnosis );
+        }
+        form.setDiagnoses( diagnoses );
+
+        final List<PrescriptionForm> prescriptions = new ArrayList<PrescriptionForm>();
+        for ( int i = 0; i < 2; i++ ) {
+            final PrescriptionForm prescription = new PrescriptionForm();
+            prescription.setDrug( "2000-0000-01" );
+            prescription.setDosage( 75 + i );
+            prescription.setRenewals( i );
+            prescription.setPatient( "AliceThirteen" );
+            prescription.setStartDate( LocalDate.now().toString() );
+            prescription.setEndDate( LocalDate.now().plusDays( 5 ).toString() );
+            prescriptions.add( prescription );
+        }
+        form.setPrescriptions( prescriptions );
+
+        final OfficeVisit visit = officeVisitService.build( form );
+
+        Assertions.assertEquals( "AliceThirteen", visit.getPatient().getUsername() );
+        Assertions.assertEquals( "hcp", visit.getHcp().getUsername() );
+        Assertions.assertEquals( visit.getPatient(), visit.getBasicHealthMetrics().getPatient() );
+        Assertions.assertEquals( "Dr. Jenkins' Form Clinic", visit.getHospital().getName() );
+
+        Assertions.assertEquals( 4, visit.getCptCodes().size() );
+        Assertions.assertEquals( 99301, visit.getCptCodes().get( 0 ).getCode() );
+        Assertions.assertEquals( 99303, visit.getCptCodes().get( 2 ).getCode() );
+        Assertions.assertEquals( 99301, visit.getCptCodes().get( 3 ).getCode() );
+
+        Assertions.assertEquals( 2, visit.getDiagnoses().size() );
+        Assertions.assertEquals( "J10", visit.getDiagnoses().get( 0 ).getCode().getCode() );
+        Assertions.assertEquals( "J00", visit.getDiagnoses().get( 1 ).getCode().getCode() );
+        Assertions.assertSame( visit, visit.getDiagnoses().get( 1 ).getVisit() );
+
+        Assertions.assertEquals( 2, visit.getPrescriptions().size() );
+        Assertions.assertEquals( "2000-0000-01", visit.getPrescriptions().get( 1 ).getDrug().getCode() );
+        Assertions.assertEquals( 76, visit.getPrescriptions().get( 1 ).getDosage() );
+        Assertions.assertEquals( visit.getPatient(), visit.getPrescriptions().get( 0 ).getPatient() );
+
+        officeVisitService.save( visit );
+        Assertions.assertEquals( 1, officeVisitService.count() );
+    }
+
+    @Test
+    @Transactional
+    public void testBuildFromFormIgnoresCase () {
+        hospitalService.save( new Hospital( "Dr. Jenkins' Case Clinic", "123 Main St", "12345", "NC" ) );
+
+        final ICDCode flu = new ICDCode();
+        flu.setCode( "J10" );
+        flu.setDescription( "Influenza" );
+        icdCodeService.save( flu );
+
+        final OfficeVisitForm form = new OfficeVisitForm();
+        form.setPatient( "alicethirteen" );
+        form.setHcp( "HCP" );
+        form.setDate( ZonedDateTime.now().toString() );
+        form.setType( AppointmentType.GENERAL_CHECKUP.toString() );
+        form.setHospital( "Dr. Jenkins' Case Clinic" );
+
+        final DiagnosisForm diagnosis = new DiagnosisForm();
+        diagnosis.setCode( "j10" );
+        diagnosis.setNote( "Diagnosed with the flu" );
+        form.setDiagnoses( List.of( diagnosis ) );
+
+        final OfficeVisit visit = officeVisitService.build( form );
+
+        Assertions.assertEquals( "AliceThirteen", visit.getPatient().getUsername() );
+        Assertions.assertEquals( "hcp", visit.getHcp().getUsername() );
+        Assertions.assertEquals( 1, visit.getDiagnoses().size() );
+        Assertions.assertEquals( "J10", visit.getDiagnoses().get( 0 ).getCode().getCode() );
+    }
 }
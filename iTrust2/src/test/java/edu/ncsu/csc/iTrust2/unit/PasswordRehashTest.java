@@ -0,0 +1,86 @@
+package edu.ncsu.csc.iTrust2.unit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ncsu.csc.iTrust2.TestConfig;
+import edu.ncsu.csc.iTrust2.forms.UserForm;
+import edu.ncsu.csc.iTrust2.models.Personnel;
+import edu.ncsu.csc.iTrust2.models.User;
+import edu.ncsu.csc.iTrust2.models.enums.Role;
+import edu.ncsu.csc.iTrust2.services.UserService;
+import edu.ncsu.csc.iTrust2.services.security.PasswordRehashService;
+
+@ExtendWith ( SpringExtension.class )
+@EnableAutoConfiguration
+@SpringBootTest ( classes = TestConfig.class, properties = "itrust2.security.password.strength=4" )
+@ActiveProfiles ( { "test" } )
+public class PasswordRehashTest {
+
+    private static final String       USER = "rehashUser";
+
+    private static final String       PW   = "123456";
+
+    @Autowired
+    private UserService<User>         userService;
+
+    @Autowired
+    private PasswordRehashService     rehashService;
+
+    @Autowired
+    private PasswordEncoder           passwordEncoder;
+
+    @Autowired
+    private DaoAuthenticationProvider authenticationProvider;
+
+    @BeforeEach
+    public void setup () {
+        userService.deleteAll();
+    }
+
+    @Test
+    public void testRehashOnLogin () {
+        // A hash made before the cost was configured
+        final User user = new Personnel( new UserForm( USER, PW, Role.ROLE_HCP, 1 ) );
+        user.setPassword( new BCryptPasswordEncoder().encode( PW ) );
+        userService.save( user );
+        final String original = userService.findByName( USER ).getPassword();
+        Assertions.assertTrue( rehashService.needsRehash( original ) );
+        Assertions.assertFalse( rehashService.needsRehash( passwordEncoder.encode( PW ) ),
+                "Hashes at the configured cost should be left alone" );
+
+        authenticationProvider.authenticate( new UsernamePasswordAuthenticationToken( USER, PW ) );
+        final String rehashed = userService.findByName( USER ).getPassword();
+        Assertions.assertNotEquals( original, rehashed, "Logging in should rehash the password" );
+        Assertions.assertTrue( rehashed.startsWith( "{bcrypt}$2a$04$" ),
+                "The new hash should use the configured cost" );
+        Assertions.assertTrue( passwordEncoder.matches( PW, rehashed ) );
+        Assertions.assertFalse( rehashService.needsRehash( rehashed ) );
+
+        // A login checked against a hash that has since changed must not
+        // overwrite the stored one
+        rehashService.updatePassword( USER, original, passwordEncoder.encode( PW ) );
+        Assertions.assertEquals( rehashed, userService.findByName( USER ).getPassword() );
+    }
+
+    @Test
+    public void testFormUsesConfiguredEncoder () {
+        final User user = new Personnel( new UserForm( USER, PW, Role.ROLE_HCP, 1 ) );
+        userService.hashPassword( user, PW );
+        Assertions.assertTrue( user.getPassword().startsWith( "{bcrypt}$2a$04$" ),
+                "Users created from a form should be hashed by the configured encoder" );
+        Assertions.assertTrue( passwordEncoder.matches( PW, user.getPassword() ) );
+    }
+
+}
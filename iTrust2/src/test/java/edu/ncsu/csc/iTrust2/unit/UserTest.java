@@ -1,6 +1,10 @@
 package edu.ncsu.csc.iTrust2.unit;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -9,6 +13,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,6 +28,7 @@ import edu.ncsu.csc.iTrust2.models.Personnel;
 import edu.ncsu.csc.iTrust2.models.User;
 import edu.ncsu.csc.iTrust2.models.enums.Role;
 import edu.ncsu.csc.iTrust2.services.UserService;
+import edu.ncsu.csc.iTrust2.services.security.CachedUserDetailsService;
 
 /**
  * Test for user model
@@ -32,15 +41,18 @@ import edu.ncsu.csc.iTrust2.services.UserService;
 public class UserTest {
 
     @Autowired
-    private UserService<User>   service;
+    private UserService<User>        service;
 
-    private static final String USER_1 = "testUser1";
+    @Autowired
+    private CachedUserDetailsService userDetailsService;
+
+    private static final String      USER_1 = "testUser1";
 
-    private static final String USER_2 = "testUser2";
+    private static final String      USER_2 = "testUser2";
 
-    private static final String USER_3 = "testUser3";
+    private static final String      USER_3 = "testUser3";
 
-    private static final String PW     = "123456";
+    private static final String      PW     = "123456";
 
     /**
      * Set up
@@ -137,4 +149,80 @@ public class UserTest {
             // expected
         }
     }
+
+    /**
+     * Tests that cached roles follow changes to users
+     */
+    @Test
+    public void testCachedRoles () {
+        final User user1 = new Personnel( new UserForm( USER_1, PW, Role.ROLE_HCP, 1 ) );
+        service.save( user1 );
+        service.save( new Patient( new UserForm( USER_2, PW, Role.ROLE_PATIENT, 1 ) ) );
+
+        Map<String, Set<Role>> roles = service.findRolesByNames( Arrays.asList( USER_1, USER_2, USER_3, null ) );
+        Assertions.assertEquals( Set.of( Role.ROLE_HCP ), roles.get( USER_1 ) );
+        Assertions.assertEquals( Set.of( Role.ROLE_PATIENT ), roles.get( USER_2 ) );
+        Assertions.assertTrue( roles.get( USER_3 ).isEmpty(), "A missing user should have no roles" );
+
+        user1.addRole( Role.ROLE_ER );
+        service.save( user1 );
+        service.save( new Personnel( new UserForm( USER_3, PW, Role.ROLE_LABTECH, 1 ) ) );
+        roles = service.findRolesByNames( Arrays.asList( USER_1, USER_3 ) );
+        Assertions.assertEquals( Set.of( Role.ROLE_HCP, Role.ROLE_ER ), roles.get( USER_1 ),
+                "Saving a user should replace their cached roles" );
+        Assertions.assertEquals( Set.of( Role.ROLE_LABTECH ), roles.get( USER_3 ),
+                "Creating a user should replace a cached missing user" );
+
+        service.delete( user1 );
+        Assertions.assertTrue( service.findRolesByNames( Arrays.asList( USER_1 ) ).get( USER_1 ).isEmpty(),
+                "Deleting a user should remove their cached roles" );
+    }
+
+    /**
+     * Tests that users cached for logging in follow changes to users
+     */
+    @Test
+    public void testCachedUserDetails () {
+        final User user1 = new Personnel( new UserForm( USER_1, PW, Role.ROLE_HCP, 1 ) );
+        service.save( user1 );
+
+        UserDetails details = userDetailsService.loadUserByUsername( USER_1 );
+        Assertions.assertTrue( details.isEnabled() );
+        Assertions.assertEquals( Set.of( Role.ROLE_HCP.name() ),
+                AuthorityUtils.authorityListToSet( details.getAuthorities() ) );
+        final double afterMiss = userDetailsService.hitRatio();
+        details = userDetailsService.loadUserByUsername( USER_1 );
+        Assertions.assertNotNull( details.getPassword(), "Each lookup should get its own copy of the password" );
+        Assertions.assertTrue( userDetailsService.hitRatio() > afterMiss, "A second lookup should hit the cache" );
+
+        user1.setEnabled( 0 );
+        service.save( user1 );
+        Assertions.assertFalse( userDetailsService.loadUserByUsername( USER_1 ).isEnabled(),
+                "Saving a user should replace their cached details" );
+
+        service.delete( user1 );
+        Assertions.assertThrows( UsernameNotFoundException.class,
+                () -> userDetailsService.loadUserByUsername( USER_1 ),
+                "Deleting a user should remove their cached details" );
+    }
+
+    /**
+     * Tests that a username spelled in another case finds the same cached
+     * user, and that changing the password replaces it
+     */
+    @Test
+    public void testCachedUserDetailsIgnoreCase () {
+        final User user1 = new Personnel( new UserForm( USER_1, PW, Role.ROLE_HCP, 1 ) );
+        service.save( user1 );
+
+        final String upper = USER_1.toUpperCase( Locale.ROOT );
+        Assertions.assertEquals( user1.getPassword(), userDetailsService.loadUserByUsername( upper ).getPassword() );
+
+        final String changed = new BCryptPasswordEncoder().encode( "654321" );
+        user1.setPassword( changed );
+        service.save( user1 );
+        Assertions.assertEquals( changed, userDetailsService.loadUserByUsername( upper ).getPassword(),
+                "Changing a password should replace the cached user under every spelling of the username" );
+    }
+
 }
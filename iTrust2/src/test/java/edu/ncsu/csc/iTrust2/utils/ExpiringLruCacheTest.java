@@ -0,0 +1,114 @@
+package edu.ncsu.csc.iTrust2.utils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ExpiringLruCacheTest {
+
+    private static final long HOUR = 3600000;
+
+    @Test
+    public void testGetLoadsOnce () {
+        final ExpiringLruCache<String, String> cache = new ExpiringLruCache<String, String>( 10, HOUR );
+        final AtomicInteger loads = new AtomicInteger();
+
+        final Function<String, String> loader = k -> {
+            loads.incrementAndGet();
+            return k.toUpperCase();
+        };
+
+        Assertions.assertEquals( "A", cache.get( "a", loader ) );
+        Assertions.assertEquals( "A", cache.get( "a", loader ), "A cached key should not be reloaded" );
+        Assertions.assertEquals( 1, loads.get() );
+        Assertions.assertEquals( 1, cache.hits() );
+        Assertions.assertEquals( 1, cache.misses() );
+
+        cache.invalidate( "a" );
+        Assertions.assertEquals( "reloaded", cache.get( "a", k -> "reloaded" ) );
+
+        cache.invalidateAll();
+        Assertions.assertEquals( 0, cache.size() );
+    }
+
+    @Test
+    public void testNullsAndFailuresAreNotCached () {
+        final ExpiringLruCache<String, String> cache = new ExpiringLruCache<String, String>( 10, HOUR );
+
+        Assertions.assertNull( cache.get( "a", k -> null ) );
+        Assertions.assertEquals( 0, cache.size() );
+
+        Assertions.assertThrows( IllegalStateException.class, () -> cache.get( "a", k -> {
+            throw new IllegalStateException();
+        } ) );
+        Assertions.assertEquals( 0, cache.size() );
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed () {
+        final ExpiringLruCache<String, String> cache = new ExpiringLruCache<String, String>( 2, HOUR );
+
+        cache.get( "a", k -> "a" );
+        cache.get( "b", k -> "b" );
+        cache.get( "a", k -> "reloaded" );
+        cache.get( "c", k -> "c" );
+
+        Assertions.assertEquals( 2, cache.size() );
+        Assertions.assertEquals( "a", cache.get( "a", k -> "reloaded" ), "The most recently used key should be kept" );
+        Assertions.assertEquals( "reloaded", cache.get( "b", k -> "reloaded" ),
+                "The least recently used key should be evicted" );
+    }
+
+    @Test
+    public void testExpiresAndTurnsOff () {
+        final ExpiringLruCache<String, String> expired = new ExpiringLruCache<String, String>( 10, -1 );
+        expired.get( "a", k -> "a" );
+        Assertions.assertEquals( "reloaded", expired.get( "a", k -> "reloaded" ) );
+
+        final ExpiringLruCache<String, String> off = new ExpiringLruCache<String, String>( 0, HOUR );
+        off.get( "a", k -> "a" );
+        Assertions.assertEquals( 0, off.size() );
+        Assertions.assertEquals( "reloaded", off.get( "a", k -> "reloaded" ) );
+    }
+
+    @Test
+    public void testInvalidatedLoadIsNotKept () {
+        final ExpiringLruCache<String, String> cache = new ExpiringLruCache<String, String>( 10, HOUR );
+
+        Assertions.assertEquals( "stale", cache.get( "a", k -> {
+            cache.invalidate( "a" );
+            return "stale";
+        } ), "A load should still be handed to its caller" );
+        Assertions.assertEquals( "fresh", cache.get( "a", k -> "fresh" ),
+                "A load overtaken by an invalidation should not be kept" );
+    }
+
+    @Test
+    public void testGetAllLoadsMissingTogether () {
+        final ExpiringLruCache<String, Integer> cache = new ExpiringLruCache<String, Integer>( 10, HOUR );
+        final AtomicInteger loads = new AtomicInteger();
+        final Function<Set<String>, Map<String, Integer>> loader = keys -> {
+            loads.incrementAndGet();
+            final Map<String, Integer> loaded = new HashMap<String, Integer>();
+            keys.stream().filter( k -> !"missing".equals( k ) ).forEach( k -> loaded.put( k, k.length() ) );
+            return loaded;
+        };
+
+        cache.get( "a", k -> 1 );
+        final Map<String, Integer> found = cache.getAll( List.of( "a", "bb", "ccc", "missing" ), loader );
+
+        Assertions.assertEquals( 1, loads.get(), "Missing keys should be loaded together" );
+        Assertions.assertEquals( Map.of( "a", 1, "bb", 2, "ccc", 3 ), found );
+        Assertions.assertEquals( 3, cache.size(), "Keys the loader left out should not be cached" );
+
+        cache.getAll( List.of( "a", "bb", "ccc" ), loader );
+        Assertions.assertEquals( 1, loads.get(), "Cached keys should not be loaded again" );
+    }
+
+}
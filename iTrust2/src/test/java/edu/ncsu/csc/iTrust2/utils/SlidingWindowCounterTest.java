@@ -0,0 +1,109 @@
+package edu.ncsu.csc.iTrust2.utils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SlidingWindowCounterTest {
+
+    private static final String KEY    = "10.0.0.7";
+
+    private static final long   WINDOW = Duration.ofHours( 1 ).toMillis();
+
+    @Test
+    public void testCountWithinWindow () {
+        final SlidingWindowCounter counter = new SlidingWindowCounter( Duration.ofMillis( WINDOW ), 12 );
+        final long now = System.currentTimeMillis();
+
+        counter.increment( KEY );
+        counter.increment( KEY );
+        counter.add( KEY, now - WINDOW / 2 );
+        Assertions.assertEquals( 3, counter.count( KEY ) );
+        Assertions.assertEquals( 0, counter.count( "other" ), "Keys should be counted separately" );
+
+        counter.add( KEY, now - 2 * WINDOW );
+        Assertions.assertEquals( 3, counter.count( KEY ), "Events before the window should be ignored" );
+
+        Assertions.assertEquals( 2, counter.count( KEY, now + WINDOW / 2 ),
+                "Events should stop counting once they leave the window" );
+        Assertions.assertEquals( 0, counter.count( KEY, now + 2 * WINDOW ) );
+
+        counter.add( "other", now, 5 );
+        Assertions.assertEquals( 5, counter.count( "other" ), "Several events should be counted at once" );
+    }
+
+    @Test
+    public void testClearAndPurge () {
+        final SlidingWindowCounter counter = new SlidingWindowCounter( Duration.ofMillis( WINDOW ), 12 );
+
+        counter.increment( KEY );
+        counter.increment( "other" );
+        counter.clear( KEY );
+        Assertions.assertEquals( 0, counter.count( KEY ) );
+        Assertions.assertEquals( 1, counter.count( "other" ) );
+
+        counter.purge();
+        Assertions.assertEquals( 1, counter.count( "other" ), "Purging should keep keys with events left" );
+
+        counter.clearAll();
+        Assertions.assertEquals( 0, counter.count( "other" ) );
+    }
+
+    @Test
+    public void testForEachBucket () {
+        final SlidingWindowCounter counter = new SlidingWindowCounter( Duration.ofMillis( WINDOW ), 12 );
+        final long now = System.currentTimeMillis();
+
+        counter.add( KEY, now );
+        counter.add( KEY, now );
+        counter.add( KEY, now - WINDOW / 2 );
+
+        final List<Long> counts = new ArrayList<Long>();
+        counter.forEachBucket( ( key, start, count ) -> {
+            Assertions.assertEquals( KEY, key );
+            Assertions.assertTrue( start <= now && start > now - WINDOW );
+            counts.add( count );
+        } );
+        counts.sort( null );
+        Assertions.assertEquals( List.of( 1L, 2L ), counts );
+    }
+
+    @Test
+    public void testConcurrentIncrements () throws InterruptedException {
+        final SlidingWindowCounter counter = new SlidingWindowCounter( Duration.ofMillis( WINDOW ), 12 );
+        final int threads = 8;
+        final int perThread = 10_000;
+
+        final List<Thread> workers = new ArrayList<Thread>();
+        for ( int i = 0; i < threads; i++ ) {
+            final Thread worker = new Thread( () -> {
+                for ( int j = 0; j < perThread; j++ ) {
+                    counter.increment( KEY );
+                }
+            } );
+            workers.add( worker );
+            worker.start();
+        }
+        for ( final Thread worker : workers ) {
+            worker.join();
+        }
+
+        final AtomicLong total = new AtomicLong();
+        counter.forEachBucket( ( key, start, count ) -> total.addAndGet( count ) );
+        Assertions.assertEquals( threads * perThread, counter.count( KEY ) );
+        Assertions.assertEquals( threads * perThread, total.get() );
+    }
+
+    @Test
+    public void testInvalidWindow () {
+        Assertions.assertThrows( IllegalArgumentException.class,
+                () -> new SlidingWindowCounter( Duration.ofMillis( 5 ), 10 ) );
+        Assertions.assertThrows( IllegalArgumentException.class,
+                () -> new SlidingWindowCounter( Duration.ofMinutes( 1 ), 0 ) );
+    }
+
+}